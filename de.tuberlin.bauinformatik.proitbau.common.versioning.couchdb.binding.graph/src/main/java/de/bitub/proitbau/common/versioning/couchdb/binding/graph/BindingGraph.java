@@ -26,6 +26,8 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
 
 import de.bitub.proitbau.common.versioning.model.VersionedSet;
+import de.bitub.proitbau.common.versioning.util.ReachabilityIndex;
+import de.bitub.proitbau.common.versioning.util.VersionedSetUtil;
 
 public class BindingGraph implements iBindingGraph {
 	
@@ -37,10 +39,20 @@ public class BindingGraph implements iBindingGraph {
 	
 	private String revision;
 	
+	// The uuid of the state document of the stored state
+	private String stateUuid;
+	
 	private String uuid = UUID.randomUUID().toString();
 	
 	private Set<VersionedSetRepresentation> versionedSetRepresentations = new HashSet<VersionedSetRepresentation>(30);
 	
+	// Reachability indices over the binding relations, they are created on the
+	// first query or by specifyNewState and are kept up to date by the methods
+	// of this binding graph which change bindings or visibility
+	private transient ReachabilityIndex<VersionedSetRepresentation> representationReachabilityIndex;
+	
+	private transient ReachabilityIndex<VersionedSet> versionedSetReachabilityIndex;
+	
 	private VersionedSetWrapper versionedSetWrapper;
 	
 	private String versionedSetWrapperUuid;
@@ -67,7 +79,162 @@ public class BindingGraph implements iBindingGraph {
 		}
 		versionedSetRepresentation.setPredecessorsBinding(predecessorsBinding);
 		versionedSetRepresentation.setPredecessorsVersioning(versionedSet.getPredecessorsVersioning());
+		// The versioned set is already in memory, so the representation doesn't
+		// need to load it
+		versionedSetRepresentation.setVersionedSet(versionedSet);
 		this.versionedSetRepresentations.add(versionedSetRepresentation);
+		this.addToReachabilityIndices(versionedSet, versionedSetRepresentation);
+	}
+	
+	/*
+	 * Adds the given versioned set and its representation to the existing
+	 * reachability indices, the bound versioned sets come first, but edges to
+	 * versioned sets added later are added as well
+	 */
+	private synchronized void addToReachabilityIndices(final VersionedSet versionedSet,
+		final VersionedSetRepresentation versionedSetRepresentation) {
+		if (this.versionedSetReachabilityIndex != null) {
+			this.versionedSetReachabilityIndex.addNode(versionedSet);
+			for (final VersionedSet predecessorBinding : versionedSet.getPredecessorsBinding()) {
+				this.versionedSetReachabilityIndex.addEdge(versionedSet, predecessorBinding);
+			}
+		}
+		if (this.representationReachabilityIndex != null) {
+			this.representationReachabilityIndex.setBlocking(versionedSetRepresentation,
+				versionedSetRepresentation.isVisible());
+			for (final VersionedSetRepresentation other : this.versionedSetRepresentations) {
+				if (versionedSetRepresentation.getPredecessorsBinding().contains(other.getVersionedSetUuid())) {
+					this.representationReachabilityIndex.addEdge(versionedSetRepresentation, other);
+				}
+				if (other.getPredecessorsBinding().contains(versionedSetRepresentation.getVersionedSetUuid())) {
+					this.representationReachabilityIndex.addEdge(other, versionedSetRepresentation);
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Adds the binding of the given versioned set to the given predecessor, see
+	 * VersionedSet.addPredecessorBinding, and updates the representation and
+	 * the reachability indices of this binding graph
+	 */
+	public synchronized boolean addPredecessorBinding(final VersionedSet versionedSet,
+		final VersionedSet predecessorBinding) {
+		Preconditions.checkNotNull(versionedSet, "Given versioned set is null!");
+		if (!versionedSet.addPredecessorBinding(predecessorBinding)) {
+			return false;
+		}
+		final VersionedSetRepresentation versionedSetRepresentation =
+			this.findVersionedSetRepresentation(versionedSet.getUuid());
+		if (versionedSetRepresentation != null) {
+			versionedSetRepresentation.getPredecessorsBinding().add(predecessorBinding.getUuid());
+			final VersionedSetRepresentation predecessorRepresentation =
+				this.findVersionedSetRepresentation(predecessorBinding.getUuid());
+			if ((this.representationReachabilityIndex != null) && (predecessorRepresentation != null)) {
+				this.representationReachabilityIndex.addEdge(versionedSetRepresentation, predecessorRepresentation);
+			}
+		}
+		if (this.versionedSetReachabilityIndex != null) {
+			this.versionedSetReachabilityIndex.addEdge(versionedSet, predecessorBinding);
+		}
+		return true;
+	}
+	
+	/*
+	 * Removes the binding of the given versioned set to the given predecessor
+	 * and updates the representation and the reachability indices of this
+	 * binding graph
+	 */
+	public synchronized boolean removePredecessorBinding(final VersionedSet versionedSet,
+		final VersionedSet predecessorBinding) {
+		Preconditions.checkNotNull(versionedSet, "Given versioned set is null!");
+		if (!versionedSet.removePredecessorBinding(predecessorBinding)) {
+			return false;
+		}
+		final VersionedSetRepresentation versionedSetRepresentation =
+			this.findVersionedSetRepresentation(versionedSet.getUuid());
+		if (versionedSetRepresentation != null) {
+			versionedSetRepresentation.getPredecessorsBinding().remove(predecessorBinding.getUuid());
+			final VersionedSetRepresentation predecessorRepresentation =
+				this.findVersionedSetRepresentation(predecessorBinding.getUuid());
+			if ((this.representationReachabilityIndex != null) && (predecessorRepresentation != null)) {
+				this.representationReachabilityIndex.removeEdge(versionedSetRepresentation, predecessorRepresentation);
+			}
+		}
+		if (this.versionedSetReachabilityIndex != null) {
+			this.versionedSetReachabilityIndex.removeEdge(versionedSet, predecessorBinding);
+		}
+		return true;
+	}
+	
+	/*
+	 * Changes the visibility of the given representation, paths via binding
+	 * relations lead only through invisible representations
+	 */
+	public synchronized void setVisible(final VersionedSetRepresentation versionedSetRepresentation,
+		final boolean visible) {
+		Preconditions.checkNotNull(versionedSetRepresentation, "Given versioned set representation is null!");
+		versionedSetRepresentation.setVisible(visible);
+		if (this.representationReachabilityIndex != null) {
+			this.representationReachabilityIndex.setBlocking(versionedSetRepresentation, visible);
+		}
+	}
+	
+	/*
+	 * See VersionedSetRepresentationUtil.isReachableViaBindingRelations, the
+	 * reachability index is kept by this binding graph, so only the first query
+	 * computes the closure of the target
+	 */
+	public synchronized boolean isReachableViaBindingRelations(final VersionedSetRepresentation sourceVersionedSetRepresentation,
+		final VersionedSetRepresentation targetVersionedSetRepresentation) {
+		// @formatter:off
+		return VersionedSetRepresentationUtil.getInstance().isReachableViaBindingRelations(
+			sourceVersionedSetRepresentation, 
+			targetVersionedSetRepresentation, 
+			this.obtainRepresentationReachabilityIndex());
+		// @formatter:on
+	}
+	
+	/*
+	 * See VersionedSetUtil.isReachableViaBindingRelations, the reachability
+	 * index is kept by this binding graph
+	 */
+	public synchronized boolean isReachableViaBindingRelations(final VersionedSet sourceVersionedSet,
+		final VersionedSet targetVersionedSet) {
+		final ReachabilityIndex<VersionedSet> index = this.obtainVersionedSetReachabilityIndex();
+		if (index.getId(targetVersionedSet) < 0) {
+			// The target doesn't belong to this binding graph
+			return VersionedSetUtil.getInstance().isReachableViaBindingRelations(sourceVersionedSet, targetVersionedSet);
+		}
+		return VersionedSetUtil.getInstance().isReachableViaBindingRelations(sourceVersionedSet, targetVersionedSet,
+			index);
+	}
+	
+	public synchronized ReachabilityIndex<VersionedSetRepresentation> obtainRepresentationReachabilityIndex() {
+		if (this.representationReachabilityIndex == null) {
+			this.representationReachabilityIndex =
+				VersionedSetRepresentationUtil.getInstance().createReachabilityIndex(this.versionedSetRepresentations);
+		}
+		return this.representationReachabilityIndex;
+	}
+	
+	// The versioned sets of a binding graph read without its versioned set
+	// wrapper are loaded through their representations on the first call
+	public synchronized ReachabilityIndex<VersionedSet> obtainVersionedSetReachabilityIndex() {
+		if (this.versionedSetReachabilityIndex == null) {
+			this.versionedSetReachabilityIndex =
+				VersionedSetUtil.getInstance().createReachabilityIndex(this.obtainVersionedSets());
+		}
+		return this.versionedSetReachabilityIndex;
+	}
+	
+	private VersionedSetRepresentation findVersionedSetRepresentation(final String versionedSetUuid) {
+		for (final VersionedSetRepresentation versionedSetRepresentation : this.versionedSetRepresentations) {
+			if (versionedSetUuid.equals(versionedSetRepresentation.getVersionedSetUuid())) {
+				return versionedSetRepresentation;
+			}
+		}
+		return null;
 	}
 	
 	@Override
@@ -75,12 +242,19 @@ public class BindingGraph implements iBindingGraph {
 		Preconditions.checkNotNull(versionedSets, "Given set of versioned set objects is null!");
 		Preconditions.checkArgument(!versionedSets.isEmpty(), "Given set of versioned set objects is empty!");
 		this.versionedSetRepresentations.clear();
+		synchronized (this) {
+			// The new state is added to empty indices set by set
+			this.representationReachabilityIndex =
+				new ReachabilityIndex<VersionedSetRepresentation>(versionedSets.size());
+			this.versionedSetReachabilityIndex = new ReachabilityIndex<VersionedSet>(versionedSets.size());
+		}
 		this.versionedSetWrapper = new VersionedSetWrapper();
 		this.versionedSetWrapperUuid = this.versionedSetWrapper.getUuid();
 		this.author = "author";
 		this.comment = "comment";
 		this.date = System.currentTimeMillis();
-		for (final VersionedSet versionedSet : versionedSets) {
+		// Bound versioned sets are stored before the binding ones
+		for (final VersionedSet versionedSet : VersionedSetUtil.getInstance().getTopologicalOrder(versionedSets)) {
 			this.addVersionedSet(versionedSet);
 		}
 	}
@@ -99,6 +273,7 @@ public class BindingGraph implements iBindingGraph {
 		return this.author;
 	}
 	
+	@Override
 	public String getComment() {
 		return this.comment;
 	}
@@ -113,6 +288,11 @@ public class BindingGraph implements iBindingGraph {
 		return this.revision;
 	}
 	
+	@Override
+	public String getStateUuid() {
+		return this.stateUuid;
+	}
+	
 	@Override
 	public String getUuid() {
 		return this.uuid;
@@ -138,9 +318,21 @@ public class BindingGraph implements iBindingGraph {
 		return Objects.hashCode(this.uuid);
 	}
 	
+	/*
+	 * Returns the versioned sets of the versioned set wrapper, if the binding
+	 * graph was read without it, the versioned sets are obtained from their
+	 * representations, which load them on demand
+	 */
 	@Override
 	public Set<VersionedSet> obtainVersionedSets() {
-		return this.versionedSetWrapper.getVersionedSets();
+		if (this.versionedSetWrapper != null) {
+			return this.versionedSetWrapper.getVersionedSets();
+		}
+		final Set<VersionedSet> versionedSets = Sets.newHashSetWithExpectedSize(this.versionedSetRepresentations.size());
+		for (final VersionedSetRepresentation versionedSetRepresentation : this.versionedSetRepresentations) {
+			versionedSets.add(versionedSetRepresentation.obtainVersionedSet());
+		}
+		return versionedSets;
 	}
 	
 	@Override
@@ -163,17 +355,28 @@ public class BindingGraph implements iBindingGraph {
 		this.revision = revision;
 	}
 	
+	@Override
+	public void setStateUuid(final String stateUuid) {
+		this.stateUuid = stateUuid;
+	}
+	
 	public void setUuid(final String uuid) {
 		this.uuid = uuid;
 	}
 	
-	protected void setVersionedSetRepresentations(final Set<VersionedSetRepresentation> versionedSetRepresentations) {
+	protected synchronized void setVersionedSetRepresentations(
+		final Set<VersionedSetRepresentation> versionedSetRepresentations) {
 		this.versionedSetRepresentations = versionedSetRepresentations;
+		this.representationReachabilityIndex = null;
+		this.versionedSetReachabilityIndex = null;
 	}
 	
 	@Override
 	public void setVersionedSetWrapper(final VersionedSetWrapper versionedSetWrapper) {
 		this.versionedSetWrapper = versionedSetWrapper;
+		synchronized (this) {
+			this.versionedSetReachabilityIndex = null;
+		}
 	}
 	
 	public void setVersionedSetWrapperUuid(final String versionedSetWrapperUuid) {
@@ -196,6 +399,7 @@ public class BindingGraph implements iBindingGraph {
 			.add("comment", this.comment)
 			.add("date", this.date)
 			.add("revision", this.revision)
+			.add("stateUuid", this.stateUuid)
 			.add("uuid", this.uuid)
 			.add("versionedSets", this.versionedSetRepresentations)
 			.toString();
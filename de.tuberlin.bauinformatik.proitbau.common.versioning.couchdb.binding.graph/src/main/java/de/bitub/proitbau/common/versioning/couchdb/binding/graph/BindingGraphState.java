@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.binding.graph;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+
+/*
+ * The document of a single committed state of a binding graph. A state
+ * document is written once with its own uuid and isn't changed afterwards,
+ * it refers to the state it was derived from by the uuid of its parent. The
+ * history of a binding graph is therefore kept by the state documents and
+ * doesn't depend on the old revisions of the binding graph document, which
+ * are removed by the compaction of the database. A state document is
+ * written together with the binding graph, before the new revision of the
+ * binding graph is known, so it refers to this revision by its generation.
+ */
+public class BindingGraphState {
+	
+	private String uuid = UUID.randomUUID().toString();
+	
+	private String revision;
+	
+	private String bindingGraphUuid;
+	
+	private int bindingGraphGeneration;
+	
+	// Resolved from the generation when the state is read
+	private transient String bindingGraphRevision;
+	
+	private String parentUuid;
+	
+	private String author;
+	
+	private String comment;
+	
+	private long date;
+	
+	private String versionedSetWrapperUuid;
+	
+	private Set<VersionedSetRepresentation> versionedSetRepresentations = Sets.newHashSet();
+	
+	public BindingGraphState() {
+		super();
+	}
+	
+	public BindingGraphState(final iBindingGraph bindingGraph, final String parentUuid) {
+		super();
+		Preconditions.checkNotNull(bindingGraph, "Given binding graph is null!");
+		this.bindingGraphUuid = bindingGraph.getUuid();
+		this.parentUuid = parentUuid;
+		this.author = bindingGraph.getAuthor();
+		this.comment = bindingGraph.getComment();
+		this.date = bindingGraph.getDate();
+		this.versionedSetWrapperUuid = bindingGraph.getVersionedSetWrapperUuid();
+		this.versionedSetRepresentations = BindingGraphState.copy(bindingGraph.getVersionedSetRepresentations());
+	}
+	
+	/*
+	 * Creates a binding graph in this state, the VersionedSetWrapper of the
+	 * binding graph isn't loaded. The binding graph gets its own copies of the
+	 * representations, so it loads its own versioned sets.
+	 */
+	public BindingGraph createBindingGraph() {
+		final BindingGraph bindingGraph = new BindingGraph();
+		bindingGraph.setUuid(this.bindingGraphUuid);
+		bindingGraph.setRevision(this.bindingGraphRevision);
+		bindingGraph.setStateUuid(this.uuid);
+		bindingGraph.setAuthor(this.author);
+		bindingGraph.setComment(this.comment);
+		bindingGraph.setDate(this.date);
+		bindingGraph.setVersionedSetWrapperUuid(this.versionedSetWrapperUuid);
+		bindingGraph.setVersionedSetRepresentations(BindingGraphState.copy(this.versionedSetRepresentations));
+		return bindingGraph;
+	}
+	
+	/*
+	 * The state keeps copies of the representations, so it never refers to the
+	 * versioned sets loaded by a binding graph
+	 */
+	private static Set<VersionedSetRepresentation> copy(
+		final Collection<VersionedSetRepresentation> versionedSetRepresentations) {
+		final Set<VersionedSetRepresentation> copies =
+			Sets.newHashSetWithExpectedSize(versionedSetRepresentations.size());
+		for (final VersionedSetRepresentation versionedSetRepresentation : versionedSetRepresentations) {
+			copies.add(versionedSetRepresentation.copy());
+		}
+		return copies;
+	}
+	
+	public String getUuid() {
+		return this.uuid;
+	}
+	
+	public void setUuid(final String uuid) {
+		this.uuid = uuid;
+	}
+	
+	public String getRevision() {
+		return this.revision;
+	}
+	
+	public void setRevision(final String revision) {
+		this.revision = revision;
+	}
+	
+	public String getBindingGraphUuid() {
+		return this.bindingGraphUuid;
+	}
+	
+	public int getBindingGraphGeneration() {
+		return this.bindingGraphGeneration;
+	}
+	
+	public void setBindingGraphGeneration(final int bindingGraphGeneration) {
+		this.bindingGraphGeneration = bindingGraphGeneration;
+	}
+	
+	public String getBindingGraphRevision() {
+		return this.bindingGraphRevision;
+	}
+	
+	public void setBindingGraphRevision(final String bindingGraphRevision) {
+		this.bindingGraphRevision = bindingGraphRevision;
+	}
+	
+	public String getParentUuid() {
+		return this.parentUuid;
+	}
+	
+	public String getAuthor() {
+		return this.author;
+	}
+	
+	public String getComment() {
+		return this.comment;
+	}
+	
+	public long getDate() {
+		return this.date;
+	}
+	
+	public String getVersionedSetWrapperUuid() {
+		return this.versionedSetWrapperUuid;
+	}
+	
+	public Set<VersionedSetRepresentation> getVersionedSetRepresentations() {
+		return this.versionedSetRepresentations;
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(this.uuid);
+	}
+	
+	@Override
+	public boolean equals(final Object obj) {
+		if (obj instanceof BindingGraphState) {
+			final BindingGraphState other = (BindingGraphState) obj;
+			return Objects.equal(this.uuid, other.uuid);
+		}
+		return false;
+	}
+	
+	@Override
+	public String toString() {
+		// @formatter:off
+		return Objects.toStringHelper(this)
+			.add("uuid", this.uuid)
+			.add("bindingGraphUuid", this.bindingGraphUuid)
+			.add("bindingGraphGeneration", this.bindingGraphGeneration)
+			.add("bindingGraphRevision", this.bindingGraphRevision)
+			.add("parentUuid", this.parentUuid)
+			.add("date", this.date)
+			.toString();
+		// @formatter:on
+	}
+	
+}
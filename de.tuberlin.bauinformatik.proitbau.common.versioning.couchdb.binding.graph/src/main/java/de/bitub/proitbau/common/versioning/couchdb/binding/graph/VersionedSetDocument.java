@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.binding.graph;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.ektorp.Attachment;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
+
+/*
+ * The document of a single versioned set, its id is the uuid of the versioned
+ * set. A versioned set isn't changed after it was committed, so the document
+ * is written once and then referenced by the VersionedSetWrapper of every
+ * state which contains the versioned set. The predecessors in binding have
+ * their own documents, so only their uuids are stored here.
+ * The versioned set can be stored as an encoded attachment instead, then only
+ * the metadata stays in the JSON document.
+ * A delta document refers to the document of the predecessor in versioning it
+ * was built from. Its versioned set contains only the created and the changed
+ * objects, the objects and the field-uuids pairs removed from the predecessor
+ * are listed separately.
+ * The objects of other versioned sets are stored as references, so the
+ * objects stay identical across the documents once they are loaded.
+ */
+public class VersionedSetDocument {
+	
+	private String uuid;
+	
+	private String revision;
+	
+	private VersionedSet versionedSet;
+	
+	private Set<String> predecessorsBinding = Sets.newLinkedHashSet();
+	
+	private Map<String, Attachment> attachments = Maps.newHashMap();
+	
+	// The uuid of the versioned set this delta is applied to, null for a full
+	// snapshot
+	private String deltaBase;
+	
+	// The number of deltas since the last full snapshot
+	private int deltaDepth;
+	
+	private Set<String> removedObjects = Sets.newHashSet();
+	
+	private Map<String, Set<String>> removedFieldUuidsPairs = Maps.newHashMap();
+	
+	// The fingerprints of the objects as they were loaded, by the uuids of the
+	// objects. They aren't stored, deltas against this document are built from
+	// them, because the loaded objects might have been changed afterwards.
+	private transient Map<String, Long> objectFingerprints;
+	
+	// The objects of these versioned sets are written as references which
+	// contain only their type and uuid, unless they are objects of this
+	// document. They aren't stored, the references are resolved when the
+	// referenced versioned sets are loaded.
+	private transient Set<VersionedSet> referencedVersionedSets = Sets.newHashSet();
+	
+	public VersionedSetDocument() {
+		super();
+	}
+	
+	public VersionedSetDocument(final VersionedSet versionedSet) {
+		super();
+		Preconditions.checkNotNull(versionedSet, "Given versioned set is null!");
+		this.uuid = versionedSet.getUuid();
+		this.versionedSet = versionedSet;
+		for (final VersionedSet predecessorBinding : versionedSet.getPredecessorsBinding()) {
+			this.predecessorsBinding.add(predecessorBinding.getUuid());
+		}
+	}
+	
+	public String getUuid() {
+		return this.uuid;
+	}
+	
+	public void setUuid(final String uuid) {
+		this.uuid = uuid;
+	}
+	
+	public String getRevision() {
+		return this.revision;
+	}
+	
+	public void setRevision(final String revision) {
+		this.revision = revision;
+	}
+	
+	public VersionedSet getVersionedSet() {
+		return this.versionedSet;
+	}
+	
+	public void setVersionedSet(final VersionedSet versionedSet) {
+		this.versionedSet = versionedSet;
+	}
+	
+	public Set<String> getPredecessorsBinding() {
+		return this.predecessorsBinding;
+	}
+	
+	public void setPredecessorsBinding(final Set<String> predecessorsBinding) {
+		this.predecessorsBinding = predecessorsBinding;
+	}
+	
+	public Map<String, Attachment> getAttachments() {
+		return this.attachments;
+	}
+	
+	public void setAttachments(final Map<String, Attachment> attachments) {
+		this.attachments = attachments;
+	}
+	
+	public String getDeltaBase() {
+		return this.deltaBase;
+	}
+	
+	public void setDeltaBase(final String deltaBase) {
+		this.deltaBase = deltaBase;
+	}
+	
+	public int getDeltaDepth() {
+		return this.deltaDepth;
+	}
+	
+	public void setDeltaDepth(final int deltaDepth) {
+		this.deltaDepth = deltaDepth;
+	}
+	
+	public Set<String> getRemovedObjects() {
+		return this.removedObjects;
+	}
+	
+	public void setRemovedObjects(final Set<String> removedObjects) {
+		this.removedObjects = removedObjects;
+	}
+	
+	public Map<String, Set<String>> getRemovedFieldUuidsPairs() {
+		return this.removedFieldUuidsPairs;
+	}
+	
+	public void setRemovedFieldUuidsPairs(final Map<String, Set<String>> removedFieldUuidsPairs) {
+		this.removedFieldUuidsPairs = removedFieldUuidsPairs;
+	}
+	
+	public Map<String, Long> getObjectFingerprints() {
+		return this.objectFingerprints;
+	}
+	
+	public void setObjectFingerprints(final Map<String, Long> objectFingerprints) {
+		this.objectFingerprints = objectFingerprints;
+	}
+	
+	public Set<VersionedSet> getReferencedVersionedSets() {
+		return this.referencedVersionedSets;
+	}
+	
+	public void setReferencedVersionedSets(final Set<VersionedSet> referencedVersionedSets) {
+		this.referencedVersionedSets = referencedVersionedSets;
+	}
+	
+	public boolean isDelta() {
+		return this.deltaBase != null;
+	}
+	
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(this.uuid);
+	}
+	
+	@Override
+	public boolean equals(final Object obj) {
+		if (obj instanceof VersionedSetDocument) {
+			final VersionedSetDocument other = (VersionedSetDocument) obj;
+			return Objects.equal(this.uuid, other.uuid);
+		}
+		return false;
+	}
+	
+	@Override
+	public String toString() {
+		// @formatter:off
+		return Objects.toStringHelper(this)
+			.add("uuid", this.uuid)
+			.add("revision", this.revision)
+			.add("deltaBase", this.deltaBase)
+			.toString();
+		// @formatter:on
+	}
+	
+}
@@ -21,8 +21,10 @@ import java.util.Set;
 import java.util.UUID;
 
 import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
 
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
 import de.bitub.proitbau.common.versioning.model.VersionedSetType;
 
 public class VersionedSetRepresentation implements iVersionedSetWrapper {
@@ -43,6 +45,12 @@ public class VersionedSetRepresentation implements iVersionedSetWrapper {
 	
 	private Set<String> predecessorsVersioning = Sets.newHashSetWithExpectedSize(30);
 	
+	// The representation is a handle of its versioned set, the versioned set is
+	// loaded on the first access and kept afterwards. Neither of them is stored.
+	private transient iVersionedSetLoader versionedSetLoader;
+	
+	private transient VersionedSet versionedSet;
+	
 	public VersionedSetRepresentation() {
 		super();
 	}
@@ -57,6 +65,23 @@ public class VersionedSetRepresentation implements iVersionedSetWrapper {
 		this.versionedSetType = versionedSetType;
 	}
 	
+	/*
+	 * Returns a copy of this representation with the same uuid and the same
+	 * loader. The loaded versioned set isn't copied, so the copy loads its own
+	 * versioned set and the binding graphs don't share their versioned sets.
+	 * @return the copy of the representation
+	 */
+	public synchronized VersionedSetRepresentation copy() {
+		final VersionedSetRepresentation copy =
+			new VersionedSetRepresentation(this.versionedSetUuid, this.versionedSetName, this.versionedSetSize,
+				this.visible, this.versionedSetType);
+		copy.setUuid(this.uuid);
+		copy.setPredecessorsBinding(Sets.newHashSet(this.predecessorsBinding));
+		copy.setPredecessorsVersioning(Sets.newHashSet(this.predecessorsVersioning));
+		copy.setVersionedSetLoader(this.versionedSetLoader);
+		return copy;
+	}
+	
 	@Override
 	public boolean equals(final Object obj) {
 		if (obj instanceof VersionedSetRepresentation) {
@@ -109,6 +134,28 @@ public class VersionedSetRepresentation implements iVersionedSetWrapper {
 		return this.visible;
 	}
 	
+	public synchronized boolean isVersionedSetLoaded() {
+		return this.versionedSet != null;
+	}
+	
+	/*
+	 * Returns the versioned set this representation refers to, the versioned
+	 * set is loaded by the loader of the representation on the first call.
+	 * @return the versioned set
+	 */
+	public synchronized VersionedSet obtainVersionedSet() {
+		if (this.versionedSet == null) {
+			Preconditions.checkState(this.versionedSetLoader != null, "The versioned set " + this.versionedSetUuid
+																																+ " isn't loaded and there is no loader!");
+			this.versionedSet = this.versionedSetLoader.loadVersionedSet(this.versionedSetUuid);
+		}
+		return this.versionedSet;
+	}
+	
+	public synchronized void setVersionedSetLoader(final iVersionedSetLoader versionedSetLoader) {
+		this.versionedSetLoader = versionedSetLoader;
+	}
+	
 	public void setUuid(final String uuid) {
 		this.uuid = uuid;
 	}
@@ -154,4 +201,8 @@ public class VersionedSetRepresentation implements iVersionedSetWrapper {
 		this.predecessorsVersioning = predecessorsVersioning;
 	}
 	
+	protected synchronized void setVersionedSet(final VersionedSet versionedSet) {
+		this.versionedSet = versionedSet;
+	}
+	
 }
@@ -18,12 +18,12 @@
 package de.bitub.proitbau.common.versioning.couchdb.binding.graph;
 
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Stack;
+import java.util.Map;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import de.bitub.proitbau.common.versioning.util.ReachabilityIndex;
 
 public class VersionedSetRepresentationUtil {
 	
@@ -64,59 +64,60 @@ public class VersionedSetRepresentationUtil {
 		final Collection<VersionedSetRepresentation> versionedSetRepresentations) {
 		Preconditions.checkNotNull(sourceVersionedSetRepresentation, "Source versioned set representation is null!");
 		Preconditions.checkNotNull(targetVersionedSetRepresentation, "Target versioned set representation is null!");
-		boolean isReachable = false;
-		final List<VersionedSetRepresentation> visitedVersionedSetRepresentations = Lists.newArrayList();
-		final Stack<VersionedSetRepresentation> stack = new Stack<VersionedSetRepresentation>();
-		stack.add(targetVersionedSetRepresentation);
-		while (!stack.isEmpty() && !isReachable) {
-			final VersionedSetRepresentation popedVersionedSetRepresentation = stack.pop();
-			// Mark popedVersionedSetRepresentation as visited
-			if (!visitedVersionedSetRepresentations.contains(popedVersionedSetRepresentation)) {
-				visitedVersionedSetRepresentations.add(popedVersionedSetRepresentation);
-				// Now we get the uuids of all predecessor versioned sets
-				for (final String predecessorVersionedSetUuid : popedVersionedSetRepresentation.getPredecessorsBinding()) {
-					// But we need the versioned set object, so we have to
-					// iterate through the versionedSetRepresentations to find out
-					// which versioned set representation object contains given uuid of
-					// the versioned set predecessor
-					final boolean isPredecessorVersionedSetRepresentationFound = false;
-					final Iterator<VersionedSetRepresentation> versionedSetRepresentationIterator =
-						versionedSetRepresentations.iterator();
-					while (!isPredecessorVersionedSetRepresentationFound && versionedSetRepresentationIterator.hasNext()) {
-						final VersionedSetRepresentation predecessorVersionedSetRepresentation =
-							versionedSetRepresentationIterator.next();
-						if (predecessorVersionedSetRepresentation.getVersionedSetUuid().equals(predecessorVersionedSetUuid)) {
-							// First check if this versioned set representation was visited
-							// before or not
-							if (!visitedVersionedSetRepresentations.contains(predecessorVersionedSetRepresentation)) {
-								// If this versioned set representation equals to
-								// sourceVersionedSetRepresentation, we can say that the source
-								// can be reached from target
-								if (predecessorVersionedSetRepresentation.equals(sourceVersionedSetRepresentation)) {
-									isReachable = true;
-								}
-								// If the predecessorVersionedSetRepresentation is visible we
-								// must leave it to avoid this situation:
-								// @formatter:off
-								// visible_1-->visible_2-->visible_3
-								// visible_1 - source
-								// visible_3 - target
-								// visible_1-->visible_2-->visible_3
-								//		 \										/\
-								//      \___________________/
-								// @formatter:on
-								else if (!predecessorVersionedSetRepresentation.isVisible()) {
-									stack.add(predecessorVersionedSetRepresentation);
-								}
-							}
-						}
-						
-					}
+		if (sourceVersionedSetRepresentation.equals(targetVersionedSetRepresentation)) {
+			return false;
+		}
+		return this.createReachabilityIndex(versionedSetRepresentations).isReachable(targetVersionedSetRepresentation,
+			sourceVersionedSetRepresentation);
+	}
+	
+	/*
+	 * Same as above, but queries the given index of createReachabilityIndex
+	 * instead of building a new one for every call, the caller has to update
+	 * the index when bindings or visibilities change
+	 */
+	public boolean isReachableViaBindingRelations(final VersionedSetRepresentation sourceVersionedSetRepresentation,
+		final VersionedSetRepresentation targetVersionedSetRepresentation,
+		final ReachabilityIndex<VersionedSetRepresentation> index) {
+		Preconditions.checkNotNull(sourceVersionedSetRepresentation, "Source versioned set representation is null!");
+		Preconditions.checkNotNull(targetVersionedSetRepresentation, "Target versioned set representation is null!");
+		Preconditions.checkNotNull(index, "Reachability index is null!");
+		if (sourceVersionedSetRepresentation.equals(targetVersionedSetRepresentation)) {
+			return false;
+		}
+		return index.isReachable(targetVersionedSetRepresentation, sourceVersionedSetRepresentation);
+	}
+	
+	/*
+	 * Creates the reachability index of the given versioned set
+	 * representations. An edge leads from a representation to each of its
+	 * predecessors in binding, visible representations are blocking, so a path
+	 * may lead only through invisible representations, like in
+	 * isReachableViaBindingRelations. Predecessors are resolved through a map
+	 * of versioned set uuids instead of searching the whole collection.
+	 */
+	public ReachabilityIndex<VersionedSetRepresentation> createReachabilityIndex(
+		final Collection<VersionedSetRepresentation> versionedSetRepresentations) {
+		Preconditions.checkNotNull(versionedSetRepresentations, "Given collection of representations is null!");
+		final ReachabilityIndex<VersionedSetRepresentation> index =
+			new ReachabilityIndex<VersionedSetRepresentation>(versionedSetRepresentations.size());
+		final Map<String, VersionedSetRepresentation> versionedSetRepresentationsByUuid =
+			Maps.newHashMapWithExpectedSize(versionedSetRepresentations.size());
+		for (final VersionedSetRepresentation versionedSetRepresentation : versionedSetRepresentations) {
+			versionedSetRepresentationsByUuid.put(versionedSetRepresentation.getVersionedSetUuid(),
+				versionedSetRepresentation);
+			index.setBlocking(versionedSetRepresentation, versionedSetRepresentation.isVisible());
+		}
+		for (final VersionedSetRepresentation versionedSetRepresentation : versionedSetRepresentations) {
+			for (final String predecessorVersionedSetUuid : versionedSetRepresentation.getPredecessorsBinding()) {
+				final VersionedSetRepresentation predecessorVersionedSetRepresentation =
+					versionedSetRepresentationsByUuid.get(predecessorVersionedSetUuid);
+				if (predecessorVersionedSetRepresentation != null) {
+					index.addEdge(versionedSetRepresentation, predecessorVersionedSetRepresentation);
 				}
 			}
 		}
-		
-		return isReachable;
+		return index;
 	}
 	
 }
@@ -17,10 +17,12 @@
  ******************************************************************************/
 package de.bitub.proitbau.common.versioning.couchdb.binding.graph;
 
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
 import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import de.bitub.proitbau.common.versioning.model.VersionedSet;
@@ -31,7 +33,11 @@ public class VersionedSetWrapper {
 	
 	private String revision;
 	
-	private Set<VersionedSet> versionedsSets = Sets.newHashSet();
+	// The versioned sets are stored in their own documents, the wrapper keeps
+	// only their uuids in the order in which they are added
+	private transient Set<VersionedSet> versionedsSets = Sets.newLinkedHashSet();
+	
+	private List<String> versionedSetUuids = Lists.newArrayList();
 	
 	public VersionedSetWrapper() {
 		super();
@@ -59,10 +65,28 @@ public class VersionedSetWrapper {
 	
 	public void setVersionedsSets(final Set<VersionedSet> versionedsSets) {
 		this.versionedsSets = versionedsSets;
+		this.versionedSetUuids = Lists.newArrayListWithCapacity(versionedsSets.size());
+		for (final VersionedSet versionedSet : versionedsSets) {
+			this.versionedSetUuids.add(versionedSet.getUuid());
+		}
 	}
 	
 	public void addVersionedsSet(final VersionedSet versionedSet) {
-		this.versionedsSets.add(versionedSet);
+		if (this.versionedsSets.add(versionedSet)) {
+			this.versionedSetUuids.add(versionedSet.getUuid());
+		}
+	}
+	
+	public List<String> getVersionedSetUuids() {
+		return this.versionedSetUuids;
+	}
+	
+	/*
+	 * Returns true if the wrapper refers to versioned sets whose documents
+	 * weren't loaded yet
+	 */
+	public boolean isLoaded() {
+		return this.versionedsSets.size() == this.versionedSetUuids.size();
 	}
 	
 	@Override
@@ -33,10 +33,14 @@ public interface iBindingGraph {
 	
 	String getAuthor();
 	
+	String getComment();
+	
 	long getDate();
 	
 	String getRevision();
 	
+	String getStateUuid();
+	
 	String getUuid();
 	
 	// Set<VersionedSet> getVersionedSets();
@@ -57,6 +61,8 @@ public interface iBindingGraph {
 	
 	void setRevision(final String revision);
 	
+	void setStateUuid(final String stateUuid);
+	
 	void specifyNewState(Set<VersionedSet> versionedSets);
 	
 	void setVersionedSetWrapper(VersionedSetWrapper versionedSetWrapper);
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.binding.graph;
+
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
+
+/*
+ * Loads the versioned set a VersionedSetRepresentation refers to, the
+ * representation calls it on the first access to its versioned set.
+ */
+public interface iVersionedSetLoader {
+	
+	/*
+	 * Loads the versioned set with the given uuid together with its
+	 * predecessors in binding.
+	 * @param versionedSetUuid uuid of the versioned set
+	 * @return the versioned set
+	 */
+	public VersionedSet loadVersionedSet(final String versionedSetUuid);
+	
+}
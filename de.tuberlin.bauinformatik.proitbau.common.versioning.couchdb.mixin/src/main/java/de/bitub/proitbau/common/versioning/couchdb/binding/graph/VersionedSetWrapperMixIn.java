@@ -17,17 +17,22 @@
  ******************************************************************************/
 package de.bitub.proitbau.common.versioning.couchdb.binding.graph;
 
+import java.util.Set;
+
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
 import com.fasterxml.jackson.annotation.JsonIdentityInfo;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonSetter;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import com.fasterxml.jackson.annotation.JsonTypeInfo.As;
 import com.fasterxml.jackson.annotation.JsonTypeInfo.Id;
 import com.fasterxml.jackson.annotation.ObjectIdGenerators;
 
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
+
 @JsonAutoDetect(
 	getterVisibility = Visibility.NONE,
 	isGetterVisibility = Visibility.NONE,
@@ -50,4 +55,9 @@ public interface VersionedSetWrapperMixIn {
 	
 	@JsonProperty("_rev")
 	String getRevision();
+	
+	// Wrappers stored before the versioned sets got their own documents contain
+	// the versioned sets themselves, they can still be read
+	@JsonSetter
+	void setVersionedsSets(final Set<VersionedSet> versionedsSets);
 }
@@ -17,6 +17,7 @@
  ******************************************************************************/
 package de.bitub.proitbau.common.versioning.model;
 
+import java.util.Map;
 import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
@@ -60,4 +61,22 @@ public interface VersionedSetMixIn {
 	
 	@JsonGetter
 	Set<Object> getVersionedObjects();
+	
+	@JsonSetter
+	void setPredecessorsBinding(final Set<VersionedSet> predecessorsBinding);
+	
+	@JsonGetter
+	Set<VersionedSet> getPredecessorsBinding();
+	
+	@JsonSetter
+	void setUuidsOfObjects(final Set<String> uuidsOfObjects);
+	
+	@JsonGetter
+	Set<String> getUuidsOfObjects();
+	
+	@JsonSetter
+	void setFieldUuidsPairs(final Map<String, Set<String>> fieldUuidsPairs);
+	
+	@JsonGetter
+	Map<String, Set<String>> getFieldUuidsPairs();
 }
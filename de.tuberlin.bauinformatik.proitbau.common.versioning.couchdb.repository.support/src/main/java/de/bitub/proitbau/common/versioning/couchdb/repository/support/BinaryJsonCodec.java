@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.repository.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.ObjectCodec;
+
+/*
+ * Encodes the token stream of a JSON document into a compact binary form and
+ * back, in the spirit of Smile. Field names and short strings are written
+ * once and referenced by their index afterwards, so the type ids and the
+ * field names of the many objects of a versioned set cost a few bytes only.
+ * Strings in the canonical form of a uuid are written as 16 bytes and the
+ * integers as variable length numbers.
+ * The codec provides a JsonGenerator and a JsonParser of the binary form, so
+ * an ObjectMapper writes and reads the binary form as a stream. The shared
+ * names and strings are forgotten after a while, so the memory used by the
+ * generator and the parser doesn't grow with the size of the document.
+ */
+public class BinaryJsonCodec {
+	
+	public static final String CONTENT_TYPE = "application/x-setvers-binary-json";
+	
+	static final int MAGIC = 0x53564202; // "SVB", version 2
+	// The generator and the parser access the stream token by token
+	static final int BUFFER_SIZE = 8 * 1024;
+	static final int MAXIMAL_SHARED_STRING_LENGTH = 64;
+	static final int MAXIMAL_SHARED_STRINGS = 1024;
+	static final int UUID_LENGTH = 36;
+	
+	static final int START_OBJECT = 0x01;
+	static final int END_OBJECT = 0x02;
+	static final int START_ARRAY = 0x03;
+	static final int END_ARRAY = 0x04;
+	static final int FIELD_NAME = 0x05;
+	static final int FIELD_NAME_REFERENCE = 0x06;
+	static final int STRING = 0x07;
+	static final int STRING_REFERENCE = 0x08;
+	static final int UUID_STRING = 0x09;
+	static final int SHARED_STRING = 0x0A;
+	static final int INTEGER = 0x0B;
+	static final int BIG_INTEGER = 0x0C;
+	static final int DOUBLE = 0x0D;
+	static final int BIG_DECIMAL = 0x0E;
+	static final int TRUE = 0x0F;
+	static final int FALSE = 0x10;
+	static final int NULL = 0x11;
+	static final int BINARY = 0x12;
+	
+	private BinaryJsonCodec() {
+	}
+	
+	private static class Handler {
+		
+		private static BinaryJsonCodec instance = new BinaryJsonCodec();
+	}
+	
+	public static BinaryJsonCodec getInstance() {
+		return Handler.instance;
+	}
+	
+	/*
+	 * Returns a generator which writes the binary form to the given stream, the
+	 * stream is closed together with the generator.
+	 * @param outputStream the stream the binary document is written to
+	 * @param codec the codec which writes the objects, e.g. an ObjectMapper
+	 * @return the generator
+	 */
+	public JsonGenerator createGenerator(final OutputStream outputStream, final ObjectCodec codec) throws IOException {
+		return new BinaryJsonGenerator(outputStream, codec);
+	}
+	
+	/*
+	 * Returns a parser which reads the binary form from the given stream as it
+	 * is needed, the stream is closed together with the parser.
+	 * @param inputStream the stream of the binary document
+	 * @param codec the codec which reads the objects, e.g. an ObjectMapper
+	 * @return the parser
+	 */
+	public JsonParser createParser(final InputStream inputStream, final ObjectCodec codec) throws IOException {
+		return new BinaryJsonParser(inputStream, codec);
+	}
+	
+	/*
+	 * Writes the tokens of the given parser to the given stream until the
+	 * parser is exhausted. The stream isn't closed.
+	 * @param parser the parser of the document
+	 * @param outputStream the stream the binary document is written to
+	 */
+	public void encode(final JsonParser parser, final OutputStream outputStream) throws IOException {
+		final JsonGenerator generator = this.createGenerator(outputStream, parser.getCodec());
+		generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		while (parser.nextToken() != null) {
+			generator.copyCurrentEvent(parser);
+		}
+		generator.close();
+	}
+	
+	/*
+	 * Reads a binary document from the given stream and writes its tokens to
+	 * the given generator. The stream isn't closed, the generator is flushed.
+	 * @param inputStream the stream of the binary document
+	 * @param generator the generator the tokens are written to
+	 */
+	public void decode(final InputStream inputStream, final JsonGenerator generator) throws IOException {
+		final JsonParser parser = this.createParser(inputStream, generator.getCodec());
+		parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+		while (parser.nextToken() != null) {
+			generator.copyCurrentEvent(parser);
+		}
+		parser.close();
+		generator.flush();
+	}
+	
+	/*
+	 * Only the lower case form written by UUID.toString() is encoded as a uuid,
+	 * so the decoded string is always equal to the encoded one
+	 */
+	static boolean isUuid(final String value) {
+		if (value.length() != BinaryJsonCodec.UUID_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < BinaryJsonCodec.UUID_LENGTH; i++) {
+			final char c = value.charAt(i);
+			if ((i == 8) || (i == 13) || (i == 18) || (i == 23)) {
+				if (c != '-') {
+					return false;
+				}
+			}
+			else if (((c < '0') || (c > '9')) && ((c < 'a') || (c > 'f'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	static String toHex(final long value, final int digits) {
+		final long mask = (digits == 16) ? -1L : ((1L << (digits * 4)) - 1);
+		final String hex = Long.toHexString(value & mask);
+		final StringBuilder builder = new StringBuilder(digits);
+		for (int i = hex.length(); i < digits; i++) {
+			builder.append('0');
+		}
+		return builder.append(hex).toString();
+	}
+	
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.repository.support;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+import com.fasterxml.jackson.core.json.JsonWriteContext;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+
+/*
+ * Writes the binary form of the BinaryJsonCodec, raw content isn't supported
+ */
+class BinaryJsonGenerator extends GeneratorBase {
+	
+	private final DataOutputStream output;
+	
+	private final Map<String, Integer> fieldNames = Maps.newHashMap();
+	
+	private final Map<String, Integer> strings = Maps.newHashMap();
+	
+	BinaryJsonGenerator(final OutputStream outputStream, final ObjectCodec codec) throws IOException {
+		super(Feature.collectDefaults(), codec);
+		this.output = new DataOutputStream(new BufferedOutputStream(outputStream, BinaryJsonCodec.BUFFER_SIZE));
+		this.output.writeInt(BinaryJsonCodec.MAGIC);
+	}
+	
+	@Override
+	public void writeStartArray() throws IOException {
+		this._verifyValueWrite("start an array");
+		this._writeContext = this._writeContext.createChildArrayContext();
+		this.output.writeByte(BinaryJsonCodec.START_ARRAY);
+	}
+	
+	@Override
+	public void writeEndArray() throws IOException {
+		if (!this._writeContext.inArray()) {
+			this._reportError("Current context not an ARRAY but " + this._writeContext.getTypeDesc());
+		}
+		this._writeContext = this._writeContext.getParent();
+		this.output.writeByte(BinaryJsonCodec.END_ARRAY);
+	}
+	
+	@Override
+	public void writeStartObject() throws IOException {
+		this._verifyValueWrite("start an object");
+		this._writeContext = this._writeContext.createChildObjectContext();
+		this.output.writeByte(BinaryJsonCodec.START_OBJECT);
+	}
+	
+	@Override
+	public void writeEndObject() throws IOException {
+		if (!this._writeContext.inObject()) {
+			this._reportError("Current context not an object but " + this._writeContext.getTypeDesc());
+		}
+		this._writeContext = this._writeContext.getParent();
+		this.output.writeByte(BinaryJsonCodec.END_OBJECT);
+	}
+	
+	@Override
+	public void writeFieldName(final String name) throws IOException {
+		if (this._writeContext.writeFieldName(name) == JsonWriteContext.STATUS_EXPECT_VALUE) {
+			this._reportError("Can not write a field name, expecting a value");
+		}
+		final Integer index = this.fieldNames.get(name);
+		if (index != null) {
+			this.output.writeByte(BinaryJsonCodec.FIELD_NAME_REFERENCE);
+			this.writeUnsigned(index);
+			return;
+		}
+		BinaryJsonGenerator.share(this.fieldNames, name);
+		this.output.writeByte(BinaryJsonCodec.FIELD_NAME);
+		this.writeText(name);
+	}
+	
+	/*
+	 * Short strings are shared, a uuid is written as two longs
+	 */
+	@Override
+	public void writeString(final String text) throws IOException {
+		if (text == null) {
+			this.writeNull();
+			return;
+		}
+		this._verifyValueWrite("write a string");
+		if (text.length() > BinaryJsonCodec.MAXIMAL_SHARED_STRING_LENGTH) {
+			this.output.writeByte(BinaryJsonCodec.STRING);
+			this.writeText(text);
+			return;
+		}
+		final Integer index = this.strings.get(text);
+		if (index != null) {
+			this.output.writeByte(BinaryJsonCodec.STRING_REFERENCE);
+			this.writeUnsigned(index);
+			return;
+		}
+		BinaryJsonGenerator.share(this.strings, text);
+		if (BinaryJsonCodec.isUuid(text)) {
+			this.output.writeByte(BinaryJsonCodec.UUID_STRING);
+			this.output.writeLong(Long.parseLong(text.substring(0, 8), 16) << 32
+															| Long.parseLong(text.substring(9, 13), 16) << 16
+															| Long.parseLong(text.substring(14, 18), 16));
+			this.output.writeLong(Long.parseLong(text.substring(19, 23), 16) << 48 | Long.parseLong(text.substring(24), 16));
+		}
+		else {
+			this.output.writeByte(BinaryJsonCodec.SHARED_STRING);
+			this.writeText(text);
+		}
+	}
+	
+	@Override
+	public void writeString(final char[] text, final int offset, final int length) throws IOException {
+		this.writeString(new String(text, offset, length));
+	}
+	
+	@Override
+	public void writeUTF8String(final byte[] text, final int offset, final int length) throws IOException {
+		this.writeString(new String(text, offset, length, Charsets.UTF_8));
+	}
+	
+	@Override
+	public void writeRawUTF8String(final byte[] text, final int offset, final int length) throws IOException {
+		this._reportUnsupportedOperation();
+	}
+	
+	@Override
+	public void writeRaw(final String text) throws IOException {
+		this._reportUnsupportedOperation();
+	}
+	
+	@Override
+	public void writeRaw(final String text, final int offset, final int length) throws IOException {
+		this._reportUnsupportedOperation();
+	}
+	
+	@Override
+	public void writeRaw(final char[] text, final int offset, final int length) throws IOException {
+		this._reportUnsupportedOperation();
+	}
+	
+	@Override
+	public void writeRaw(final char c) throws IOException {
+		this._reportUnsupportedOperation();
+	}
+	
+	@Override
+	public void writeBinary(final Base64Variant base64Variant, final byte[] data, final int offset, final int length)
+		throws IOException {
+		if (data == null) {
+			this.writeNull();
+			return;
+		}
+		this._verifyValueWrite("write a binary value");
+		this.output.writeByte(BinaryJsonCodec.BINARY);
+		this.writeUnsigned(length);
+		this.output.write(data, offset, length);
+	}
+	
+	@Override
+	public void writeNumber(final int value) throws IOException {
+		this.writeNumber((long) value);
+	}
+	
+	@Override
+	public void writeNumber(final long value) throws IOException {
+		this._verifyValueWrite("write a number");
+		this.output.writeByte(BinaryJsonCodec.INTEGER);
+		// Zigzag, so small negative numbers are short as well
+		this.writeUnsigned((value << 1) ^ (value >> 63));
+	}
+	
+	@Override
+	public void writeNumber(final BigInteger value) throws IOException {
+		if (value == null) {
+			this.writeNull();
+			return;
+		}
+		this._verifyValueWrite("write a number");
+		this.output.writeByte(BinaryJsonCodec.BIG_INTEGER);
+		this.writeText(value.toString());
+	}
+	
+	@Override
+	public void writeNumber(final double value) throws IOException {
+		this._verifyValueWrite("write a number");
+		this.output.writeByte(BinaryJsonCodec.DOUBLE);
+		this.output.writeDouble(value);
+	}
+	
+	@Override
+	public void writeNumber(final float value) throws IOException {
+		this.writeNumber((double) value);
+	}
+	
+	@Override
+	public void writeNumber(final BigDecimal value) throws IOException {
+		if (value == null) {
+			this.writeNull();
+			return;
+		}
+		this._verifyValueWrite("write a number");
+		this.output.writeByte(BinaryJsonCodec.BIG_DECIMAL);
+		this.writeText(value.toString());
+	}
+	
+	@Override
+	public void writeNumber(final String encodedValue) throws IOException {
+		if (encodedValue == null) {
+			this.writeNull();
+		}
+		else if ((encodedValue.indexOf('.') < 0) && (encodedValue.indexOf('e') < 0) && (encodedValue.indexOf('E') < 0)) {
+			this.writeNumber(new BigInteger(encodedValue));
+		}
+		else {
+			this.writeNumber(new BigDecimal(encodedValue));
+		}
+	}
+	
+	@Override
+	public void writeBoolean(final boolean state) throws IOException {
+		this._verifyValueWrite("write a boolean value");
+		this.output.writeByte(state ? BinaryJsonCodec.TRUE : BinaryJsonCodec.FALSE);
+	}
+	
+	@Override
+	public void writeNull() throws IOException {
+		this._verifyValueWrite("write a null");
+		this.output.writeByte(BinaryJsonCodec.NULL);
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		this.output.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		super.close();
+		if (this.isEnabled(Feature.AUTO_CLOSE_TARGET)) {
+			this.output.close();
+		}
+		else {
+			this.output.flush();
+		}
+	}
+	
+	@Override
+	protected void _releaseBuffers() {
+	}
+	
+	@Override
+	protected void _verifyValueWrite(final String typeMsg) throws IOException {
+		if (this._writeContext.writeValue() == JsonWriteContext.STATUS_EXPECT_NAME) {
+			this._reportError("Can not " + typeMsg + ", expecting a field name");
+		}
+	}
+	
+	private void writeText(final String text) throws IOException {
+		final byte[] bytes = text.getBytes(Charsets.UTF_8);
+		this.writeUnsigned(bytes.length);
+		this.output.write(bytes);
+	}
+	
+	private void writeUnsigned(final long value) throws IOException {
+		long remainder = value;
+		while ((remainder & ~0x7FL) != 0) {
+			this.output.writeByte((int) ((remainder & 0x7F) | 0x80));
+			remainder >>>= 7;
+		}
+		this.output.writeByte((int) remainder);
+	}
+	
+	/*
+	 * The parser forgets the shared strings at the same point
+	 */
+	private static void share(final Map<String, Integer> sharedStrings, final String value) {
+		if (sharedStrings.size() == BinaryJsonCodec.MAXIMAL_SHARED_STRINGS) {
+			sharedStrings.clear();
+		}
+		sharedStrings.put(value, sharedStrings.size());
+	}
+	
+}
@@ -0,0 +1,391 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.repository.support;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.base.ParserMinimalBase;
+import com.fasterxml.jackson.core.json.JsonReadContext;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+/*
+ * Reads the binary form of the BinaryJsonCodec token by token
+ */
+class BinaryJsonParser extends ParserMinimalBase {
+	
+	private final DataInputStream input;
+	
+	private final List<String> fieldNames = Lists.newArrayList();
+	
+	private final List<String> strings = Lists.newArrayList();
+	
+	private ObjectCodec codec;
+	
+	private JsonReadContext parsingContext = JsonReadContext.createRootContext();
+	
+	private boolean closed;
+	
+	// The value of the current token
+	private String text;
+	
+	private Number number;
+	
+	private byte[] binary;
+	
+	BinaryJsonParser(final InputStream inputStream, final ObjectCodec codec) throws IOException {
+		super(Feature.collectDefaults());
+		this.input = new DataInputStream(new BufferedInputStream(inputStream, BinaryJsonCodec.BUFFER_SIZE));
+		this.codec = codec;
+		if (this.input.readInt() != BinaryJsonCodec.MAGIC) {
+			throw new JsonParseException("The stream doesn't contain a binary document!", JsonLocation.NA);
+		}
+	}
+	
+	@Override
+	public JsonToken nextToken() throws IOException {
+		this.text = null;
+		this.number = null;
+		this.binary = null;
+		if (this.closed) {
+			return this._currToken = null;
+		}
+		final int type = this.input.read();
+		switch (type) {
+			case -1:
+				this._handleEOF();
+				this.close();
+				return this._currToken = null;
+			case BinaryJsonCodec.START_OBJECT:
+				this.parsingContext = this.parsingContext.createChildObjectContext(-1, -1);
+				return this._currToken = JsonToken.START_OBJECT;
+			case BinaryJsonCodec.END_OBJECT:
+				if (!this.parsingContext.inObject()) {
+					this._reportError("Unexpected end of an object in " + this.parsingContext.getTypeDesc());
+				}
+				this.parsingContext = this.parsingContext.getParent();
+				return this._currToken = JsonToken.END_OBJECT;
+			case BinaryJsonCodec.START_ARRAY:
+				this.parsingContext = this.parsingContext.createChildArrayContext(-1, -1);
+				return this._currToken = JsonToken.START_ARRAY;
+			case BinaryJsonCodec.END_ARRAY:
+				if (!this.parsingContext.inArray()) {
+					this._reportError("Unexpected end of an array in " + this.parsingContext.getTypeDesc());
+				}
+				this.parsingContext = this.parsingContext.getParent();
+				return this._currToken = JsonToken.END_ARRAY;
+			case BinaryJsonCodec.FIELD_NAME:
+				this.text = this.readText();
+				this.share(this.fieldNames, this.text);
+				this.parsingContext.setCurrentName(this.text);
+				return this._currToken = JsonToken.FIELD_NAME;
+			case BinaryJsonCodec.FIELD_NAME_REFERENCE:
+				this.text = this.fieldNames.get((int) this.readUnsigned());
+				this.parsingContext.setCurrentName(this.text);
+				return this._currToken = JsonToken.FIELD_NAME;
+			case BinaryJsonCodec.STRING:
+				this.text = this.readText();
+				return this._currToken = JsonToken.VALUE_STRING;
+			case BinaryJsonCodec.SHARED_STRING:
+				this.text = this.readText();
+				this.share(this.strings, this.text);
+				return this._currToken = JsonToken.VALUE_STRING;
+			case BinaryJsonCodec.UUID_STRING:
+				this.text = this.readUuid();
+				this.share(this.strings, this.text);
+				return this._currToken = JsonToken.VALUE_STRING;
+			case BinaryJsonCodec.STRING_REFERENCE:
+				this.text = this.strings.get((int) this.readUnsigned());
+				return this._currToken = JsonToken.VALUE_STRING;
+			case BinaryJsonCodec.INTEGER:
+				final long unsigned = this.readUnsigned();
+				final long value = (unsigned >>> 1) ^ -(unsigned & 1);
+				if ((value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE)) {
+					this.number = Integer.valueOf((int) value);
+				}
+				else {
+					this.number = Long.valueOf(value);
+				}
+				return this._currToken = JsonToken.VALUE_NUMBER_INT;
+			case BinaryJsonCodec.BIG_INTEGER:
+				this.number = new BigInteger(this.readText());
+				return this._currToken = JsonToken.VALUE_NUMBER_INT;
+			case BinaryJsonCodec.DOUBLE:
+				this.number = Double.valueOf(this.input.readDouble());
+				return this._currToken = JsonToken.VALUE_NUMBER_FLOAT;
+			case BinaryJsonCodec.BIG_DECIMAL:
+				this.number = new BigDecimal(this.readText());
+				return this._currToken = JsonToken.VALUE_NUMBER_FLOAT;
+			case BinaryJsonCodec.TRUE:
+				return this._currToken = JsonToken.VALUE_TRUE;
+			case BinaryJsonCodec.FALSE:
+				return this._currToken = JsonToken.VALUE_FALSE;
+			case BinaryJsonCodec.NULL:
+				return this._currToken = JsonToken.VALUE_NULL;
+			case BinaryJsonCodec.BINARY:
+				this.binary = new byte[(int) this.readUnsigned()];
+				this.input.readFully(this.binary);
+				return this._currToken = JsonToken.VALUE_EMBEDDED_OBJECT;
+			default:
+				this._reportError("Unknown type " + type + " of a binary token");
+				return null;
+		}
+	}
+	
+	@Override
+	protected void _handleEOF() throws JsonParseException {
+		if (!this.parsingContext.inRoot()) {
+			this._reportInvalidEOF(": expected close marker for " + this.parsingContext.getTypeDesc());
+		}
+	}
+	
+	@Override
+	public String getCurrentName() {
+		if ((this._currToken == JsonToken.START_OBJECT) || (this._currToken == JsonToken.START_ARRAY)) {
+			return this.parsingContext.getParent().getCurrentName();
+		}
+		return this.parsingContext.getCurrentName();
+	}
+	
+	@Override
+	public void overrideCurrentName(final String name) {
+		if ((this._currToken == JsonToken.START_OBJECT) || (this._currToken == JsonToken.START_ARRAY)) {
+			this.parsingContext.getParent().setCurrentName(name);
+		}
+		else {
+			this.parsingContext.setCurrentName(name);
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (!this.closed) {
+			this.closed = true;
+			if (this.isEnabled(Feature.AUTO_CLOSE_SOURCE)) {
+				this.input.close();
+			}
+		}
+	}
+	
+	@Override
+	public boolean isClosed() {
+		return this.closed;
+	}
+	
+	@Override
+	public JsonStreamContext getParsingContext() {
+		return this.parsingContext;
+	}
+	
+	@Override
+	public JsonLocation getTokenLocation() {
+		return JsonLocation.NA;
+	}
+	
+	@Override
+	public JsonLocation getCurrentLocation() {
+		return JsonLocation.NA;
+	}
+	
+	@Override
+	public ObjectCodec getCodec() {
+		return this.codec;
+	}
+	
+	@Override
+	public void setCodec(final ObjectCodec codec) {
+		this.codec = codec;
+	}
+	
+	@Override
+	public String getText() {
+		if (this.text != null) {
+			return this.text;
+		}
+		if (this.number != null) {
+			return this.number.toString();
+		}
+		return (this._currToken == null) ? null : this._currToken.asString();
+	}
+	
+	@Override
+	public char[] getTextCharacters() {
+		final String currentText = this.getText();
+		return (currentText == null) ? null : currentText.toCharArray();
+	}
+	
+	@Override
+	public boolean hasTextCharacters() {
+		return false;
+	}
+	
+	@Override
+	public int getTextLength() {
+		final String currentText = this.getText();
+		return (currentText == null) ? 0 : currentText.length();
+	}
+	
+	@Override
+	public int getTextOffset() {
+		return 0;
+	}
+	
+	@Override
+	public Number getNumberValue() throws IOException {
+		if (this.number == null) {
+			this._reportError("Current token (" + this._currToken + ") not numeric, can not use numeric value accessors");
+		}
+		return this.number;
+	}
+	
+	@Override
+	public NumberType getNumberType() throws IOException {
+		final Number value = this.getNumberValue();
+		if (value instanceof Integer) {
+			return NumberType.INT;
+		}
+		if (value instanceof Long) {
+			return NumberType.LONG;
+		}
+		if (value instanceof BigInteger) {
+			return NumberType.BIG_INTEGER;
+		}
+		if (value instanceof BigDecimal) {
+			return NumberType.BIG_DECIMAL;
+		}
+		return NumberType.DOUBLE;
+	}
+	
+	@Override
+	public int getIntValue() throws IOException {
+		return this.getNumberValue().intValue();
+	}
+	
+	@Override
+	public long getLongValue() throws IOException {
+		return this.getNumberValue().longValue();
+	}
+	
+	@Override
+	public BigInteger getBigIntegerValue() throws IOException {
+		final Number value = this.getNumberValue();
+		if (value instanceof BigInteger) {
+			return (BigInteger) value;
+		}
+		return this.getDecimalValue().toBigInteger();
+	}
+	
+	@Override
+	public float getFloatValue() throws IOException {
+		return this.getNumberValue().floatValue();
+	}
+	
+	@Override
+	public double getDoubleValue() throws IOException {
+		return this.getNumberValue().doubleValue();
+	}
+	
+	@Override
+	public BigDecimal getDecimalValue() throws IOException {
+		final Number value = this.getNumberValue();
+		if (value instanceof BigDecimal) {
+			return (BigDecimal) value;
+		}
+		return new BigDecimal(value.toString());
+	}
+	
+	@Override
+	public Object getEmbeddedObject() {
+		return this.binary;
+	}
+	
+	@Override
+	public byte[] getBinaryValue(final Base64Variant base64Variant) throws IOException {
+		if (this.binary != null) {
+			return this.binary;
+		}
+		if (this._currToken != JsonToken.VALUE_STRING) {
+			this._reportError("Current token (" + this._currToken
+												+ ") not VALUE_STRING or VALUE_EMBEDDED_OBJECT, can not access as binary");
+		}
+		final ByteArrayBuilder builder = new ByteArrayBuilder();
+		this._decodeBase64(this.text, builder, base64Variant);
+		return builder.toByteArray();
+	}
+	
+	private String readUuid() throws IOException {
+		final long mostSignificantBits = this.input.readLong();
+		final long leastSignificantBits = this.input.readLong();
+		// @formatter:off
+		return new StringBuilder(BinaryJsonCodec.UUID_LENGTH)
+			.append(BinaryJsonCodec.toHex(mostSignificantBits >>> 32, 8)).append('-')
+			.append(BinaryJsonCodec.toHex(mostSignificantBits >>> 16, 4)).append('-')
+			.append(BinaryJsonCodec.toHex(mostSignificantBits, 4)).append('-')
+			.append(BinaryJsonCodec.toHex(leastSignificantBits >>> 48, 4)).append('-')
+			.append(BinaryJsonCodec.toHex(leastSignificantBits, 12))
+			.toString();
+		// @formatter:on
+	}
+	
+	private String readText() throws IOException {
+		final byte[] bytes = new byte[(int) this.readUnsigned()];
+		this.input.readFully(bytes);
+		return new String(bytes, Charsets.UTF_8);
+	}
+	
+	private long readUnsigned() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			final int b = this.input.read();
+			if (b == -1) {
+				throw new EOFException("The binary document ends within a number!");
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		this._reportError("A number of the binary document is too long");
+		return value;
+	}
+	
+	/*
+	 * The generator forgets the shared strings at the same point
+	 */
+	private void share(final List<String> sharedStrings, final String value) {
+		if (sharedStrings.size() == BinaryJsonCodec.MAXIMAL_SHARED_STRINGS) {
+			sharedStrings.clear();
+		}
+		sharedStrings.add(value);
+	}
+	
+}
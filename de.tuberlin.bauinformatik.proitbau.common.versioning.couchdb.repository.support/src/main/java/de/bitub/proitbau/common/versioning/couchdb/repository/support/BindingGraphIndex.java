@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.repository.support;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.ektorp.CouchDbConnector;
+import org.ektorp.ViewQuery;
+import org.ektorp.ViewResult;
+import org.ektorp.changes.ChangesCommand;
+import org.ektorp.changes.ChangesFeed;
+import org.ektorp.changes.DocumentChange;
+import org.ektorp.support.CouchDbRepositorySupport;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/*
+ * Knows the uuids of the binding graphs stored in a database. The uuids are
+ * resolved once by the "all" view and kept up to date by the changes feed of
+ * the database, the design document of the repository is ensured once as
+ * well. There is one index per connector, it is shared by all repositories
+ * which use the connector. The index doesn't keep the connector alive, the
+ * feed is stopped once the connector is released or the index is closed.
+ */
+class BindingGraphIndex {
+	
+	final static Logger logger = (Logger) LoggerFactory.getLogger(BindingGraphIndex.class);
+	{
+		BindingGraphIndex.logger.setLevel(Level.INFO);
+	}
+	
+	private static final String ALL_VIEW = "all";
+	private static final String DESIGN_DOCUMENT_PREFIX = "_design/";
+	// The feed checks this often whether the connector is released
+	private static final long RELEASE_CHECK_SECONDS = 30;
+	
+	private static final Map<CouchDbConnector, BindingGraphIndex> indexes = new MapMaker().weakKeys().makeMap();
+	
+	private final WeakReference<CouchDbConnector> db;
+	
+	private final String designDocumentId;
+	
+	private final String filter;
+	
+	private final Set<String> bindingGraphUuids = Sets.newSetFromMap(Maps.<String, Boolean> newConcurrentMap());
+	
+	private boolean isDesignDocumentInitialized = false;
+	
+	private volatile boolean isResolved = false;
+	
+	// The feed which keeps the resolved uuids up to date
+	private ChangesFeed changesFeed;
+	
+	private BindingGraphIndex(final CouchDbConnector db, final String designDocumentId, final String filterName) {
+		this.db = new WeakReference<CouchDbConnector>(db);
+		this.designDocumentId = designDocumentId;
+		this.filter = designDocumentId.substring(BindingGraphIndex.DESIGN_DOCUMENT_PREFIX.length()) + "/" + filterName;
+	}
+	
+	/*
+	 * Returns the index of the given connector
+	 * @param db the connector to the database
+	 * @param designDocumentId the design document which contains the "all"
+	 * view and the filter of the binding graphs
+	 * @param filterName the name of the filter which lets the changes of the
+	 * binding graphs pass
+	 */
+	static synchronized BindingGraphIndex getInstance(final CouchDbConnector db, final String designDocumentId,
+		final String filterName) {
+		Preconditions.checkNotNull(db, "Given connector is null!");
+		Preconditions.checkArgument(designDocumentId.startsWith(BindingGraphIndex.DESIGN_DOCUMENT_PREFIX),
+			"Given design document id is wrong!");
+		BindingGraphIndex index = BindingGraphIndex.indexes.get(db);
+		if (index == null) {
+			index = new BindingGraphIndex(db, designDocumentId, filterName);
+			BindingGraphIndex.indexes.put(db, index);
+		}
+		return index;
+	}
+	
+	synchronized void ensureDesignDocument(final CouchDbRepositorySupport<?> repository) {
+		if (!this.isDesignDocumentInitialized) {
+			repository.initStandardDesignDocument();
+			this.isDesignDocumentInitialized = true;
+		}
+	}
+	
+	Set<String> getBindingGraphUuids(final CouchDbRepositorySupport<?> repository) {
+		if (!this.isResolved) {
+			this.resolve(repository);
+		}
+		return ImmutableSet.copyOf(this.bindingGraphUuids);
+	}
+	
+	/*
+	 * Takes over a binding graph written by this process, so it is known before
+	 * its change arrives
+	 */
+	void add(final String bindingGraphUuid) {
+		this.bindingGraphUuids.add(bindingGraphUuid);
+	}
+	
+	void remove(final String bindingGraphUuid) {
+		this.bindingGraphUuids.remove(bindingGraphUuid);
+	}
+	
+	/*
+	 * Stops the changes feed, the uuids are resolved again by the next call
+	 */
+	synchronized void close() {
+		if (this.changesFeed != null) {
+			this.changesFeed.cancel();
+			this.changesFeed = null;
+		}
+		this.isResolved = false;
+	}
+	
+	private synchronized void resolve(final CouchDbRepositorySupport<?> repository) {
+		if (this.isResolved) {
+			return;
+		}
+		this.ensureDesignDocument(repository);
+		final CouchDbConnector db = this.getConnector();
+		// The feed delivers all changes after this sequence, so no binding graph
+		// is lost between the query and the start of the feed
+		final String since = db.getDbInfo().getUpdateSeqAsString();
+		final ViewQuery query = new ViewQuery().designDocId(this.designDocumentId).viewName(BindingGraphIndex.ALL_VIEW);
+		this.bindingGraphUuids.clear();
+		for (final ViewResult.Row row : db.queryView(query).getRows()) {
+			this.bindingGraphUuids.add(row.getId());
+		}
+		this.follow(db, since);
+		this.isResolved = true;
+	}
+	
+	private CouchDbConnector getConnector() {
+		final CouchDbConnector db = this.db.get();
+		Preconditions.checkState(db != null, "The connector of the index has been released!");
+		return db;
+	}
+	
+	private void follow(final CouchDbConnector db, final String since) {
+		final ChangesCommand command = new ChangesCommand.Builder().since(since).filter(this.filter).build();
+		final ChangesFeed feed = db.changesFeed(command);
+		this.changesFeed = feed;
+		// @formatter:off
+		new ThreadFactoryBuilder()
+			.setNameFormat("binding-graph-changes-%d")
+			.setDaemon(true)
+			.build()
+			.newThread(new Runnable() {
+				
+				@Override
+				@SuppressWarnings("synthetic-access")
+				public void run() {
+					BindingGraphIndex.this.consume(feed);
+				}
+			})
+			.start();
+		// @formatter:on
+	}
+	
+	private void consume(final ChangesFeed feed) {
+		try {
+			while (feed.isAlive()) {
+				final DocumentChange change = feed.next(BindingGraphIndex.RELEASE_CHECK_SECONDS, TimeUnit.SECONDS);
+				if (change == null) {
+					if (this.db.get() == null) {
+						feed.cancel();
+					}
+				}
+				else if (change.isDeleted()) {
+					this.bindingGraphUuids.remove(change.getId());
+				}
+				else {
+					this.bindingGraphUuids.add(change.getId());
+				}
+			}
+		}
+		catch (final InterruptedException e) {
+			BindingGraphIndex.logger.info("The changes feed of the binding graphs has been stopped");
+		}
+		catch (final IllegalStateException e) {
+			BindingGraphIndex.logger.info("The changes feed of the binding graphs has been stopped");
+		}
+		finally {
+			this.invalidate(feed);
+		}
+	}
+	
+	/*
+	 * The uuids aren't up to date without the feed, they are resolved again by
+	 * the next call
+	 */
+	private synchronized void invalidate(final ChangesFeed feed) {
+		if (this.changesFeed == feed) {
+			this.changesFeed = null;
+			this.isResolved = false;
+		}
+	}
+	
+}
@@ -17,28 +17,101 @@
  ******************************************************************************/
 package de.bitub.proitbau.common.versioning.couchdb.repository.support;
 
-import java.util.ArrayList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.ektorp.Attachment;
+import org.ektorp.AttachmentInputStream;
+import org.ektorp.BulkDeleteDocument;
+import org.ektorp.ComplexKey;
 import org.ektorp.CouchDbConnector;
+import org.ektorp.DbAccessException;
+import org.ektorp.DocumentNotFoundException;
+import org.ektorp.DocumentOperationResult;
 import org.ektorp.Options;
+import org.ektorp.Page;
+import org.ektorp.PageRequest;
 import org.ektorp.Revision;
+import org.ektorp.ViewQuery;
+import org.ektorp.UpdateConflictException;
+import org.ektorp.ViewResult;
 import org.ektorp.support.CouchDbRepositorySupport;
+import org.ektorp.support.Filter;
 import org.ektorp.support.View;
+import org.ektorp.support.Views;
 import org.slf4j.LoggerFactory;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
+import de.bitub.proitbau.common.versioning.couchdb.binding.graph.BindingGraphState;
+import de.bitub.proitbau.common.versioning.couchdb.binding.graph.VersionedSetDocument;
+import de.bitub.proitbau.common.versioning.couchdb.binding.graph.VersionedSetRepresentation;
 import de.bitub.proitbau.common.versioning.couchdb.binding.graph.VersionedSetWrapper;
 import de.bitub.proitbau.common.versioning.couchdb.binding.graph.iBindingGraph;
+import de.bitub.proitbau.common.versioning.couchdb.binding.graph.iVersionedSetLoader;
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
+import de.bitub.proitbau.common.versioning.util.VersionedSetUtil;
 
-@View(
-	name = "all",
-	map = "function(doc) { if (doc.T == 'BindingGraph' ) emit( null, doc._id )}")
+// @formatter:off
+@Views({
+	@View(
+		name = "all",
+		map = "function(doc) { if (doc.T == 'BindingGraph' ) emit( null, doc._id )}"),
+	// The generation of the revision orders the states which have the same date
+	@View(
+		name = "binding_graph_states",
+		map = "function(doc) { if (doc.T == 'BindingGraphState' ) emit( [doc.bindingGraphUuid, doc.date, doc.bindingGraphGeneration], doc.bindingGraphGeneration )}"),
+	@View(
+		name = "state_by_generation",
+		map = "function(doc) { if (doc.T == 'BindingGraphState' ) emit( [doc.bindingGraphUuid, doc.bindingGraphGeneration], null )}")
+})
+// The deleted binding graphs keep their type
+@Filter(
+	name = "binding_graph_changes",
+	function = "function(doc, req) { return doc.T == 'BindingGraph' }")
+// @formatter:on
 public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBindingGraph> implements
 	iBindingGraphRepositorySupport {
 	
@@ -50,18 +123,118 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	private static final int MAXIMAL_REVISION_LENGTH = 36;
 	private static final int MINIMAL_REVISION_LENGTH = 34;
 	private static final int UUID_LENGTH = 36;
-	private static final int NUMBER_OF_PREV_REV = 0;
+	private static final int NUMBER_OF_PREV_REV = 1;
 	private static final int NUMBER_OF_ACTUAL_REV = 0;
+	private static final int NUMBER_OF_PREV_STATE = 1;
+	private static final int NUMBER_OF_ACTUAL_STATE = 0;
+	private static final String STATES_VIEW = "binding_graph_states";
+	private static final String STATE_BY_GENERATION_VIEW = "state_by_generation";
+	private static final String AVAILABLE_REVISION = "available";
+	private static final String BINDING_GRAPHS_FILTER = "binding_graph_changes";
+	private static final String ALL_VIEW = "all";
+	private static final String BINDING_GRAPH_TYPE = "BindingGraph";
+	private static final String PAYLOAD_ATTACHMENT = "versionedSet";
+	private static final String ATTACHMENTS_FIELD = "_attachments";
+	// Limits of a single _bulk_docs request with documents of versioned sets
+	private static final int MAXIMAL_BULK_SIZE = 100;
+	private static final int MAXIMAL_BULK_OBJECTS = 20000;
+	// Number of bulk requests which are sent at the same time
+	private static final int BULK_THREADS = 4;
+	// Versioned sets with more objects are streamed by their own request
+	private static final int STREAMED_VERSIONED_SET_OBJECTS = 10000;
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+	// Serializes the streamed documents into the bodies of their requests
+	// @formatter:off
+	private static final ExecutorService STREAM_EXECUTOR_SERVICE = Executors.newCachedThreadPool(
+		new ThreadFactoryBuilder()
+			.setNameFormat("binding-graph-stream-%d")
+			.setDaemon(true)
+			.build());
+	// @formatter:on
+	// Upper bound of the estimated size of the cached documents in bytes
+	private static final long MAXIMAL_CACHE_WEIGHT = 64L * 1024 * 1024;
+	private static final int ESTIMATED_DOCUMENT_BYTES = 512;
+	private static final int ESTIMATED_FINGERPRINT_BYTES = 128;
+	private static final int ESTIMATED_REPRESENTATION_BYTES = 256;
+	// Versioned sets are stored as full snapshots only
+	private static final int NO_DELTAS = 0;
+	
+	private final ExecutorService bulkExecutorService;
+	
+	private final PayloadEncoding payloadEncoding;
+	
+	// Writes the documents of versioned sets, the objects of other versioned
+	// sets are written as references
+	private final ObjectMapper objectMapper;
+	
+	// Every versioned set which is the snapshotInterval-th revision since the
+	// last snapshot is stored as a full snapshot, the others as deltas
+	private final int snapshotInterval;
+	
+	// Decoded states of binding graphs and encoded VersionedSetWrappers by the
+	// id and the revision of their documents. A revision of a document isn't
+	// changed, so the cached documents are never invalidated. The documents of
+	// versioned sets are written once, so they are cached encoded by their id
+	// only.
+	private final Cache<DocumentRevision, Object> cache;
+	
+	// Ensures the design document and knows the binding graphs of the database
+	private final BindingGraphIndex index;
 	
 	public BindingGraphRepositorySupport(final CouchDbConnector couchDbConnector) {
+		this(couchDbConnector, BindingGraphRepositorySupport.createBulkExecutorService());
+	}
+	
+	public BindingGraphRepositorySupport(final CouchDbConnector couchDbConnector,
+		final ExecutorService bulkExecutorService) {
+		this(couchDbConnector, bulkExecutorService, BindingGraphRepositorySupport.MAXIMAL_CACHE_WEIGHT);
+	}
+	
+	public BindingGraphRepositorySupport(final CouchDbConnector couchDbConnector,
+		final ExecutorService bulkExecutorService, final long maximalCacheWeight) {
+		this(couchDbConnector, bulkExecutorService, maximalCacheWeight, PayloadEncoding.JSON);
+	}
+	
+	public BindingGraphRepositorySupport(final CouchDbConnector couchDbConnector,
+		final ExecutorService bulkExecutorService, final long maximalCacheWeight, final PayloadEncoding payloadEncoding) {
+		this(couchDbConnector, bulkExecutorService, maximalCacheWeight, payloadEncoding,
+			BindingGraphRepositorySupport.NO_DELTAS);
+	}
+	
+	/*
+	 * @param snapshotInterval a versioned set is stored as a delta against its
+	 * predecessor in versioning, every snapshotInterval-th revision is stored as
+	 * a full snapshot. The value 0 or 1 stores full snapshots only.
+	 */
+	public BindingGraphRepositorySupport(final CouchDbConnector couchDbConnector,
+		final ExecutorService bulkExecutorService, final long maximalCacheWeight, final PayloadEncoding payloadEncoding,
+		final int snapshotInterval) {
 		super(iBindingGraph.class, couchDbConnector);
+		Preconditions.checkNotNull(bulkExecutorService, "Given executor service is null!");
+		Preconditions.checkArgument(maximalCacheWeight >= 0, "Maximal weight of the cache is negative!");
+		Preconditions.checkNotNull(payloadEncoding, "Given payload encoding is null!");
+		Preconditions.checkArgument(snapshotInterval >= 0, "Given snapshot interval is negative!");
+		this.bulkExecutorService = bulkExecutorService;
+		this.payloadEncoding = payloadEncoding;
+		this.snapshotInterval = snapshotInterval;
+		this.objectMapper = couchDbConnector.getObjectMapper().copy();
+		this.objectMapper.registerModule(new VersionedObjectReferenceModule());
+		this.index = BindingGraphIndex.getInstance(couchDbConnector, super.stdDesignDocumentId,
+			BindingGraphRepositorySupport.BINDING_GRAPHS_FILTER);
+		// @formatter:off
+		this.cache = CacheBuilder.newBuilder()
+			.maximumWeight(maximalCacheWeight)
+			.weigher(new DocumentWeigher())
+			.recordStats()
+			.build();
+		// @formatter:on
 	}
 	
 	/*
 	 * Returns a binding graph object which was loaded from the database.
 	 * This implementation is faster then <code>read(boolean
 	 * readVersionedSetWrapper)</code>, because this method doesn't execute
-	 * <code>getAllBindingGraphs()</code> method to find
+	 * <code>getBindingGraphUuid()</code> method to find
 	 * all binding graphs and their uuids.
 	 * @param uuid uuid of the binding graph object
 	 * @param readVersionedSetWrapper load or not the content of binding graph
@@ -70,8 +243,19 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 */
 	@Override
 	public iBindingGraph read(final String uuid, final boolean readVersionedSetWrapper) {
-		Preconditions.checkArgument(this.isExists(uuid), "Binding graph doesn't exist!");
-		final iBindingGraph bindingGraph = super.get(uuid);
+		this.checkUuidCorrectness(uuid);
+		final String revision = this.findCurrentRevision(uuid);
+		Preconditions.checkArgument(revision != null, "Binding graph doesn't exist!");
+		final BindingGraphState cachedState = this.getCachedState(uuid, revision);
+		final iBindingGraph bindingGraph;
+		if (cachedState != null) {
+			bindingGraph = cachedState.createBindingGraph();
+		}
+		else {
+			bindingGraph = super.get(uuid);
+			this.cacheState(BindingGraphRepositorySupport.createSnapshot(bindingGraph));
+		}
+		this.setVersionedSetLoader(bindingGraph);
 		if (readVersionedSetWrapper) {
 			bindingGraph.setVersionedSetWrapper(this.readVersionedSetWrapper(bindingGraph.getVersionedSetWrapperUuid()));
 		}
@@ -87,7 +271,7 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 * Returns a binding graph object which was loaded from the database.
 	 * This implementation is slower then <code>read(String uuid, boolean
 	 * readVersionedSetWrapper)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code> method to
+	 * because this method executes <code>getBindingGraphUuid()</code> method to
 	 * find all binding graphs and their uuids.
 	 * @param readVersionedSetWrapper load or not the content of binding graph
 	 * (VersionedSetWrapper which contains versioned sets)
@@ -95,20 +279,7 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 */
 	@Override
 	public iBindingGraph read(final boolean readVersionedSetWrapper) {
-		final List<iBindingGraph> listOfBindingGraphs = this.getAllBindingGraphs();
-		Preconditions.checkArgument(listOfBindingGraphs.size() != 0,
-			"No binding graph objects have been found in the database!");
-		Preconditions.checkArgument(listOfBindingGraphs.size() == 1, "More then one binding graph exsits in the database!");
-		final iBindingGraph bindingGraph = listOfBindingGraphs.get(0);
-		if (readVersionedSetWrapper) {
-			bindingGraph.setVersionedSetWrapper(this.readVersionedSetWrapper(bindingGraph.getVersionedSetWrapperUuid()));
-		}
-		// // To keep uuid consistency we assign the same uuid for this temporary
-		// // VersionedSetWrapper
-		// else {
-		// bindingGraph.getVersionedSetWrapper().setUuid(bindingGraph.getVersionedSetWrapperUuid());
-		// }
-		return bindingGraph;
+		return this.read(this.getBindingGraphUuid(), readVersionedSetWrapper);
 	}
 	
 	/*
@@ -122,20 +293,14 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	@Override
 	public void update(final iBindingGraph bindingGraph, final boolean updateVersionedSetWrapper) {
 		Preconditions.checkNotNull(bindingGraph, "Given binding graph  is null!");
-		if (!this.isAnyExists() || this.isExists(bindingGraph.getUuid())) {
-			try {
-				super.update(bindingGraph);
-			}
-			catch (final org.ektorp.UpdateConflictException e) {
-				BindingGraphRepositorySupport.logger
-					.error(
-						"Some problems during the update process, the revision number of the binding graph object might be in inconsistent state",
-						e);
-			}
+		// Binding graphs known by the index are updated without asking the
+		// database
+		final boolean isIndexed = this.index.getBindingGraphUuids(this).contains(bindingGraph.getUuid());
+		if (isIndexed || !this.isAnyExists() || this.isExists(bindingGraph.getUuid())) {
 			if (updateVersionedSetWrapper) {
 				Preconditions.checkNotNull(bindingGraph.getVersionedSetWrapper(), "VersionedSetWrapper is null!");
-				this.db.update(bindingGraph.getVersionedSetWrapper());
 			}
+			this.writeBindingGraph(bindingGraph, updateVersionedSetWrapper);
 		}
 		else {
 			throw new IllegalArgumentException("The binding graph already exists in the database");
@@ -147,7 +312,7 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 * This implementation is faster then
 	 * <code>delete(String uuid, boolean deleteVersionedSetWrapper)</code>
 	 * and <code>delete(boolean deleteVersionedSetWrapper)</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids and doesn't load binding
 	 * graph object by its uuid
 	 * <code>read(String uuid, boolean readVersionedSetWrapper)</code>.
@@ -164,14 +329,16 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 		if (deleteVersionedSetWrapper) {
 			this.deleteVersionedSetWrapper(bindingGraph.getVersionedSetWrapperUuid());
 		}
-		super.remove(bindingGraph);
+		this.removeBindingGraph(bindingGraph);
+		this.index.remove(uuid);
+		this.deleteStates(uuid);
 	}
 	
 	/*
 	 * Deletes a binding graph object from the database.
 	 * This implementation is faster then <code>delete(boolean
 	 * deleteVersionedSetWrapper)</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids, but this method is a
 	 * little bit slower then <code>delete(iBindingGraph bindingGraph, boolean
 	 * deleteVersionedSetWrapper)</code>,
@@ -187,7 +354,9 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 		if (deleteVersionedSetWrapper) {
 			this.deleteVersionedSetWrapper(bindingGraph.getVersionedSetWrapperUuid());
 		}
-		super.remove(bindingGraph);
+		this.removeBindingGraph(bindingGraph);
+		this.index.remove(uuid);
+		this.deleteStates(uuid);
 	}
 	
 	/*
@@ -196,29 +365,21 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 * <code>delete(iBindingGraph bindingGraph, boolean
 	 * deleteVersionedSetWrapper)</code>
 	 * and <code>delete(String uuid, boolean deleteVersionedSetWrapper)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code> method to
+	 * because this method executes <code>getBindingGraphUuid()</code> method to
 	 * find all binding graphs and their uuids.
 	 * @param deleteVersionedSetWrapper delete or not the content of binding graph
 	 * (VersionedSetWrapper which contains versioned sets)
 	 */
 	@Override
 	public void delete(final boolean deleteVersionedSetWrapper) {
-		final List<iBindingGraph> listOfBindingGraphs = this.getAllBindingGraphs();
-		Preconditions.checkArgument(listOfBindingGraphs.size() != 0,
-			"No binding graph objects have been found in the database!");
-		Preconditions.checkArgument(listOfBindingGraphs.size() == 1, "More then one binding graph exsits in the database!");
-		final iBindingGraph bindingGraph = listOfBindingGraphs.get(0);
-		super.remove(bindingGraph);
-		if (deleteVersionedSetWrapper) {
-			this.deleteVersionedSetWrapper(bindingGraph.getVersionedSetWrapperUuid());
-		}
+		this.delete(this.getBindingGraphUuid(), deleteVersionedSetWrapper);
 	}
 	
 	/*
 	 * Gets previous state of a binding graph object state from the database.
 	 * This implementation is faster then <code>getPreviousState(boolean
 	 * readVersionedSetWrapper)</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param uuid uuid of the binding graph object
 	 * @param readVersionedSetWrapper load or not the content of binding graph
@@ -229,12 +390,23 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	public iBindingGraph getPreviousState(final String uuid, final boolean readVersionedSetWrapper) {
 		Preconditions.checkArgument(this.isExists(uuid), "Binding graph doesn't exist!");
 		final List<Revision> revisions = super.db.getRevisions(uuid);
-		Preconditions.checkArgument(revisions.size() > 1,
-			"Only one state of the binding graph is avaliable in the database!");
-		// [0] - actual state, [n-1] - eldest state
-		final String previousRevision = revisions.get(BindingGraphRepositorySupport.NUMBER_OF_PREV_REV).getRev();
-		final Options options = new Options().revision(previousRevision);
-		final iBindingGraph bindingGraph = super.get(uuid, options);
+		final List<BindingGraphState> bindingGraphStates =
+			this.db.queryView(this.createStatesQuery(uuid).includeDocs(true).limit(2), BindingGraphState.class);
+		this.resolveBindingGraphRevisions(bindingGraphStates, revisions);
+		final iBindingGraph bindingGraph;
+		if (bindingGraphStates.size() > 1) {
+			for (final BindingGraphState bindingGraphState : bindingGraphStates) {
+				this.cacheState(bindingGraphState);
+			}
+			// [0] - actual state, [1] - previous state
+			bindingGraph = bindingGraphStates.get(BindingGraphRepositorySupport.NUMBER_OF_PREV_STATE).createBindingGraph();
+		}
+		else {
+			// The state before the first state document is kept by the old
+			// revision of the binding graph document
+			bindingGraph = this.getPreviousRevision(uuid, revisions);
+		}
+		this.setVersionedSetLoader(bindingGraph);
 		// This is absolutely necessary, otherwise if we try to update this binding
 		// graph, we will have an exception
 		bindingGraph.setRevision(revisions.get(BindingGraphRepositorySupport.NUMBER_OF_ACTUAL_REV).getRev());
@@ -248,7 +420,7 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 * Gets previous state of a binding graph object state from the database.
 	 * This implementation is slower then <code>getPreviousState(String uuid,
 	 * boolean readVersionedSetWrapper)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code> method to
+	 * because this method executes <code>getBindingGraphUuid()</code> method to
 	 * find all binding graphs and their uuids.
 	 * @param readVersionedSetWrapper load or not the content of binding graph
 	 * (VersionedSetWrapper which contains versioned sets)
@@ -256,31 +428,13 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 */
 	@Override
 	public iBindingGraph getPreviousState(final boolean readVersionedSetWrapper) {
-		final List<iBindingGraph> listOfBindingGraphs = this.getAllBindingGraphs();
-		Preconditions.checkArgument(listOfBindingGraphs.size() != 0,
-			"No binding graph objects have been found in the database!");
-		Preconditions.checkArgument(listOfBindingGraphs.size() == 1, "More then one binding graph exsits in the database!");
-		iBindingGraph bindingGraph = listOfBindingGraphs.get(0);
-		final List<Revision> revisions = super.db.getRevisions(bindingGraph.getUuid());
-		Preconditions.checkArgument(revisions.size() > 1,
-			"Only one state of the binding graph is avaliable in the database!");
-		// [0] - actual state, [n-1] - eldest state
-		final String previousRevision = revisions.get(BindingGraphRepositorySupport.NUMBER_OF_PREV_REV).getRev();
-		final Options options = new Options().revision(previousRevision);
-		bindingGraph = super.get(bindingGraph.getUuid(), options);
-		// This is absolutely necessary, otherwise if we try to update this binding
-		// graph, we will have an exception
-		bindingGraph.setRevision(revisions.get(BindingGraphRepositorySupport.NUMBER_OF_ACTUAL_REV).getRev());
-		if (readVersionedSetWrapper) {
-			bindingGraph.setVersionedSetWrapper(this.readVersionedSetWrapper(bindingGraph.getVersionedSetWrapperUuid()));
-		}
-		return bindingGraph;
+		return this.getPreviousState(this.getBindingGraphUuid(), readVersionedSetWrapper);
 	}
 	
 	/*
 	 * Gets all available revisions of a binding graph object from the database.
 	 * This implementation is faster then <code>getRevisions()</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param uuid uuid of the binding graph object
 	 * @return the list which contains all available revisions of the given domain
@@ -291,26 +445,36 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 		this.isExists(uuid);
 		Preconditions.checkArgument(super.contains(uuid), "Database doesn't contain this object!");
 		final List<Revision> revisions = super.db.getRevisions(uuid);
-		return revisions;
+		final List<Revision> stateRevisions = Lists.newArrayList();
+		int eldestGeneration = Integer.MAX_VALUE;
+		for (final ViewResult.Row row : this.db.queryView(this.createStatesQuery(uuid)).getRows()) {
+			final Revision revision = BindingGraphRepositorySupport.findRevision(revisions, row.getValueAsInt());
+			if (revision != null) {
+				stateRevisions.add(new Revision(revision.getRev(), BindingGraphRepositorySupport.AVAILABLE_REVISION));
+			}
+			eldestGeneration = Math.min(eldestGeneration, row.getValueAsInt());
+		}
+		// The binding graphs which were stored without state documents keep the
+		// states before the first state document only by their old revisions
+		for (final Revision revision : revisions) {
+			if (BindingGraphRepositorySupport.getGeneration(revision.getRev()) < eldestGeneration) {
+				stateRevisions.add(revision);
+			}
+		}
+		return stateRevisions;
 	}
 	
 	/*
 	 * Gets all available revisions of a binding graph object from the database.
 	 * This implementation is slower then <code>getRevisions(String uuid)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code> method to
+	 * because this method executes <code>getBindingGraphUuid()</code> method to
 	 * find all binding graphs and their uuids.
 	 * @return the list which contains all available revisions of the given domain
 	 * model object
 	 */
 	@Override
 	public List<Revision> getRevisions() {
-		final List<iBindingGraph> listOfBindingGraphs = this.getAllBindingGraphs();
-		Preconditions.checkArgument(listOfBindingGraphs.size() != 0,
-			"No binding graph objects have been found in the database!");
-		Preconditions.checkArgument(listOfBindingGraphs.size() == 1, "More then one binding graph exsits in the database!");
-		final iBindingGraph bindingGraph = listOfBindingGraphs.get(0);
-		final List<Revision> revisions = super.db.getRevisions(bindingGraph.getUuid());
-		return revisions;
+		return this.getRevisions(this.getBindingGraphUuid());
 	}
 	
 	/*
@@ -318,7 +482,7 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 * This implementation is faster then
 	 * <code>getSpecificState(String specificRevision, boolean
 	 * getVersionedSetWrapper)</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param uuid uuid of the binding graph
 	 * @param actualRevision an actual revision of the binding graph
@@ -334,12 +498,27 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 		Preconditions.checkArgument(this.isExists(uuid), "Binding graph doesn't exist!");
 		this.checkRevisionCorrectness(actualRevision);
 		this.checkRevisionCorrectness(specificRevision);
-		final List<Revision> revisions = this.getRevisions(uuid);
-		final Revision objectRevision = new Revision(specificRevision, "disk");
-		Preconditions.checkArgument(revisions.contains(objectRevision),
-			"Can not find the binding graph object with the given revision number!");
-		final Options options = new Options().revision(specificRevision);
-		final iBindingGraph bindingGraph = super.get(uuid, options);
+		BindingGraphState bindingGraphState = this.getCachedState(uuid, specificRevision);
+		if (bindingGraphState == null) {
+			this.initDesignDocument();
+			final ViewQuery query =
+				this.createQuery(BindingGraphRepositorySupport.STATE_BY_GENERATION_VIEW)
+					.key(ComplexKey.of(uuid, BindingGraphRepositorySupport.getGeneration(specificRevision))).includeDocs(true);
+			final List<BindingGraphState> bindingGraphStates = this.db.queryView(query, BindingGraphState.class);
+			if (!bindingGraphStates.isEmpty()) {
+				this.resolveBindingGraphRevisions(bindingGraphStates, super.db.getRevisions(uuid));
+			}
+			if (bindingGraphStates.isEmpty()
+					|| !specificRevision.equals(bindingGraphStates.get(0).getBindingGraphRevision())) {
+				bindingGraphState = BindingGraphRepositorySupport.createSnapshot(this.getSpecificRevision(uuid, specificRevision));
+			}
+			else {
+				bindingGraphState = bindingGraphStates.get(0);
+			}
+			this.cacheState(bindingGraphState);
+		}
+		final iBindingGraph bindingGraph = bindingGraphState.createBindingGraph();
+		this.setVersionedSetLoader(bindingGraph);
 		// This is absolutely necessary, otherwise if we try to update this binding
 		// graph, we will have an exception
 		bindingGraph.setRevision(actualRevision);
@@ -354,7 +533,7 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 * This implementation is slower then
 	 * <code>getSpecificState(String uuid, String actualRevision, String
 	 * specificRevision, final boolean readVersionedSetWrapper)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code>
+	 * because this method executes <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param actualRevision an actual revision of the binding graph
 	 * @param specificRevision which revision of the binding graph should be
@@ -366,32 +545,17 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	@Override
 	public iBindingGraph getSpecificState(final String specificRevision, final boolean readVersionedSetWrapper) {
 		this.checkRevisionCorrectness(specificRevision);
-		final List<iBindingGraph> listOfBindingGraphs = this.getAllBindingGraphs();
-		Preconditions.checkArgument(listOfBindingGraphs.size() != 0,
-			"No binding graph objects have been found in the database!");
-		Preconditions.checkArgument(listOfBindingGraphs.size() == 1, "More then one binding graph exsits in the database!");
-		iBindingGraph bindingGraph = listOfBindingGraphs.get(0);
-		final String actualRevision = bindingGraph.getRevision();
-		final List<Revision> revisions = this.getRevisions(bindingGraph.getUuid());
-		final Revision objectRevision = new Revision(specificRevision, "disk");
-		Preconditions.checkArgument(revisions.contains(objectRevision),
-			"Can not find the binding graph object with the given revision number!");
-		final Options options = new Options().revision(specificRevision);
-		bindingGraph = super.get(bindingGraph.getUuid(), options);
-		// This is absolutely necessary, otherwise if we try to update this binding
-		// graph, we will have an exception
-		bindingGraph.setRevision(actualRevision);
-		if (readVersionedSetWrapper) {
-			bindingGraph.setVersionedSetWrapper(this.readVersionedSetWrapper(bindingGraph.getVersionedSetWrapperUuid()));
-		}
-		return bindingGraph;
+		final String uuid = this.getBindingGraphUuid();
+		final String actualRevision = this.findCurrentRevision(uuid);
+		Preconditions.checkArgument(actualRevision != null, "Binding graph doesn't exist!");
+		return this.getSpecificState(uuid, actualRevision, specificRevision, readVersionedSetWrapper);
 	}
 	
 	/*
 	 * Gets all states of the binding graph object from the database.
 	 * This implementation is faster then <code>getAllStates(boolean
 	 * getVersionedSetWrapper)</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param uuid uuid of the binding graph
 	 * @param readVersionedSetWrapper load or not the content of binding graph
@@ -401,15 +565,24 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	@Override
 	public List<iBindingGraph> getAllStates(final String uuid, final boolean readVersionedSetWrapper) {
 		Preconditions.checkArgument(this.isExists(uuid), "Binding graph doesn't exist!");
-		final List<iBindingGraph> bindingGraphs = Lists.newArrayList();
 		final List<Revision> revisions = super.db.getRevisions(uuid);
-		for (final Revision revision : revisions) {
-			final Options options = new Options().revision(revision.getRev());
-			final iBindingGraph bindingGraph = super.get(uuid, options);
-			if (readVersionedSetWrapper) {
-				bindingGraph.setVersionedSetWrapper(this.readVersionedSetWrapper(bindingGraph.getVersionedSetWrapperUuid()));
-			}
+		final List<BindingGraphState> bindingGraphStates =
+			this.db.queryView(this.createStatesQuery(uuid).includeDocs(true), BindingGraphState.class);
+		this.resolveBindingGraphRevisions(bindingGraphStates, revisions);
+		final List<iBindingGraph> bindingGraphs = Lists.newArrayListWithCapacity(bindingGraphStates.size());
+		int eldestGeneration = Integer.MAX_VALUE;
+		for (final BindingGraphState bindingGraphState : bindingGraphStates) {
+			this.cacheState(bindingGraphState);
+			final iBindingGraph bindingGraph = bindingGraphState.createBindingGraph();
+			this.setVersionedSetLoader(bindingGraph);
 			bindingGraphs.add(bindingGraph);
+			eldestGeneration = Math.min(eldestGeneration, bindingGraphState.getBindingGraphGeneration());
+		}
+		// The binding graphs which were stored without state documents keep the
+		// states before the first state document only by their old revisions
+		bindingGraphs.addAll(this.getAllRevisions(uuid, revisions, eldestGeneration));
+		if (readVersionedSetWrapper) {
+			this.readVersionedSetWrappers(bindingGraphs);
 		}
 		return bindingGraphs;
 	}
@@ -418,7 +591,7 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 * Gets all states of the binding graph object from the database.
 	 * This implementation is slower then <code>getAllStates(String uuid, boolean
 	 * getVersionedSetWrapper)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code>
+	 * because this method executes <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param readVersionedSetWrapper load or not the content of binding graph
 	 * (VersionedSetWrapper which contains versioned sets)
@@ -426,22 +599,42 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 */
 	@Override
 	public List<iBindingGraph> getAllStates(final boolean readVersionedSetWrapper) {
-		final List<iBindingGraph> listOfBindingGraphs = this.getAllBindingGraphs();
-		Preconditions.checkArgument(listOfBindingGraphs.size() != 0,
-			"No binding graph objects have been found in the database!");
-		Preconditions.checkArgument(listOfBindingGraphs.size() == 1, "More then one binding graph exsits in the database!");
-		final List<iBindingGraph> bindingGraphs = new ArrayList<iBindingGraph>(10);
-		final iBindingGraph bindingGraph = listOfBindingGraphs.get(0);
-		final List<Revision> revisions = super.db.getRevisions(bindingGraph.getUuid());
-		for (final Revision revision : revisions) {
-			final Options options = new Options().revision(revision.getRev());
-			final iBindingGraph bindingGraphInSpecificState = super.get(bindingGraph.getUuid(), options);
-			if (readVersionedSetWrapper) {
-				bindingGraph.setVersionedSetWrapper(this.readVersionedSetWrapper(bindingGraph.getVersionedSetWrapperUuid()));
-			}
-			bindingGraphs.add(bindingGraphInSpecificState);
+		return this.getAllStates(this.getBindingGraphUuid(), readVersionedSetWrapper);
+	}
+	
+	/*
+	 * Gets one page of the states of the binding graph object from the
+	 * database, the newest state comes first. The VersionedSetWrappers of the
+	 * states aren't loaded.
+	 * @param uuid uuid of the binding graph
+	 * @param pageRequest the requested page, e.g.
+	 * <code>PageRequest.firstPage(int pageSize)</code>
+	 * @return the page with the states of the binding graph
+	 */
+	@Override
+	public Page<iBindingGraph> getStates(final String uuid, final PageRequest pageRequest) {
+		this.checkUuidCorrectness(uuid);
+		Preconditions.checkNotNull(pageRequest, "Page request is null!");
+		final Page<BindingGraphState> page =
+			this.db.queryForPage(this.createStatesQuery(uuid).includeDocs(true), pageRequest, BindingGraphState.class);
+		if (page.size() > 0) {
+			this.resolveBindingGraphRevisions(page, super.db.getRevisions(uuid));
 		}
-		return bindingGraphs;
+		final List<iBindingGraph> bindingGraphs = Lists.newArrayListWithCapacity(page.size());
+		for (final BindingGraphState bindingGraphState : page) {
+			this.cacheState(bindingGraphState);
+			final iBindingGraph bindingGraph = bindingGraphState.createBindingGraph();
+			this.setVersionedSetLoader(bindingGraph);
+			bindingGraphs.add(bindingGraph);
+		}
+		// @formatter:off
+		return new Page<iBindingGraph>(
+			bindingGraphs,
+			page.getTotalSize(),
+			page.getPageSize(),
+			page.getPreviousPageRequest(),
+			page.getNextPageRequest());
+		// @formatter:on
 	}
 	
 	/*
@@ -451,12 +644,13 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	 */
 	@Override
 	public boolean isAnyExists() {
-		BindingGraphRepositorySupport.logger.info("Load all binding graph objects from the database");
-		final List<iBindingGraph> listOfBindingGraphs = this.getAllBindingGraphs();
-		if (listOfBindingGraphs.size() > 0) {
+		if (!this.index.getBindingGraphUuids(this).isEmpty()) {
 			return true;
 		}
-		return false;
+		// The index might not know the binding graphs written by other processes
+		// yet
+		this.initDesignDocument();
+		return !this.db.queryView(this.createQuery(BindingGraphRepositorySupport.ALL_VIEW).limit(1)).isEmpty();
 	}
 	
 	/*
@@ -472,10 +666,16 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 		return super.contains(uuid);
 	}
 	
-	private List<iBindingGraph> getAllBindingGraphs() {
-		super.initStandardDesignDocument();
-		final List<iBindingGraph> listOfBindingGraphs = super.getAll();
-		return listOfBindingGraphs;
+	/*
+	 * Returns the uuid of the only binding graph in the database, the uuids of
+	 * all binding graphs are known by the index of the connector
+	 */
+	private String getBindingGraphUuid() {
+		final Set<String> bindingGraphUuids = this.index.getBindingGraphUuids(this);
+		Preconditions.checkArgument(bindingGraphUuids.size() != 0,
+			"No binding graph objects have been found in the database!");
+		Preconditions.checkArgument(bindingGraphUuids.size() == 1, "More then one binding graph exsits in the database!");
+		return bindingGraphUuids.iterator().next();
 	}
 	
 	private boolean checkRevisionCorrectness(final String revision) {
@@ -508,33 +708,1148 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 	public void eraseAndCreate(final iBindingGraph bindingGraph) {
 		Preconditions.checkNotNull(bindingGraph, "Binding graph is null!");
 		if (this.isAnyExists()) {
-			final List<iBindingGraph> listOfBindingGraphs = this.getAllBindingGraphs();
-			Preconditions.checkArgument(listOfBindingGraphs.size() != 0,
-				"No binding graph objects have been found in the database!");
-			Preconditions.checkArgument(listOfBindingGraphs.size() == 1,
-				"More then one binding graph exsits in the database!");
-			final iBindingGraph oldBindingGraph = listOfBindingGraphs.get(0);
+			final iBindingGraph oldBindingGraph = super.get(this.getBindingGraphUuid());
 			this.deleteVersionedSetWrapper(oldBindingGraph.getVersionedSetWrapperUuid());
-			super.remove(oldBindingGraph);
+			this.removeBindingGraph(oldBindingGraph);
+			this.index.remove(oldBindingGraph.getUuid());
+			this.deleteStates(oldBindingGraph.getUuid());
 		}
 		// This is necessary, because if for some reasons the revision number won't
 		// be equal null when we try to store the binding graph object first time we
 		// will have an exception
 		bindingGraph.setRevision(null);
-		super.update(bindingGraph);
+		bindingGraph.setStateUuid(null);
 		Preconditions.checkNotNull(bindingGraph.getVersionedSetWrapper(), "VersionedSetWrapper  is null!");
-		this.db.update(bindingGraph.getVersionedSetWrapper());
+		this.writeBindingGraph(bindingGraph, true);
 	}
 	
+	/*
+	 * Returns the VersionedSetWrapper in its current revision, it is decoded
+	 * from the cache if this revision was loaded before. The cache keeps the
+	 * VersionedSetWrapper and its versioned sets encoded, so every call returns
+	 * new instances, which the caller may change.
+	 */
 	private VersionedSetWrapper readVersionedSetWrapper(final String versionedSetWrapperUuid) {
 		this.checkUuidCorrectness(versionedSetWrapperUuid);
 		BindingGraphRepositorySupport.logger.info("Trying to get VersionedSetWrapper object from the: "
 																							+ this.db.getDatabaseName());
 		BindingGraphRepositorySupport.logger.info("VersionedSetWrapper's UUID: " + versionedSetWrapperUuid);
-		Preconditions.checkArgument(this.db.contains(versionedSetWrapperUuid),
-			"The VersionedSetWrapper with the given identifier doesn't exist!");
-		final VersionedSetWrapper versionedSetWrapper = this.db.get(VersionedSetWrapper.class, versionedSetWrapperUuid);
-		return versionedSetWrapper;
+		final String revision = this.findCurrentRevision(versionedSetWrapperUuid);
+		Preconditions.checkArgument(revision != null, "The VersionedSetWrapper with the given identifier doesn't exist!");
+		try {
+			final byte[] encodedVersionedSetWrapper =
+				(byte[]) this.cache.get(new DocumentRevision(versionedSetWrapperUuid, revision), new Callable<byte[]>() {
+					
+					@Override
+					@SuppressWarnings("synthetic-access")
+					public byte[] call() throws Exception {
+						final VersionedSetWrapper versionedSetWrapper =
+							BindingGraphRepositorySupport.this.db.get(VersionedSetWrapper.class, versionedSetWrapperUuid,
+								new Options().revision(revision));
+						List<VersionedSetDocument> versionedSetDocuments = Collections.emptyList();
+						if (!versionedSetWrapper.isLoaded()) {
+							versionedSetDocuments =
+								BindingGraphRepositorySupport.this.loadVersionedSetDocuments(versionedSetWrapper
+									.getVersionedSetUuids());
+						}
+						return BindingGraphRepositorySupport.this.encodeVersionedSetWrapper(versionedSetWrapper,
+							versionedSetDocuments);
+					}
+				});
+			return this.decodeVersionedSetWrapper(encodedVersionedSetWrapper);
+		}
+		catch (final ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+		catch (final UncheckedExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+		catch (final IOException e) {
+			BindingGraphRepositorySupport.logger.error(e.getMessage());
+			throw Throwables.propagate(e);
+		}
+	}
+	
+	/*
+	 * Encodes the VersionedSetWrapper followed by the documents of its
+	 * versioned sets as one array by the BinaryJsonCodec, the versioned sets
+	 * aren't linked yet.
+	 */
+	private byte[] encodeVersionedSetWrapper(final VersionedSetWrapper versionedSetWrapper,
+		final List<VersionedSetDocument> versionedSetDocuments) throws IOException {
+		final ObjectMapper objectMapper = this.objectMapper;
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final JsonGenerator generator = BinaryJsonCodec.getInstance().createGenerator(outputStream, objectMapper);
+		generator.writeStartArray();
+		objectMapper.writeValue(generator, versionedSetWrapper);
+		for (final VersionedSetDocument versionedSetDocument : versionedSetDocuments) {
+			objectMapper.writeValue(generator, versionedSetDocument);
+		}
+		generator.writeEndArray();
+		generator.close();
+		return outputStream.toByteArray();
+	}
+	
+	private VersionedSetWrapper decodeVersionedSetWrapper(final byte[] encodedVersionedSetWrapper) throws IOException {
+		final ObjectMapper objectMapper = this.objectMapper;
+		final JsonParser parser =
+			BinaryJsonCodec.getInstance().createParser(new ByteArrayInputStream(encodedVersionedSetWrapper), objectMapper);
+		try {
+			// The array and the VersionedSetWrapper
+			parser.nextToken();
+			parser.nextToken();
+			final VersionedSetWrapper versionedSetWrapper = objectMapper.readValue(parser, VersionedSetWrapper.class);
+			final List<VersionedSetDocument> versionedSetDocuments =
+				Lists.newArrayListWithCapacity(versionedSetWrapper.getVersionedSetUuids().size());
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				versionedSetDocuments.add(objectMapper.readValue(parser, VersionedSetDocument.class));
+			}
+			if (!versionedSetDocuments.isEmpty()) {
+				this.linkVersionedSets(versionedSetWrapper, versionedSetDocuments);
+			}
+			return versionedSetWrapper;
+		}
+		finally {
+			parser.close();
+		}
+	}
+	
+	/*
+	 * Loads the VersionedSetWrappers of the given binding graphs. The states of
+	 * a binding graph often refer to the same VersionedSetWrapper, so every
+	 * VersionedSetWrapper is loaded once and shared by these states, the
+	 * different VersionedSetWrappers are loaded at the same time.
+	 */
+	private void readVersionedSetWrappers(final List<iBindingGraph> bindingGraphs) {
+		final Map<String, Future<VersionedSetWrapper>> versionedSetWrappers = Maps.newLinkedHashMap();
+		for (final iBindingGraph bindingGraph : bindingGraphs) {
+			final String versionedSetWrapperUuid = bindingGraph.getVersionedSetWrapperUuid();
+			if (!versionedSetWrappers.containsKey(versionedSetWrapperUuid)) {
+				versionedSetWrappers.put(versionedSetWrapperUuid,
+					this.bulkExecutorService.submit(new Callable<VersionedSetWrapper>() {
+						
+						@Override
+						@SuppressWarnings("synthetic-access")
+						public VersionedSetWrapper call() throws Exception {
+							return BindingGraphRepositorySupport.this.readVersionedSetWrapper(versionedSetWrapperUuid);
+						}
+					}));
+			}
+		}
+		try {
+			for (final iBindingGraph bindingGraph : bindingGraphs) {
+				bindingGraph.setVersionedSetWrapper(versionedSetWrappers.get(bindingGraph.getVersionedSetWrapperUuid()).get());
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for (final Future<VersionedSetWrapper> versionedSetWrapper : versionedSetWrappers.values()) {
+				versionedSetWrapper.cancel(true);
+			}
+			throw new DbAccessException(e);
+		}
+		catch (final ExecutionException e) {
+			BindingGraphRepositorySupport.logger.error(e.getCause().getMessage());
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+	
+	/*
+	 * Loads the versioned set a representation of a binding graph refers to.
+	 * Only the documents of the versioned set and of the versioned sets it is
+	 * bound to which aren't loaded for this binding graph yet are loaded, the
+	 * documents of the same depth in binding are loaded in one request.
+	 * @param versionedSetUuid uuid of the versioned set
+	 * @param loadedVersionedSets the versioned sets loaded for the binding graph
+	 * by their uuids, the newly loaded versioned sets are added
+	 * @return the versioned set linked with its predecessors in binding, its
+	 * objects refer to the objects of these predecessors
+	 */
+	private VersionedSet loadVersionedSet(final String versionedSetUuid,
+		final Map<String, VersionedSet> loadedVersionedSets) {
+		this.checkUuidCorrectness(versionedSetUuid);
+		if (loadedVersionedSets.containsKey(versionedSetUuid)) {
+			return loadedVersionedSets.get(versionedSetUuid);
+		}
+		final Map<String, VersionedSet> versionedSets = Maps.newHashMap();
+		final Map<String, VersionedSetDocument> versionedSetDocuments = Maps.newHashMap();
+		Set<String> missingVersionedSetUuids = Collections.singleton(versionedSetUuid);
+		while (!missingVersionedSetUuids.isEmpty()) {
+			final Set<String> predecessorBindingUuids = Sets.newHashSet();
+			for (final VersionedSetDocument versionedSetDocument : this.readVersionedSetDocuments(missingVersionedSetUuids)) {
+				versionedSetDocuments.put(versionedSetDocument.getUuid(), versionedSetDocument);
+				versionedSets.put(versionedSetDocument.getUuid(), versionedSetDocument.getVersionedSet());
+				predecessorBindingUuids.addAll(versionedSetDocument.getPredecessorsBinding());
+			}
+			predecessorBindingUuids.removeAll(versionedSets.keySet());
+			predecessorBindingUuids.removeAll(loadedVersionedSets.keySet());
+			missingVersionedSetUuids = predecessorBindingUuids;
+		}
+		final Set<VersionedSet> linkedVersionedSets = Sets.newHashSet();
+		for (final VersionedSetDocument versionedSetDocument : versionedSetDocuments.values()) {
+			final Set<VersionedSet> predecessorsBinding =
+				Sets.newHashSetWithExpectedSize(versionedSetDocument.getPredecessorsBinding().size());
+			for (final String predecessorBindingUuid : versionedSetDocument.getPredecessorsBinding()) {
+				final VersionedSet predecessorBinding = versionedSets.get(predecessorBindingUuid);
+				if (predecessorBinding == null) {
+					final VersionedSet linkedVersionedSet = loadedVersionedSets.get(predecessorBindingUuid);
+					predecessorsBinding.add(linkedVersionedSet);
+					linkedVersionedSets.addAll(VersionedSetUtil.getInstance().getBound(linkedVersionedSet, true));
+				}
+				else {
+					predecessorsBinding.add(predecessorBinding);
+				}
+			}
+			versionedSetDocument.getVersionedSet().setPredecessorsBinding(predecessorsBinding);
+		}
+		// The objects refer only to objects of the versioned sets they are bound
+		// to, the versioned sets loaded before are linked already
+		VersionedObjectLinker.getInstance().link(versionedSets.values(), linkedVersionedSets);
+		loadedVersionedSets.putAll(versionedSets);
+		return versionedSets.get(versionedSetUuid);
+	}
+	
+	/*
+	 * Returns the documents of the given versioned sets, the documents which
+	 * aren't cached are loaded in one request.
+	 */
+	private List<VersionedSetDocument> readVersionedSetDocuments(final Collection<String> versionedSetUuids) {
+		final List<VersionedSetDocument> versionedSetDocuments = this.findVersionedSetDocuments(versionedSetUuids);
+		Preconditions.checkState(versionedSetDocuments.size() == versionedSetUuids.size(),
+			"Some versioned sets don't exist!");
+		return versionedSetDocuments;
+	}
+	
+	/*
+	 * Returns those documents of the given versioned sets which exist, the
+	 * documents which aren't cached are loaded in one request. The versioned
+	 * sets of the returned documents are complete, the deltas are applied
+	 * before the documents are cached. The documents are cached encoded, so
+	 * every call returns new documents which can be linked by the caller.
+	 */
+	private List<VersionedSetDocument> findVersionedSetDocuments(final Collection<String> versionedSetUuids) {
+		final List<VersionedSetDocument> versionedSetDocuments = Lists.newArrayListWithCapacity(versionedSetUuids.size());
+		final List<String> missingVersionedSetUuids = Lists.newArrayList();
+		for (final String versionedSetUuid : versionedSetUuids) {
+			final EncodedVersionedSetDocument encodedVersionedSetDocument =
+				(EncodedVersionedSetDocument) this.cache.getIfPresent(new DocumentRevision(versionedSetUuid, null));
+			if (encodedVersionedSetDocument == null) {
+				missingVersionedSetUuids.add(versionedSetUuid);
+			}
+			else {
+				versionedSetDocuments.add(this.decodeVersionedSetDocument(encodedVersionedSetDocument));
+			}
+		}
+		if (!missingVersionedSetUuids.isEmpty()) {
+			final ViewQuery query = new ViewQuery().allDocs().includeDocs(true).keys(missingVersionedSetUuids);
+			query.setIgnoreNotFound(true);
+			final List<VersionedSetDocument> loadedVersionedSetDocuments = this.db.queryView(query, VersionedSetDocument.class);
+			this.readPayloads(loadedVersionedSetDocuments);
+			this.applyDeltas(loadedVersionedSetDocuments);
+			// The cached documents can become the predecessors of deltas
+			if (this.snapshotInterval > 1) {
+				this.createObjectFingerprints(loadedVersionedSetDocuments);
+			}
+			for (final VersionedSetDocument versionedSetDocument : loadedVersionedSetDocuments) {
+				this.cache.put(new DocumentRevision(versionedSetDocument.getUuid(), null),
+					this.encodeVersionedSetDocument(versionedSetDocument));
+				versionedSetDocuments.add(versionedSetDocument);
+			}
+		}
+		return versionedSetDocuments;
+	}
+	
+	/*
+	 * Encodes the given document by the BinaryJsonCodec, the versioned set
+	 * isn't linked yet
+	 */
+	private EncodedVersionedSetDocument encodeVersionedSetDocument(final VersionedSetDocument versionedSetDocument) {
+		final ObjectMapper objectMapper = this.objectMapper;
+		try {
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			final JsonGenerator generator = BinaryJsonCodec.getInstance().createGenerator(outputStream, objectMapper);
+			objectMapper.writeValue(generator, versionedSetDocument);
+			generator.close();
+			// @formatter:off
+			return new EncodedVersionedSetDocument(
+				outputStream.toByteArray(),
+				(versionedSetDocument.getObjectFingerprints() == null) ? null : ImmutableMap.copyOf(versionedSetDocument.getObjectFingerprints()));
+			// @formatter:on
+		}
+		catch (final IOException e) {
+			BindingGraphRepositorySupport.logger.error(e.getMessage());
+			throw Throwables.propagate(e);
+		}
+	}
+	
+	private VersionedSetDocument decodeVersionedSetDocument(final EncodedVersionedSetDocument encodedVersionedSetDocument) {
+		final ObjectMapper objectMapper = this.objectMapper;
+		try {
+			final JsonParser parser =
+				BinaryJsonCodec.getInstance().createParser(new ByteArrayInputStream(encodedVersionedSetDocument.getBytes()),
+					objectMapper);
+			try {
+				final VersionedSetDocument versionedSetDocument = objectMapper.readValue(parser, VersionedSetDocument.class);
+				versionedSetDocument.setObjectFingerprints(encodedVersionedSetDocument.getObjectFingerprints());
+				return versionedSetDocument;
+			}
+			finally {
+				parser.close();
+			}
+		}
+		catch (final IOException e) {
+			BindingGraphRepositorySupport.logger.error(e.getMessage());
+			throw Throwables.propagate(e);
+		}
+	}
+	
+	/*
+	 * Loads the versioned sets of the given documents which are stored as
+	 * attachments, the attachments are loaded at the same time. The calling
+	 * thread loads the attachments which weren't started by the executor
+	 * itself, so it never waits for a task which is queued behind the task it
+	 * is running in.
+	 */
+	private void readPayloads(final List<VersionedSetDocument> versionedSetDocuments) {
+		final Map<VersionedSetDocument, FutureTask<VersionedSetDocument>> payloads = Maps.newLinkedHashMap();
+		for (final VersionedSetDocument versionedSetDocument : versionedSetDocuments) {
+			if (versionedSetDocument.getVersionedSet() == null) {
+				final FutureTask<VersionedSetDocument> payload =
+					new FutureTask<VersionedSetDocument>(new Callable<VersionedSetDocument>() {
+					
+					@Override
+					@SuppressWarnings("synthetic-access")
+					public VersionedSetDocument call() throws Exception {
+						return BindingGraphRepositorySupport.this.readPayload(versionedSetDocument);
+					}
+				});
+				payloads.put(versionedSetDocument, payload);
+				// The first attachment is loaded by the calling thread anyway
+				if (payloads.size() > 1) {
+					this.bulkExecutorService.execute(payload);
+				}
+			}
+		}
+		try {
+			for (final Map.Entry<VersionedSetDocument, FutureTask<VersionedSetDocument>> payload : payloads.entrySet()) {
+				payload.getValue().run();
+				final VersionedSetDocument payloadDocument = payload.getValue().get();
+				payload.getKey().setVersionedSet(payloadDocument.getVersionedSet());
+				payload.getKey().setRemovedObjects(payloadDocument.getRemovedObjects());
+				payload.getKey().setRemovedFieldUuidsPairs(payloadDocument.getRemovedFieldUuidsPairs());
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for (final FutureTask<VersionedSetDocument> payload : payloads.values()) {
+				payload.cancel(true);
+			}
+			throw new DbAccessException(e);
+		}
+		catch (final ExecutionException e) {
+			BindingGraphRepositorySupport.logger.error(e.getCause().getMessage());
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+	
+	/*
+	 * Decodes the versioned set from the attachment of its document, the
+	 * content type of the attachment tells its encoding. The attachment
+	 * contains the whole document, so the versioned set is mapped by the same
+	 * mix-ins as a versioned set which is a part of the JSON document. The
+	 * attachment is parsed while it is received, it is never buffered.
+	 */
+	private VersionedSetDocument readPayload(final VersionedSetDocument versionedSetDocument) throws IOException {
+		final Attachment attachment = versionedSetDocument.getAttachments().get(BindingGraphRepositorySupport.PAYLOAD_ATTACHMENT);
+		Preconditions.checkState(attachment != null, "The document of the versioned set " + versionedSetDocument.getUuid()
+																									+ " contains no versioned set!");
+		final ObjectMapper objectMapper = this.objectMapper;
+		final AttachmentInputStream inputStream =
+			this.db.getAttachment(versionedSetDocument.getUuid(), BindingGraphRepositorySupport.PAYLOAD_ATTACHMENT,
+				versionedSetDocument.getRevision());
+		try {
+			final VersionedSetDocument payload;
+			if (BinaryJsonCodec.CONTENT_TYPE.equals(attachment.getContentType())) {
+				payload =
+					objectMapper.readValue(BinaryJsonCodec.getInstance().createParser(inputStream, objectMapper),
+						VersionedSetDocument.class);
+			}
+			else {
+				payload = objectMapper.readValue(inputStream, VersionedSetDocument.class);
+			}
+			return payload;
+		}
+		finally {
+			inputStream.close();
+		}
+	}
+	
+	/*
+	 * Replaces the versioned set of the document by an attachment which
+	 * contains the whole document encoded by the BinaryJsonCodec. The
+	 * attachment is sent inline, so the document and its attachment are
+	 * written by the same bulk request.
+	 */
+	private void writePayload(final VersionedSetDocument versionedSetDocument) throws IOException {
+		final ObjectMapper objectMapper = this.objectMapper;
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final JsonGenerator generator = BinaryJsonCodec.getInstance().createGenerator(outputStream, objectMapper);
+		objectMapper.writeValue(generator, versionedSetDocument);
+		generator.close();
+		versionedSetDocument.setVersionedSet(null);
+		versionedSetDocument.setRemovedObjects(Sets.<String> newHashSet());
+		versionedSetDocument.setRemovedFieldUuidsPairs(Maps.<String, Set<String>> newHashMap());
+		// @formatter:off
+		versionedSetDocument.getAttachments().put(
+			BindingGraphRepositorySupport.PAYLOAD_ATTACHMENT,
+			new Attachment(
+				BindingGraphRepositorySupport.PAYLOAD_ATTACHMENT,
+				Base64Variants.getDefaultVariant().encode(outputStream.toByteArray()),
+				BinaryJsonCodec.CONTENT_TYPE));
+		// @formatter:on
+	}
+	
+	/*
+	 * Completes the versioned sets of the given delta documents by their
+	 * predecessors in versioning. The predecessors are read by
+	 * readVersionedSetDocuments, so they are complete and cached and every
+	 * delta of a chain is applied only once.
+	 */
+	private void applyDeltas(final List<VersionedSetDocument> versionedSetDocuments) {
+		final Set<String> baseUuids = Sets.newHashSet();
+		for (final VersionedSetDocument versionedSetDocument : versionedSetDocuments) {
+			if (versionedSetDocument.isDelta()) {
+				baseUuids.add(versionedSetDocument.getDeltaBase());
+			}
+		}
+		if (baseUuids.isEmpty()) {
+			return;
+		}
+		final Map<String, VersionedSetDocument> baseDocuments = Maps.newHashMapWithExpectedSize(baseUuids.size());
+		for (final VersionedSetDocument baseDocument : this.readVersionedSetDocuments(baseUuids)) {
+			baseDocuments.put(baseDocument.getUuid(), baseDocument);
+		}
+		final ObjectMapper objectMapper = this.objectMapper;
+		try {
+			for (final VersionedSetDocument versionedSetDocument : versionedSetDocuments) {
+				if (versionedSetDocument.isDelta()) {
+					VersionedSetDeltaCodec.getInstance().applyDelta(versionedSetDocument,
+						baseDocuments.get(versionedSetDocument.getDeltaBase()), objectMapper);
+				}
+			}
+		}
+		catch (final IOException e) {
+			BindingGraphRepositorySupport.logger.error(e.getMessage());
+			throw Throwables.propagate(e);
+		}
+	}
+	
+	private void createObjectFingerprints(final List<VersionedSetDocument> versionedSetDocuments) {
+		final ObjectMapper objectMapper = this.objectMapper;
+		try {
+			for (final VersionedSetDocument versionedSetDocument : versionedSetDocuments) {
+				if (versionedSetDocument.getObjectFingerprints() == null) {
+					versionedSetDocument.setObjectFingerprints(VersionedSetDeltaCodec.getInstance().createFingerprints(
+						versionedSetDocument.getVersionedSet().getVersionedObjects(), objectMapper));
+				}
+			}
+		}
+		catch (final IOException e) {
+			BindingGraphRepositorySupport.logger.error(e.getMessage());
+			throw Throwables.propagate(e);
+		}
+	}
+	
+	/*
+	 * Loads the documents of the given versioned sets of a wrapper in one
+	 * request, the versioned sets of the returned documents are complete.
+	 */
+	private List<VersionedSetDocument> loadVersionedSetDocuments(final List<String> versionedSetUuids) {
+		final ViewQuery query = new ViewQuery().allDocs().includeDocs(true).keys(versionedSetUuids);
+		final List<VersionedSetDocument> versionedSetDocuments = this.db.queryView(query, VersionedSetDocument.class);
+		Preconditions.checkState(versionedSetDocuments.size() == versionedSetUuids.size(),
+			"Some versioned sets of the VersionedSetWrapper don't exist!");
+		this.readPayloads(versionedSetDocuments);
+		this.applyDeltas(versionedSetDocuments);
+		return versionedSetDocuments;
+	}
+	
+	/*
+	 * Links the versioned sets of the given documents with their predecessors
+	 * in binding and the references between their objects and sets them to the
+	 * given wrapper.
+	 */
+	private void linkVersionedSets(final VersionedSetWrapper versionedSetWrapper,
+		final List<VersionedSetDocument> versionedSetDocuments) {
+		final List<String> versionedSetUuids = versionedSetWrapper.getVersionedSetUuids();
+		final Map<String, VersionedSet> versionedSets = Maps.newHashMapWithExpectedSize(versionedSetDocuments.size());
+		for (final VersionedSetDocument versionedSetDocument : versionedSetDocuments) {
+			versionedSets.put(versionedSetDocument.getUuid(), versionedSetDocument.getVersionedSet());
+		}
+		for (final VersionedSetDocument versionedSetDocument : versionedSetDocuments) {
+			final Set<VersionedSet> predecessorsBinding =
+				Sets.newHashSetWithExpectedSize(versionedSetDocument.getPredecessorsBinding().size());
+			for (final String predecessorBindingUuid : versionedSetDocument.getPredecessorsBinding()) {
+				final VersionedSet predecessorBinding = versionedSets.get(predecessorBindingUuid);
+				Preconditions.checkState(predecessorBinding != null, "The bound versioned set " + predecessorBindingUuid
+																															+ " isn't a part of the VersionedSetWrapper!");
+				predecessorsBinding.add(predecessorBinding);
+			}
+			versionedSetDocument.getVersionedSet().setPredecessorsBinding(predecessorsBinding);
+		}
+		VersionedObjectLinker.getInstance().link(versionedSets.values());
+		final Set<VersionedSet> orderedVersionedSets = Sets.newLinkedHashSet();
+		for (final String versionedSetUuid : versionedSetUuids) {
+			orderedVersionedSets.add(versionedSets.get(versionedSetUuid));
+		}
+		versionedSetWrapper.setVersionedsSets(orderedVersionedSets);
+	}
+	
+	/*
+	 * Stores the binding graph and optionally its VersionedSetWrapper. The
+	 * documents of the new versioned sets are written first, the wrapper, the
+	 * binding graph and the document of its new state are written afterwards
+	 * in one request, so the binding graph never refers to documents which
+	 * don't exist. The state of a binding graph which couldn't be written is
+	 * deleted again.
+	 */
+	private void writeBindingGraph(final iBindingGraph bindingGraph, final boolean writeVersionedSetWrapper) {
+		final List<Object> documents = Lists.newArrayListWithCapacity(2);
+		if (writeVersionedSetWrapper) {
+			this.writeVersionedSets(bindingGraph.getVersionedSetWrapper());
+			documents.add(bindingGraph.getVersionedSetWrapper());
+		}
+		// The new revision of the binding graph isn't known before it is written,
+		// so its state refers to the generation of this revision
+		final BindingGraphState bindingGraphState =
+			new BindingGraphState(bindingGraph, this.findActualStateUuid(bindingGraph.getUuid()));
+		bindingGraphState.setBindingGraphGeneration(bindingGraph.getRevision() == null ? 1 : BindingGraphRepositorySupport
+			.getGeneration(bindingGraph.getRevision()) + 1);
+		final String previousStateUuid = bindingGraph.getStateUuid();
+		bindingGraph.setStateUuid(bindingGraphState.getUuid());
+		documents.add(bindingGraph);
+		documents.add(bindingGraphState);
+		boolean isBindingGraphWritten = true;
+		boolean isStateWritten = true;
+		for (final DocumentOperationResult documentOperationResult : this.db.executeBulk(documents)) {
+			BindingGraphRepositorySupport.logger.error("Some problems during the update process of the document "
+																									+ documentOperationResult.getId()
+																									+ ", its revision number might be in inconsistent state: "
+																									+ documentOperationResult.getError() + ", "
+																									+ documentOperationResult.getReason());
+			if (bindingGraph.getUuid().equals(documentOperationResult.getId())) {
+				isBindingGraphWritten = false;
+			}
+			else if (bindingGraphState.getUuid().equals(documentOperationResult.getId())) {
+				isStateWritten = false;
+			}
+		}
+		if (isBindingGraphWritten) {
+			this.index.add(bindingGraph.getUuid());
+			bindingGraphState.setBindingGraphRevision(bindingGraph.getRevision());
+		}
+		else {
+			bindingGraph.setStateUuid(previousStateUuid);
+			if (isStateWritten) {
+				this.db.delete(bindingGraphState);
+			}
+		}
+	}
+	
+	/*
+	 * Stores the versioned sets of the given wrapper in their own documents,
+	 * the wrapper refers to them by their uuids. A versioned set isn't changed
+	 * after it was committed, so the documents of the versioned sets taken over
+	 * from a previous state are only referenced, only the new versioned sets
+	 * are written. They are written by _bulk_docs requests, limited by the
+	 * number of documents and of versioned objects, several requests are sent
+	 * at the same time. The large versioned sets are streamed by a request of
+	 * their own, so their documents are never held in memory as a whole. If
+	 * the snapshot interval is set, a versioned set is stored as a delta
+	 * against its predecessor in versioning. A conflict means that the document
+	 * of the versioned set has been written already, all other errors are
+	 * collected for their versioned sets and thrown as
+	 * VersionedSetWriteException.
+	 */
+	private void writeVersionedSets(final VersionedSetWrapper versionedSetWrapper) {
+		final Map<String, String> storedVersionedSets =
+			this.findStoredRevisions(versionedSetWrapper.getVersionedSetUuids());
+		final Map<String, VersionedSet> unstoredVersionedSets = Maps.newLinkedHashMap();
+		for (final VersionedSet versionedSet : versionedSetWrapper.getVersionedSets()) {
+			if (!storedVersionedSets.containsKey(versionedSet.getUuid())) {
+				unstoredVersionedSets.put(versionedSet.getUuid(), versionedSet);
+			}
+		}
+		final Map<String, VersionedSetDocument> baseDocuments =
+			this.findDeltaBaseDocuments(unstoredVersionedSets.values());
+		final List<List<VersionedSetDocument>> batches = Lists.newArrayList();
+		final List<VersionedSetDocument> streamedDocuments = Lists.newArrayList();
+		List<VersionedSetDocument> batch = Lists.newArrayList();
+		int numberOfObjectsInBatch = 0;
+		for (final VersionedSet versionedSet : unstoredVersionedSets.values()) {
+			final VersionedSetDocument versionedSetDocument = this.createVersionedSetDocument(versionedSet, baseDocuments);
+			final int numberOfObjects = BindingGraphRepositorySupport.countObjects(versionedSetDocument);
+			if (numberOfObjects > BindingGraphRepositorySupport.STREAMED_VERSIONED_SET_OBJECTS) {
+				streamedDocuments.add(versionedSetDocument);
+				continue;
+			}
+			final boolean isBatchFull =
+				(batch.size() == BindingGraphRepositorySupport.MAXIMAL_BULK_SIZE)
+						|| ((numberOfObjectsInBatch + numberOfObjects) > BindingGraphRepositorySupport.MAXIMAL_BULK_OBJECTS);
+			if (!batch.isEmpty() && isBatchFull) {
+				batches.add(batch);
+				batch = Lists.newArrayList();
+				numberOfObjectsInBatch = 0;
+			}
+			batch.add(versionedSetDocument);
+			numberOfObjectsInBatch += numberOfObjects;
+		}
+		if (!batch.isEmpty()) {
+			batches.add(batch);
+		}
+		final int numberOfBulkBatches = batches.size();
+		// Every streamed document is a batch of its own
+		for (final VersionedSetDocument versionedSetDocument : streamedDocuments) {
+			batches.add(Collections.singletonList(versionedSetDocument));
+		}
+		
+		final List<Future<List<DocumentOperationResult>>> results = Lists.newArrayListWithCapacity(batches.size());
+		for (int i = 0; i < batches.size(); i++) {
+			final List<VersionedSetDocument> documents = batches.get(i);
+			final boolean isStreamed = i >= numberOfBulkBatches;
+			results.add(this.bulkExecutorService.submit(new Callable<List<DocumentOperationResult>>() {
+				
+				@Override
+				@SuppressWarnings("synthetic-access")
+				public List<DocumentOperationResult> call() throws Exception {
+					if (isStreamed) {
+						return BindingGraphRepositorySupport.this.writeStreamedVersionedSet(documents.get(0));
+					}
+					if (BindingGraphRepositorySupport.this.payloadEncoding == PayloadEncoding.BINARY) {
+						for (final VersionedSetDocument versionedSetDocument : documents) {
+							BindingGraphRepositorySupport.this.writePayload(versionedSetDocument);
+						}
+					}
+					return BindingGraphRepositorySupport.this.writeDocuments(documents);
+				}
+			}));
+		}
+		
+		final Map<VersionedSet, DocumentOperationResult> failedVersionedSets = Maps.newLinkedHashMap();
+		for (int i = 0; i < results.size(); i++) {
+			try {
+				for (final DocumentOperationResult documentOperationResult : results.get(i).get()) {
+					if (!"conflict".equals(documentOperationResult.getError())) {
+						failedVersionedSets.put(unstoredVersionedSets.get(documentOperationResult.getId()),
+							documentOperationResult);
+					}
+				}
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (int j = i; j < results.size(); j++) {
+					results.get(j).cancel(true);
+					this.addFailedBatch(batches.get(j), unstoredVersionedSets, "interrupted", failedVersionedSets);
+				}
+				break;
+			}
+			catch (final ExecutionException e) {
+				BindingGraphRepositorySupport.logger.error(e.getCause().getMessage());
+				this.addFailedBatch(batches.get(i), unstoredVersionedSets, e.getCause().getMessage(), failedVersionedSets);
+			}
+		}
+		if (!failedVersionedSets.isEmpty()) {
+			throw new VersionedSetWriteException(failedVersionedSets);
+		}
+	}
+	
+	/*
+	 * Returns the documents of the predecessors in versioning of the given
+	 * versioned sets by their uuids. Only a versioned set with a single
+	 * predecessor can be stored as a delta.
+	 */
+	private Map<String, VersionedSetDocument> findDeltaBaseDocuments(final Collection<VersionedSet> versionedSets) {
+		final Map<String, VersionedSetDocument> baseDocuments = Maps.newHashMap();
+		if (this.snapshotInterval < 2) {
+			return baseDocuments;
+		}
+		final Set<String> baseUuids = Sets.newHashSet();
+		for (final VersionedSet versionedSet : versionedSets) {
+			// A newly converted versioned set refers to itself
+			if ((versionedSet.getPredecessorsVersioning().size() == 1)
+					&& !versionedSet.getPredecessorsVersioning().contains(versionedSet.getUuid())) {
+				baseUuids.addAll(versionedSet.getPredecessorsVersioning());
+			}
+		}
+		if (!baseUuids.isEmpty()) {
+			for (final VersionedSetDocument baseDocument : this.findVersionedSetDocuments(baseUuids)) {
+				baseDocuments.put(baseDocument.getUuid(), baseDocument);
+			}
+		}
+		return baseDocuments;
+	}
+	
+	/*
+	 * Returns the document of the given versioned set, the objects of the bound
+	 * versioned sets are written as references
+	 */
+	private VersionedSetDocument createVersionedSetDocument(final VersionedSet versionedSet,
+		final Map<String, VersionedSetDocument> baseDocuments) {
+		final VersionedSetDocument versionedSetDocument = this.createFullOrDeltaDocument(versionedSet, baseDocuments);
+		versionedSetDocument.getReferencedVersionedSets().addAll(
+			VersionedSetUtil.getInstance().getBound(versionedSet, false));
+		return versionedSetDocument;
+	}
+	
+	/*
+	 * Returns the delta document of the given versioned set if its predecessor
+	 * is stored, the snapshot interval isn't reached and the delta is
+	 * considerably smaller than the versioned set, otherwise the full document
+	 */
+	private VersionedSetDocument createFullOrDeltaDocument(final VersionedSet versionedSet,
+		final Map<String, VersionedSetDocument> baseDocuments) {
+		if (versionedSet.getPredecessorsVersioning().size() == 1) {
+			final VersionedSetDocument baseDocument =
+				baseDocuments.get(Iterables.getOnlyElement(versionedSet.getPredecessorsVersioning()));
+			if ((baseDocument != null) && (baseDocument.getObjectFingerprints() != null)
+					&& ((baseDocument.getDeltaDepth() + 1) < this.snapshotInterval)) {
+				try {
+					final VersionedSetDocument deltaDocument =
+						VersionedSetDeltaCodec.getInstance().createDelta(versionedSet, baseDocument, this.objectMapper);
+					if (deltaDocument != null) {
+						return deltaDocument;
+					}
+				}
+				catch (final IOException e) {
+					BindingGraphRepositorySupport.logger.error(e.getMessage());
+					throw Throwables.propagate(e);
+				}
+			}
+		}
+		return new VersionedSetDocument(versionedSet);
+	}
+	
+	// A delta document counts only the objects it contains or removes
+	private static int countObjects(final VersionedSetDocument versionedSetDocument) {
+		final VersionedSet versionedSet = versionedSetDocument.getVersionedSet();
+		final int numberOfObjects =
+			Math.max(versionedSet.getUuidsOfObjects().size(), versionedSet.getVersionedObjects().size());
+		return numberOfObjects + versionedSetDocument.getRemovedObjects().size();
+	}
+	
+	/*
+	 * Writes the document of a large versioned set by a request of its own. The
+	 * binary encoding sends the encoded versioned set as the inline attachment
+	 * of the document, so the document is never stored without its versioned
+	 * set and the request body is streamed in both encodings.
+	 */
+	private List<DocumentOperationResult> writeStreamedVersionedSet(final VersionedSetDocument versionedSetDocument)
+		throws Exception {
+		try {
+			this.writeStreamedDocument(versionedSetDocument);
+		}
+		catch (final UpdateConflictException e) {
+			// @formatter:off
+			return Collections.singletonList(
+				DocumentOperationResult.newInstance(versionedSetDocument.getUuid(), "conflict", e.getMessage()));
+			// @formatter:on
+		}
+		return Collections.emptyList();
+	}
+	
+	/*
+	 * Writes the given documents by a _bulk_docs request, the request body is
+	 * serialized by the mapper of this repository, so the objects of other
+	 * versioned sets are written as references. Every document is serialized
+	 * on its own, so the objects referenced by one document are written as
+	 * references by this document only.
+	 */
+	private List<DocumentOperationResult> writeDocuments(final List<VersionedSetDocument> versionedSetDocuments)
+		throws IOException {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		final JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+		generator.writeStartArray();
+		for (final VersionedSetDocument versionedSetDocument : versionedSetDocuments) {
+			this.objectMapper.writeValue(generator, versionedSetDocument);
+		}
+		generator.writeEndArray();
+		generator.close();
+		return this.db.executeBulk(new ByteArrayInputStream(outputStream.toByteArray()));
+	}
+	
+	/*
+	 * Sends the given document as the body of a request while another thread
+	 * serializes it into a pipe, so the body is never held in memory as a
+	 * whole.
+	 */
+	private void writeStreamedDocument(final VersionedSetDocument versionedSetDocument) throws IOException,
+		InterruptedException {
+		final ObjectMapper objectMapper = this.objectMapper;
+		final boolean isBinary = this.payloadEncoding == PayloadEncoding.BINARY;
+		final PipedOutputStream outputStream = new PipedOutputStream();
+		final PipedInputStream inputStream =
+			new PipedInputStream(outputStream, BindingGraphRepositorySupport.STREAM_BUFFER_SIZE);
+		final Future<Void> writer = BindingGraphRepositorySupport.STREAM_EXECUTOR_SERVICE.submit(new Callable<Void>() {
+			
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public Void call() throws Exception {
+				try {
+					if (isBinary) {
+						BindingGraphRepositorySupport.this.writeStreamedPayload(versionedSetDocument, outputStream);
+					}
+					else {
+						objectMapper.writeValue(outputStream, versionedSetDocument);
+					}
+				}
+				finally {
+					// Ends the body of the request, even if the document is incomplete
+					outputStream.close();
+				}
+				return null;
+			}
+		});
+		try {
+			this.db.update(versionedSetDocument.getUuid(), inputStream, -1, new Options());
+		}
+		catch (final RuntimeException e) {
+			// Stops the writer if it is still waiting for the request
+			inputStream.close();
+			// A failed writer is the cause of the failed request
+			if (writer.isDone()) {
+				BindingGraphRepositorySupport.checkStreamWriter(writer);
+			}
+			throw e;
+		}
+		inputStream.close();
+		BindingGraphRepositorySupport.checkStreamWriter(writer);
+	}
+	
+	/*
+	 * Writes the given document without its versioned set and the whole
+	 * document encoded by the BinaryJsonCodec as its inline attachment, like
+	 * writePayload does. The attachment is encoded by another thread and
+	 * written as Base64 while it is encoded.
+	 */
+	private void writeStreamedPayload(final VersionedSetDocument versionedSetDocument,
+		final OutputStream outputStream) throws IOException, InterruptedException {
+		final ObjectMapper objectMapper = this.objectMapper;
+		final VersionedSetDocument metadataDocument = new VersionedSetDocument();
+		metadataDocument.setUuid(versionedSetDocument.getUuid());
+		metadataDocument.setPredecessorsBinding(versionedSetDocument.getPredecessorsBinding());
+		metadataDocument.setDeltaBase(versionedSetDocument.getDeltaBase());
+		metadataDocument.setDeltaDepth(versionedSetDocument.getDeltaDepth());
+		final PipedOutputStream payloadOutputStream = new PipedOutputStream();
+		final PipedInputStream payloadInputStream =
+			new PipedInputStream(payloadOutputStream, BindingGraphRepositorySupport.STREAM_BUFFER_SIZE);
+		final Future<Void> payloadWriter =
+			BindingGraphRepositorySupport.STREAM_EXECUTOR_SERVICE.submit(new Callable<Void>() {
+				
+				@Override
+				public Void call() throws Exception {
+					try {
+						objectMapper.writeValue(
+							BinaryJsonCodec.getInstance().createGenerator(payloadOutputStream, objectMapper), versionedSetDocument);
+					}
+					finally {
+						payloadOutputStream.close();
+					}
+					return null;
+				}
+			});
+		try {
+			final JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+			generator.writeStartObject();
+			final Iterator<Map.Entry<String, JsonNode>> fields =
+				objectMapper.<JsonNode> valueToTree(metadataDocument).fields();
+			while (fields.hasNext()) {
+				final Map.Entry<String, JsonNode> field = fields.next();
+				if (!BindingGraphRepositorySupport.ATTACHMENTS_FIELD.equals(field.getKey())) {
+					generator.writeFieldName(field.getKey());
+					generator.writeTree(field.getValue());
+				}
+			}
+			generator.writeObjectFieldStart(BindingGraphRepositorySupport.ATTACHMENTS_FIELD);
+			generator.writeObjectFieldStart(BindingGraphRepositorySupport.PAYLOAD_ATTACHMENT);
+			generator.writeStringField("content_type", BinaryJsonCodec.CONTENT_TYPE);
+			generator.writeFieldName("data");
+			generator.writeBinary(payloadInputStream, -1);
+			generator.writeEndObject();
+			generator.writeEndObject();
+			generator.writeEndObject();
+			generator.close();
+		}
+		finally {
+			// Stops the payload writer if the document couldn't be written
+			payloadInputStream.close();
+		}
+		BindingGraphRepositorySupport.checkStreamWriter(payloadWriter);
+	}
+	
+	private static void checkStreamWriter(final Future<Void> writer) throws IOException, InterruptedException {
+		try {
+			writer.get();
+		}
+		catch (final ExecutionException e) {
+			Throwables.propagateIfPossible(e.getCause(), IOException.class);
+			throw new DbAccessException(e.getCause());
+		}
+	}
+	
+	private void addFailedBatch(final List<VersionedSetDocument> batch,
+		final Map<String, VersionedSet> unstoredVersionedSets, final String reason,
+		final Map<VersionedSet, DocumentOperationResult> failedVersionedSets) {
+		for (final VersionedSetDocument versionedSetDocument : batch) {
+			failedVersionedSets.put(unstoredVersionedSets.get(versionedSetDocument.getUuid()),
+				DocumentOperationResult.newInstance(versionedSetDocument.getUuid(), "exception", reason));
+		}
+	}
+	
+	private static ExecutorService createBulkExecutorService() {
+		// @formatter:off
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+			BindingGraphRepositorySupport.BULK_THREADS,
+			BindingGraphRepositorySupport.BULK_THREADS,
+			30, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<Runnable>(BindingGraphRepositorySupport.BULK_THREADS * 2),
+			new ThreadFactoryBuilder()
+				.setNameFormat("binding-graph-bulk-%d")
+				.setDaemon(true)
+				.build(),
+			// The caller sends the request itself if all threads are busy
+			new ThreadPoolExecutor.CallerRunsPolicy());
+		// @formatter:on
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+	
+	/*
+	 * Returns the current revisions of those given documents which exist in the
+	 * database and aren't deleted, the database is asked only once
+	 */
+	private Map<String, String> findStoredRevisions(final Collection<String> ids) {
+		final Map<String, String> storedRevisions = Maps.newHashMapWithExpectedSize(ids.size());
+		if (ids.isEmpty()) {
+			return storedRevisions;
+		}
+		final ViewQuery query = new ViewQuery().allDocs().keys(ids);
+		query.setIgnoreNotFound(true);
+		for (final ViewResult.Row row : this.db.queryView(query).getRows()) {
+			final JsonNode value = row.getValueAsNode();
+			if ((value != null) && !value.has("deleted")) {
+				storedRevisions.put(row.getId(), value.get("rev").asText());
+			}
+		}
+		return storedRevisions;
+	}
+	
+	/*
+	 * Returns the statistics of the cache of the decoded states of binding
+	 * graphs and VersionedSetWrappers, e.g. its hit rate.
+	 * @return the statistics of the cache
+	 */
+	@Override
+	public CacheStats getCacheStats() {
+		return this.cache.stats();
+	}
+	
+	/*
+	 * Stops the changes feed which keeps the uuids of the binding graphs up to
+	 * date. The feed is shared by the repositories of the same connector, it is
+	 * started again when the uuids are needed.
+	 */
+	@Override
+	public void close() {
+		this.index.close();
+	}
+	
+	/*
+	 * Deletes the binding graph by a deleted revision which keeps its type, so
+	 * the changes feed of the binding graphs lets only their deletions pass
+	 */
+	private void removeBindingGraph(final iBindingGraph bindingGraph) {
+		final Map<String, Object> deletedBindingGraph = Maps.newHashMap();
+		deletedBindingGraph.put("_id", bindingGraph.getUuid());
+		deletedBindingGraph.put("_rev", bindingGraph.getRevision());
+		deletedBindingGraph.put("_deleted", Boolean.TRUE);
+		deletedBindingGraph.put("T", BindingGraphRepositorySupport.BINDING_GRAPH_TYPE);
+		this.db.update(deletedBindingGraph);
+	}
+	
+	private BindingGraphState getCachedState(final String uuid, final String revision) {
+		return (BindingGraphState) this.cache.getIfPresent(new DocumentRevision(uuid, revision));
+	}
+	
+	/*
+	 * The cached state keeps copies of the representations, so it never refers
+	 * to the versioned sets loaded by the binding graphs
+	 */
+	private void cacheState(final BindingGraphState bindingGraphState) {
+		// @formatter:off
+		this.cache.put(
+			new DocumentRevision(bindingGraphState.getBindingGraphUuid(), bindingGraphState.getBindingGraphRevision()),
+			bindingGraphState);
+		// @formatter:on
+	}
+	
+	/*
+	 * The representations of the given binding graph load their versioned sets
+	 * through a loader of this binding graph, so the versioned sets are shared
+	 * by its representations, but not by other binding graphs
+	 */
+	private void setVersionedSetLoader(final iBindingGraph bindingGraph) {
+		final iVersionedSetLoader versionedSetLoader = new BindingGraphVersionedSetLoader();
+		for (final VersionedSetRepresentation versionedSetRepresentation : bindingGraph.getVersionedSetRepresentations()) {
+			versionedSetRepresentation.setVersionedSetLoader(versionedSetLoader);
+		}
+	}
+	
+	/*
+	 * Returns the state of the given binding graph, the cached state is used to
+	 * create new binding graphs, so the binding graph itself can be changed
+	 */
+	private static BindingGraphState createSnapshot(final iBindingGraph bindingGraph) {
+		final BindingGraphState bindingGraphState = new BindingGraphState(bindingGraph, null);
+		bindingGraphState.setUuid(bindingGraph.getStateUuid());
+		bindingGraphState.setBindingGraphRevision(bindingGraph.getRevision());
+		return bindingGraphState;
+	}
+	
+	private String findCurrentRevision(final String id) {
+		try {
+			return this.db.getCurrentRevision(id);
+		}
+		catch (final DocumentNotFoundException e) {
+			return null;
+		}
+	}
+	
+	private void initDesignDocument() {
+		this.index.ensureDesignDocument(this);
+	}
+	
+	/*
+	 * Returns the query of the states of the given binding graph, the newest
+	 * state comes first
+	 */
+	private ViewQuery createStatesQuery(final String uuid) {
+		this.initDesignDocument();
+		// @formatter:off
+		return this.createQuery(BindingGraphRepositorySupport.STATES_VIEW)
+			.startKey(ComplexKey.of(uuid, ComplexKey.emptyObject()))
+			.endKey(ComplexKey.of(uuid))
+			.descending(true);
+		// @formatter:on
+	}
+	
+	private String findActualStateUuid(final String uuid) {
+		final List<ViewResult.Row> rows = this.db.queryView(this.createStatesQuery(uuid).limit(1)).getRows();
+		if (rows.isEmpty()) {
+			return null;
+		}
+		return rows.get(BindingGraphRepositorySupport.NUMBER_OF_ACTUAL_STATE).getId();
+	}
+	
+	private void deleteStates(final String uuid) {
+		final List<BulkDeleteDocument> documents = Lists.newArrayList();
+		for (final BindingGraphState bindingGraphState : this.db.queryView(this.createStatesQuery(uuid).includeDocs(true),
+			BindingGraphState.class)) {
+			documents.add(new BulkDeleteDocument(bindingGraphState.getUuid(), bindingGraphState.getRevision()));
+		}
+		if (!documents.isEmpty()) {
+			for (final DocumentOperationResult documentOperationResult : this.db.executeBulk(documents)) {
+				BindingGraphRepositorySupport.logger.error("The state " + documentOperationResult.getId()
+																										+ " couldn't be deleted: " + documentOperationResult.getError()
+																										+ ", " + documentOperationResult.getReason());
+			}
+		}
+	}
+	
+	/*
+	 * The state documents refer to the revisions of the binding graph by their
+	 * generations
+	 */
+	private void resolveBindingGraphRevisions(final Iterable<BindingGraphState> bindingGraphStates,
+		final List<Revision> revisions) {
+		for (final BindingGraphState bindingGraphState : bindingGraphStates) {
+			final Revision revision =
+				BindingGraphRepositorySupport.findRevision(revisions, bindingGraphState.getBindingGraphGeneration());
+			if (revision != null) {
+				bindingGraphState.setBindingGraphRevision(revision.getRev());
+			}
+		}
+	}
+	
+	/*
+	 * The revisions of a document are listed newest first, their generations
+	 * are consecutive
+	 */
+	private static Revision findRevision(final List<Revision> revisions, final int generation) {
+		if (revisions.isEmpty()) {
+			return null;
+		}
+		final int index =
+			BindingGraphRepositorySupport.getGeneration(revisions.get(BindingGraphRepositorySupport.NUMBER_OF_ACTUAL_REV)
+				.getRev()) - generation;
+		if ((index < 0) || (index >= revisions.size())) {
+			return null;
+		}
+		return revisions.get(index);
+	}
+	
+	private static int getGeneration(final String revision) {
+		return Integer.parseInt(revision.substring(0, revision.indexOf('-')));
+	}
+	
+	/*
+	 * The binding graphs which were stored without state documents keep their
+	 * history only by the old revisions of the binding graph document
+	 */
+	private iBindingGraph getPreviousRevision(final String uuid, final List<Revision> revisions) {
+		Preconditions.checkArgument(revisions.size() > BindingGraphRepositorySupport.NUMBER_OF_PREV_REV,
+			"Only one state of the binding graph is avaliable in the database!");
+		// [0] - actual state, [n-1] - eldest state
+		final Revision previousRevision = revisions.get(BindingGraphRepositorySupport.NUMBER_OF_PREV_REV);
+		Preconditions.checkArgument(BindingGraphRepositorySupport.AVAILABLE_REVISION.equals(previousRevision.getStatus()),
+			"The previous state of the binding graph was removed by the compaction of the database!");
+		final Options options = new Options().revision(previousRevision.getRev());
+		final iBindingGraph bindingGraph = super.get(uuid, options);
+		this.cacheState(BindingGraphRepositorySupport.createSnapshot(bindingGraph));
+		return bindingGraph;
+	}
+	
+	private iBindingGraph getSpecificRevision(final String uuid, final String specificRevision) {
+		final List<Revision> revisions = super.db.getRevisions(uuid);
+		final Revision objectRevision = new Revision(specificRevision, "disk");
+		Preconditions.checkArgument(revisions.contains(objectRevision),
+			"Can not find the binding graph object with the given revision number!");
+		final Options options = new Options().revision(specificRevision);
+		return super.get(uuid, options);
+	}
+	
+	/*
+	 * Returns the old revisions of the binding graph which are older than the
+	 * given generation
+	 */
+	private List<iBindingGraph> getAllRevisions(final String uuid, final List<Revision> revisions,
+		final int eldestGeneration) {
+		// The revisions removed by the compaction can't be loaded anymore
+		final List<String> availableRevisions = Lists.newArrayList();
+		for (final Revision revision : revisions) {
+			if (BindingGraphRepositorySupport.AVAILABLE_REVISION.equals(revision.getStatus())
+					&& (BindingGraphRepositorySupport.getGeneration(revision.getRev()) < eldestGeneration)) {
+				availableRevisions.add(revision.getRev());
+			}
+		}
+		if (availableRevisions.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final List<iBindingGraph> bindingGraphs = super.db.getOpenRevisions(iBindingGraph.class, uuid, availableRevisions);
+		for (final iBindingGraph bindingGraph : bindingGraphs) {
+			this.cacheState(BindingGraphRepositorySupport.createSnapshot(bindingGraph));
+			this.setVersionedSetLoader(bindingGraph);
+		}
+		return bindingGraphs;
 	}
 	
 	private void deleteVersionedSetWrapper(final String versionedSetWrapperUuid) {
@@ -542,7 +1857,119 @@ public class BindingGraphRepositorySupport extends CouchDbRepositorySupport<iBin
 		Preconditions.checkArgument(this.db.contains(versionedSetWrapperUuid),
 			"The VersionedSetWrapper with the given identifier doesn't exist!");
 		final VersionedSetWrapper versionedSetWrapper = this.db.get(VersionedSetWrapper.class, versionedSetWrapperUuid);
-		this.db.delete(versionedSetWrapper);
+		// The documents of the versioned sets are deleted together with the
+		// binding graph
+		final List<BulkDeleteDocument> documents = Lists.newArrayList();
+		for (final Map.Entry<String, String> storedVersionedSet : this.findStoredRevisions(
+			versionedSetWrapper.getVersionedSetUuids()).entrySet()) {
+			documents.add(new BulkDeleteDocument(storedVersionedSet.getKey(), storedVersionedSet.getValue()));
+		}
+		documents.add(BulkDeleteDocument.of(versionedSetWrapper));
+		for (final DocumentOperationResult documentOperationResult : this.db.executeBulk(documents)) {
+			BindingGraphRepositorySupport.logger.error("The document " + documentOperationResult.getId()
+																									+ " couldn't be deleted: " + documentOperationResult.getError()
+																									+ ", " + documentOperationResult.getReason());
+		}
+	}
+	
+	private static final class DocumentRevision {
+		
+		private final String id;
+		
+		private final String revision;
+		
+		public DocumentRevision(final String id, final String revision) {
+			this.id = id;
+			this.revision = revision;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(this.id, this.revision);
+		}
+		
+		@Override
+		public boolean equals(final Object obj) {
+			if (obj instanceof DocumentRevision) {
+				final DocumentRevision other = (DocumentRevision) obj;
+				return Objects.equal(this.id, other.id) && Objects.equal(this.revision, other.revision);
+			}
+			return false;
+		}
+	}
+	
+	/*
+	 * A document of a versioned set encoded by the BinaryJsonCodec together
+	 * with the fingerprints of its objects, which aren't stored
+	 */
+	private static final class EncodedVersionedSetDocument {
+		
+		private final byte[] bytes;
+		
+		private final Map<String, Long> objectFingerprints;
+		
+		public EncodedVersionedSetDocument(final byte[] bytes, final Map<String, Long> objectFingerprints) {
+			this.bytes = bytes;
+			this.objectFingerprints = objectFingerprints;
+		}
+		
+		public byte[] getBytes() {
+			return this.bytes;
+		}
+		
+		public Map<String, Long> getObjectFingerprints() {
+			return this.objectFingerprints;
+		}
+	}
+	
+	/*
+	 * Loads the versioned sets of the representations of a single binding
+	 * graph, every versioned set is loaded once for the binding graph
+	 */
+	private class BindingGraphVersionedSetLoader implements iVersionedSetLoader {
+		
+		private final Map<String, VersionedSet> loadedVersionedSets = Maps.newHashMap();
+		
+		public BindingGraphVersionedSetLoader() {
+		}
+		
+		@Override
+		@SuppressWarnings("synthetic-access")
+		public synchronized VersionedSet loadVersionedSet(final String versionedSetUuid) {
+			return BindingGraphRepositorySupport.this.loadVersionedSet(versionedSetUuid, this.loadedVersionedSets);
+		}
+	}
+	
+	/*
+	 * Estimates the size of a cached document in bytes
+	 */
+	private static class DocumentWeigher implements Weigher<DocumentRevision, Object> {
+		
+		public DocumentWeigher() {
+		}
+		
+		@Override
+		public int weigh(final DocumentRevision documentRevision, final Object document) {
+			long weight = BindingGraphRepositorySupport.ESTIMATED_DOCUMENT_BYTES;
+			if (document instanceof byte[]) {
+				weight += ((byte[]) document).length;
+			}
+			else if (document instanceof EncodedVersionedSetDocument) {
+				final EncodedVersionedSetDocument encodedVersionedSetDocument = (EncodedVersionedSetDocument) document;
+				weight += encodedVersionedSetDocument.getBytes().length;
+				if (encodedVersionedSetDocument.getObjectFingerprints() != null) {
+					weight +=
+						(long) encodedVersionedSetDocument.getObjectFingerprints().size()
+								* BindingGraphRepositorySupport.ESTIMATED_FINGERPRINT_BYTES;
+				}
+			}
+			else if (document instanceof BindingGraphState) {
+				weight +=
+					(long) ((BindingGraphState) document).getVersionedSetRepresentations().size()
+							* BindingGraphRepositorySupport.ESTIMATED_REPRESENTATION_BYTES;
+			}
+			return (int) Math.min(weight, Integer.MAX_VALUE);
+		}
 	}
 	
 }
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.repository.support;
+
+import java.util.EnumMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import de.bitub.proitbau.common.versioning.compare_results.StateResult;
+import de.bitub.proitbau.common.versioning.couchdb.binding.graph.BindingGraph;
+import de.bitub.proitbau.common.versioning.couchdb.binding.graph.iBindingGraph;
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
+import de.bitub.proitbau.common.versioning.model.logic.CommitResult;
+import de.bitub.proitbau.common.versioning.model.logic.Committer;
+import de.bitub.proitbau.common.versioning.model.logic.Comparator;
+import de.bitub.proitbau.common.versioning.model.logic.Converter;
+
+/*
+ * Executes the whole commit of a domain model in one call:
+ * convert -> compare -> commit -> specifyNewState -> update.
+ * The previous state of the binding graph is loaded from the database while
+ * the domain model is converted, all other stages need the complete result of
+ * the stage before them (bindings are specified over all versioned sets, the
+ * committer needs the complete state result), so they are executed one after
+ * another. Only the load overlaps the conversion, so a commit takes the longer
+ * of the two plus the sum of the remaining stages. The latency of each stage
+ * is measured and returned together with the result of the commit.
+ */
+public class CommitPipeline {
+	
+	final static Logger logger = (Logger) LoggerFactory.getLogger(CommitPipeline.class);
+	{
+		CommitPipeline.logger.setLevel(Level.INFO);
+	}
+	
+	private final iBindingGraphRepositorySupport bindingGraphRepositorySupport;
+	
+	private final ExecutorService executorService;
+	
+	public CommitPipeline(final iBindingGraphRepositorySupport bindingGraphRepositorySupport) {
+		// @formatter:off
+		this(bindingGraphRepositorySupport, 
+			Executors.newSingleThreadExecutor(
+				new ThreadFactoryBuilder()
+					.setNameFormat("commit-pipeline-%d")
+					.setDaemon(true)
+					.build()));
+		// @formatter:on
+	}
+	
+	public CommitPipeline(final iBindingGraphRepositorySupport bindingGraphRepositorySupport,
+		final ExecutorService executorService) {
+		Preconditions.checkNotNull(bindingGraphRepositorySupport, "Given binding graph repository support is null!");
+		Preconditions.checkNotNull(executorService, "Given executor service is null!");
+		this.bindingGraphRepositorySupport = bindingGraphRepositorySupport;
+		this.executorService = executorService;
+	}
+	
+	/*
+	 * Commits the given domain model as a new state of the given binding graph.
+	 * @param domainModel the object annotated with @DomainModel
+	 * @param previousGraph the binding graph with the previous state or null if
+	 * the domain model is committed first time
+	 * @return the result of the pipeline with the latencies of all stages
+	 */
+	public CommitPipelineResult commit(final Object domainModel, final iBindingGraph previousGraph) throws Exception {
+		Preconditions.checkNotNull(domainModel, "Given domain model is null!");
+		
+		final long pipelineStart = System.nanoTime();
+		final EnumMap<CommitStage, Long> latencies = new EnumMap<CommitStage, Long>(CommitStage.class);
+		final iBindingGraph bindingGraph = (previousGraph != null) ? previousGraph : new BindingGraph();
+		
+		// 1) Load the previous state in background, it is I/O bound, so it doesn't
+		// compete with the conversion
+		final Future<Set<VersionedSet>> previousState =
+			this.executorService.submit(new Callable<Set<VersionedSet>>() {
+				
+				@Override
+				@SuppressWarnings("synthetic-access")
+				public Set<VersionedSet> call() throws Exception {
+					final long start = System.nanoTime();
+					try {
+						return CommitPipeline.this.loadPreviousState(bindingGraph);
+					}
+					finally {
+						synchronized (latencies) {
+							latencies.put(CommitStage.LOAD_PREVIOUS_STATE, Long.valueOf(System.nanoTime() - start));
+						}
+					}
+				}
+			});
+		
+		// 2) Convert the domain model
+		long start = System.nanoTime();
+		final Set<VersionedSet> newState;
+		final Set<VersionedSet> oldState;
+		try {
+			newState = Converter.getInstance().convert(domainModel);
+			this.putLatency(latencies, CommitStage.CONVERT, start);
+			oldState = this.waitFor(previousState);
+		}
+		catch (final Exception e) {
+			previousState.cancel(true);
+			throw e;
+		}
+		catch (final Error e) {
+			previousState.cancel(true);
+			throw e;
+		}
+		
+		// 3) Compare previous and new state
+		start = System.nanoTime();
+		final StateResult stateResult = Comparator.getInstance().compareStatesOfVersionedSets(oldState, newState);
+		this.putLatency(latencies, CommitStage.COMPARE, start);
+		
+		// 4) Find committed versioned sets
+		start = System.nanoTime();
+		final CommitResult commitResult = Committer.getInstance().findCommittedVersionedSets(stateResult);
+		this.putLatency(latencies, CommitStage.COMMIT, start);
+		
+		if (commitResult == null) {
+			CommitPipeline.logger.info("Nothing to commit, the states are equal");
+			return new CommitPipelineResult(bindingGraph, null, latencies, System.nanoTime() - pipelineStart);
+		}
+		
+		// 5) Specify new state of the binding graph, the very first state
+		// consists of all converted versioned sets
+		start = System.nanoTime();
+		if (oldState == null) {
+			bindingGraph.specifyNewState(newState);
+		}
+		else {
+			bindingGraph.specifyNewState(commitResult.getActualState());
+		}
+		this.putLatency(latencies, CommitStage.SPECIFY_NEW_STATE, start);
+		
+		// 6) Store binding graph and its versioned sets
+		start = System.nanoTime();
+		this.bindingGraphRepositorySupport.update(bindingGraph, true);
+		this.putLatency(latencies, CommitStage.UPDATE, start);
+		
+		final CommitPipelineResult commitPipelineResult =
+			new CommitPipelineResult(bindingGraph, commitResult, latencies, System.nanoTime() - pipelineStart);
+		CommitPipeline.logger.debug(commitPipelineResult.toString());
+		return commitPipelineResult;
+	}
+	
+	public void shutdown() {
+		this.executorService.shutdown();
+	}
+	
+	private Set<VersionedSet> loadPreviousState(final iBindingGraph bindingGraph) {
+		// Binding graph was never stored, so there is no previous state
+		if (bindingGraph.isInitial()) {
+			return null;
+		}
+		if (bindingGraph.getVersionedSetWrapper() == null) {
+			this.bindingGraphRepositorySupport.initializeVersionedSetWrapper(bindingGraph);
+		}
+		return bindingGraph.obtainVersionedSets();
+	}
+	
+	private void putLatency(final EnumMap<CommitStage, Long> latencies, final CommitStage stage, final long start) {
+		synchronized (latencies) {
+			latencies.put(stage, Long.valueOf(System.nanoTime() - start));
+		}
+	}
+	
+	private Set<VersionedSet> waitFor(final Future<Set<VersionedSet>> previousState) throws Exception {
+		try {
+			return previousState.get();
+		}
+		catch (final ExecutionException e) {
+			CommitPipeline.logger.error(e.getMessage());
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+	
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.repository.support;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+import de.bitub.proitbau.common.versioning.couchdb.binding.graph.iBindingGraph;
+import de.bitub.proitbau.common.versioning.model.logic.CommitResult;
+
+/*
+ * Result of a single run of the commit pipeline. It contains the binding graph
+ * in its new state, the result of the committer (null if nothing has been
+ * committed) and the latency of every executed stage in nanoseconds.
+ */
+public class CommitPipelineResult {
+	
+	private final iBindingGraph bindingGraph;
+	
+	private final CommitResult commitResult;
+	
+	private final Map<CommitStage, Long> latencies;
+	
+	private final long wallClockTime;
+	
+	CommitPipelineResult(final iBindingGraph bindingGraph, final CommitResult commitResult,
+		final EnumMap<CommitStage, Long> latencies, final long wallClockTime) {
+		Preconditions.checkNotNull(bindingGraph, "Given binding graph is null!");
+		Preconditions.checkNotNull(latencies, "Given latencies are null!");
+		this.bindingGraph = bindingGraph;
+		this.commitResult = commitResult;
+		this.latencies = Collections.unmodifiableMap(new EnumMap<CommitStage, Long>(latencies));
+		this.wallClockTime = wallClockTime;
+	}
+	
+	public iBindingGraph getBindingGraph() {
+		return this.bindingGraph;
+	}
+	
+	public CommitResult getCommitResult() {
+		return this.commitResult;
+	}
+	
+	public boolean isCommitted() {
+		return this.commitResult != null;
+	}
+	
+	public Map<CommitStage, Long> getLatencies() {
+		return this.latencies;
+	}
+	
+	// Returns -1 if the stage wasn't executed
+	public long getLatency(final CommitStage stage, final TimeUnit timeUnit) {
+		Preconditions.checkNotNull(stage, "Given stage is null!");
+		final Long latency = this.latencies.get(stage);
+		if (latency == null) {
+			return -1;
+		}
+		return timeUnit.convert(latency.longValue(), TimeUnit.NANOSECONDS);
+	}
+	
+	// Time between the start and the end of the whole pipeline, it is lower
+	// then the sum of all latencies if some stages were overlapped
+	public long getWallClockTime(final TimeUnit timeUnit) {
+		return timeUnit.convert(this.wallClockTime, TimeUnit.NANOSECONDS);
+	}
+	
+	@Override
+	public String toString() {
+		// @formatter:off
+		return Objects.toStringHelper(this)
+			.add("committed", this.isCommitted())
+			.add("latencies", this.latencies)
+			.add("wallClockTime", this.wallClockTime)
+			.toString();
+		// @formatter:on
+	}
+	
+}
@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.repository.support;
+
+/*
+ * How the versioned sets are stored in their documents, the other fields of
+ * the documents stay JSON in any case. The documents of both encodings can be
+ * read, the content type of the attachment tells how it is decoded.
+ */
+public enum PayloadEncoding {
+	// The versioned set is a part of the JSON document
+	JSON,
+	// The versioned set is an attachment encoded by the BinaryJsonCodec
+	BINARY
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.repository.support;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
+import de.bitub.proitbau.common.versioning.model.Versionable;
+import de.bitub.proitbau.common.versioning.util.ReflectionUtil;
+
+/*
+ * Replaces the detached objects the objects of loaded versioned sets refer to
+ * by the objects of these versioned sets which have the same uuids. The
+ * references written by the VersionedObjectReferenceModule are read as
+ * detached objects, they are replaced once all versioned sets they refer to
+ * are loaded. The fields are walked like Jackson writes them, i.e. all fields
+ * which are neither static nor transient, including the elements of
+ * collections, maps and arrays and the fields of embedded objects which
+ * aren't versionable. The fields of the classes are cached by the linker
+ * itself, because the ModelCache mustn't be used by several threads.
+ */
+class VersionedObjectLinker {
+	
+	private final ConcurrentMap<Class<?>, List<Field>> fieldsByClass = Maps.newConcurrentMap();
+	
+	private VersionedObjectLinker() {
+	}
+	
+	private static class Handler {
+		
+		@SuppressWarnings("synthetic-access")
+		private static VersionedObjectLinker instance = new VersionedObjectLinker();
+	}
+	
+	@SuppressWarnings("synthetic-access")
+	public static VersionedObjectLinker getInstance() {
+		return Handler.instance;
+	}
+	
+	/*
+	 * Links the objects of the given versioned sets with each other, the objects
+	 * of the versioned sets are changed in place
+	 * @param versionedSets the loaded versioned sets, usually a versioned set
+	 * together with the versioned sets it is bound to
+	 */
+	public void link(final Collection<VersionedSet> versionedSets) {
+		this.link(versionedSets, Collections.<VersionedSet> emptyList());
+	}
+	
+	/*
+	 * Links the objects of the given versioned sets with each other and with
+	 * the objects of the linked versioned sets, only the objects of the given
+	 * versioned sets are changed
+	 * @param versionedSets the newly loaded versioned sets
+	 * @param linkedVersionedSets the versioned sets which were loaded and
+	 * linked before, usually those the given versioned sets are bound to
+	 */
+	public void link(final Collection<VersionedSet> versionedSets, final Collection<VersionedSet> linkedVersionedSets) {
+		Preconditions.checkNotNull(versionedSets, "Given collection of versioned sets is null!");
+		Preconditions.checkNotNull(linkedVersionedSets, "Given collection of linked versioned sets is null!");
+		final Map<String, Object> objectsByUuid = Maps.newHashMap();
+		for (final VersionedSet versionedSet : Iterables.concat(linkedVersionedSets, versionedSets)) {
+			for (final Object object : versionedSet.getVersionedObjects()) {
+				objectsByUuid.put(ReflectionUtil.getInstance().getUuidOfVersionedObject(object), object);
+			}
+		}
+		final Set<Object> visitedObjects = Sets.newIdentityHashSet();
+		for (final VersionedSet versionedSet : versionedSets) {
+			for (final Object object : versionedSet.getVersionedObjects()) {
+				this.linkFields(object, objectsByUuid, visitedObjects);
+			}
+		}
+	}
+	
+	private void linkFields(final Object object, final Map<String, Object> objectsByUuid,
+		final Set<Object> visitedObjects) {
+		if (!visitedObjects.add(object)) {
+			return;
+		}
+		try {
+			for (final Field field : this.getFields(object.getClass())) {
+				final Object value = field.get(object);
+				final Object linkedValue = this.link(value, objectsByUuid, visitedObjects);
+				if (linkedValue != value) {
+					field.set(object, linkedValue);
+				}
+			}
+		}
+		catch (final IllegalAccessException e) {
+			throw Throwables.propagate(e);
+		}
+	}
+	
+	/*
+	 * Returns the object which replaces the given value, the elements of a
+	 * collection, a map or an array are replaced in place
+	 */
+	private Object link(final Object value, final Map<String, Object> objectsByUuid, final Set<Object> visitedObjects) {
+		if (value == null) {
+			return null;
+		}
+		if (value instanceof Versionable) {
+			// The objects of versioned sets which aren't loaded stay detached
+			final Object object = objectsByUuid.get(((Versionable) value).getUuid());
+			return (object == null) ? value : object;
+		}
+		if (value instanceof List) {
+			@SuppressWarnings("unchecked")
+			final ListIterator<Object> iterator = ((List<Object>) value).listIterator();
+			while (iterator.hasNext()) {
+				final Object element = iterator.next();
+				final Object linkedElement = this.link(element, objectsByUuid, visitedObjects);
+				if (linkedElement != element) {
+					iterator.set(linkedElement);
+				}
+			}
+		}
+		else if (value instanceof Collection) {
+			@SuppressWarnings("unchecked")
+			final Collection<Object> collection = (Collection<Object>) value;
+			final List<Object> linkedElements = Lists.newArrayListWithCapacity(collection.size());
+			boolean isChanged = false;
+			for (final Object element : collection) {
+				final Object linkedElement = this.link(element, objectsByUuid, visitedObjects);
+				linkedElements.add(linkedElement);
+				isChanged |= linkedElement != element;
+			}
+			// The detached and the linked object might be equal, so the collection
+			// is filled again
+			if (isChanged) {
+				collection.clear();
+				collection.addAll(linkedElements);
+			}
+		}
+		else if (value instanceof Map) {
+			@SuppressWarnings("unchecked")
+			final Map<Object, Object> map = (Map<Object, Object>) value;
+			final Map<Object, Object> linkedEntries = Maps.newLinkedHashMap();
+			boolean isChanged = false;
+			for (final Map.Entry<Object, Object> entry : map.entrySet()) {
+				final Object linkedKey = this.link(entry.getKey(), objectsByUuid, visitedObjects);
+				final Object linkedValue = this.link(entry.getValue(), objectsByUuid, visitedObjects);
+				linkedEntries.put(linkedKey, linkedValue);
+				isChanged |= (linkedKey != entry.getKey()) || (linkedValue != entry.getValue());
+			}
+			if (isChanged) {
+				map.clear();
+				map.putAll(linkedEntries);
+			}
+		}
+		else if (value.getClass().isArray()) {
+			if (!value.getClass().getComponentType().isPrimitive()) {
+				for (int i = 0; i < Array.getLength(value); i++) {
+					final Object element = Array.get(value, i);
+					final Object linkedElement = this.link(element, objectsByUuid, visitedObjects);
+					if (linkedElement != element) {
+						Array.set(value, i, linkedElement);
+					}
+				}
+			}
+		}
+		else if (VersionedObjectLinker.isEmbedded(value.getClass())) {
+			this.linkFields(value, objectsByUuid, visitedObjects);
+		}
+		return value;
+	}
+	
+	// Values of the JDK, e.g. strings, numbers and dates, can't refer to objects
+	private static boolean isEmbedded(final Class<?> cls) {
+		return !cls.isEnum() && !cls.getName().startsWith("java.") && !cls.getName().startsWith("javax.");
+	}
+	
+	private List<Field> getFields(final Class<?> cls) {
+		List<Field> fields = this.fieldsByClass.get(cls);
+		if (fields == null) {
+			fields = Lists.newArrayList();
+			for (Class<?> superclass = cls; superclass != null; superclass = superclass.getSuperclass()) {
+				for (final Field field : superclass.getDeclaredFields()) {
+					final int modifiers = field.getModifiers();
+					if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.getType().isPrimitive()) {
+						fields.add(field);
+					}
+				}
+			}
+			AccessibleObject.setAccessible(fields.toArray(new Field[fields.size()]), true);
+			this.fieldsByClass.put(cls, fields);
+		}
+		return fields;
+	}
+	
+}
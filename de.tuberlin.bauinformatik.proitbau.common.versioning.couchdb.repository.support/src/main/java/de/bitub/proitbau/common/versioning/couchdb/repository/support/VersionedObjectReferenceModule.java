@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.repository.support;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.annotation.ObjectIdGenerator;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerFactory;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.impl.WritableObjectId;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import de.bitub.proitbau.common.versioning.couchdb.binding.graph.VersionedSetDocument;
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
+import de.bitub.proitbau.common.versioning.model.Versionable;
+
+/*
+ * Writes the objects of other versioned sets, which are referenced by the
+ * objects of a versioned set document, as references. A reference is an
+ * object which contains only the type and the uuid of the referenced object,
+ * so it is read as a detached object of the right type and replaced by the
+ * VersionedObjectLinker after the referenced versioned set is loaded.
+ * Every document is written by its own serializer provider, the objects of
+ * its referenced versioned sets are registered as already written objects
+ * before the document is written. So Jackson writes them by the serializer of
+ * the references wherever they occur, just like an object which occurs a
+ * second time in the same document.
+ * Written in the ReferenceView, every versioned object except the written
+ * root object is a reference, no matter whether it belongs to the same or to
+ * another versioned set and whether it is linked yet.
+ */
+class VersionedObjectReferenceModule extends SimpleModule {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final String UUID_PROPERTY = "uuid";
+	
+	public VersionedObjectReferenceModule() {
+		super("VersionedObjectReferenceModule");
+		this.setSerializerModifier(new DocumentSerializerModifier());
+	}
+	
+	/*
+	 * The view which writes a single versioned object with references to all
+	 * other versioned objects, e.g. to take its fingerprint
+	 */
+	static final class ReferenceView {
+		
+		private ReferenceView() {
+		}
+	}
+	
+	private static class DocumentSerializerModifier extends BeanSerializerModifier {
+		
+		// The references of all documents share the type serializers
+		private final ReferenceSerializer referenceSerializer = new ReferenceSerializer();
+		
+		public DocumentSerializerModifier() {
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public JsonSerializer<?> modifySerializer(final SerializationConfig config, final BeanDescription beanDesc,
+			final JsonSerializer<?> serializer) {
+			if (VersionedSetDocument.class.isAssignableFrom(beanDesc.getBeanClass())) {
+				return new DocumentSerializer((JsonSerializer<Object>) serializer, this.referenceSerializer);
+			}
+			if (Versionable.class.isAssignableFrom(beanDesc.getBeanClass())) {
+				return new VersionedObjectSerializer((JsonSerializer<Object>) serializer, this.referenceSerializer);
+			}
+			return serializer;
+		}
+	}
+	
+	/*
+	 * Registers the referenced objects of a document before the document is
+	 * written by the serializer of its bean
+	 */
+	private static class DocumentSerializer extends JsonSerializer<Object> implements ResolvableSerializer,
+		ContextualSerializer {
+		
+		// The generator is used for the registered objects only, the written
+		// objects are identified by the generator of their bean serializer
+		private static final ObjectIdGenerator<Object> REFERENCE_ID_GENERATOR = new ReferenceIdGenerator();
+		
+		private final JsonSerializer<Object> serializer;
+		
+		private final ReferenceSerializer referenceSerializer;
+		
+		public DocumentSerializer(final JsonSerializer<Object> serializer, final ReferenceSerializer referenceSerializer) {
+			this.serializer = serializer;
+			this.referenceSerializer = referenceSerializer;
+		}
+		
+		@Override
+		public void serialize(final Object value, final JsonGenerator jgen, final SerializerProvider provider)
+			throws IOException, JsonProcessingException {
+			this.registerReferencedObjects((VersionedSetDocument) value, provider);
+			this.serializer.serialize(value, jgen, provider);
+		}
+		
+		@Override
+		public void serializeWithType(final Object value, final JsonGenerator jgen, final SerializerProvider provider,
+			final TypeSerializer typeSer) throws IOException, JsonProcessingException {
+			this.registerReferencedObjects((VersionedSetDocument) value, provider);
+			this.serializer.serializeWithType(value, jgen, provider, typeSer);
+		}
+		
+		@Override
+		public void resolve(final SerializerProvider provider) throws JsonMappingException {
+			if (this.serializer instanceof ResolvableSerializer) {
+				((ResolvableSerializer) this.serializer).resolve(provider);
+			}
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public JsonSerializer<?> createContextual(final SerializerProvider provider, final BeanProperty property)
+			throws JsonMappingException {
+			if (this.serializer instanceof ContextualSerializer) {
+				final JsonSerializer<?> contextual =
+					((ContextualSerializer) this.serializer).createContextual(provider, property);
+				if (contextual != this.serializer) {
+					return new DocumentSerializer((JsonSerializer<Object>) contextual, this.referenceSerializer);
+				}
+			}
+			return this;
+		}
+		
+		@Override
+		public Class<Object> handledType() {
+			return this.serializer.handledType();
+		}
+		
+		private void registerReferencedObjects(final VersionedSetDocument versionedSetDocument,
+			final SerializerProvider provider) {
+			if (versionedSetDocument.getReferencedVersionedSets().isEmpty()) {
+				return;
+			}
+			final Set<Object> objectsOfDocument = Sets.newIdentityHashSet();
+			if (versionedSetDocument.getVersionedSet() != null) {
+				objectsOfDocument.addAll(versionedSetDocument.getVersionedSet().getVersionedObjects());
+			}
+			for (final VersionedSet referencedVersionedSet : versionedSetDocument.getReferencedVersionedSets()) {
+				for (final Object object : referencedVersionedSet.getVersionedObjects()) {
+					if ((object instanceof Versionable) && !objectsOfDocument.contains(object)) {
+						final WritableObjectId objectId =
+							provider.findObjectId(object, DocumentSerializer.REFERENCE_ID_GENERATOR);
+						if (objectId.id == null) {
+							// The id is handed to the serializer of the references
+							objectId.id = object;
+							objectId.serializer = this.referenceSerializer;
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Writes the nested versioned objects as references in the ReferenceView,
+	 * otherwise and for the root object the serializer of the bean is used
+	 */
+	private static class VersionedObjectSerializer extends JsonSerializer<Object> implements ResolvableSerializer,
+		ContextualSerializer {
+		
+		private final JsonSerializer<Object> serializer;
+		
+		private final ReferenceSerializer referenceSerializer;
+		
+		public VersionedObjectSerializer(final JsonSerializer<Object> serializer,
+			final ReferenceSerializer referenceSerializer) {
+			this.serializer = serializer;
+			this.referenceSerializer = referenceSerializer;
+		}
+		
+		@Override
+		public void serialize(final Object value, final JsonGenerator jgen, final SerializerProvider provider)
+			throws IOException, JsonProcessingException {
+			if (this.isReference(jgen, provider)) {
+				this.referenceSerializer.serialize(value, jgen, provider);
+			}
+			else {
+				this.serializer.serialize(value, jgen, provider);
+			}
+		}
+		
+		@Override
+		public void serializeWithType(final Object value, final JsonGenerator jgen, final SerializerProvider provider,
+			final TypeSerializer typeSer) throws IOException, JsonProcessingException {
+			if (this.isReference(jgen, provider)) {
+				this.referenceSerializer.serialize(value, jgen, provider);
+			}
+			else {
+				this.serializer.serializeWithType(value, jgen, provider, typeSer);
+			}
+		}
+		
+		@Override
+		public void resolve(final SerializerProvider provider) throws JsonMappingException {
+			if (this.serializer instanceof ResolvableSerializer) {
+				((ResolvableSerializer) this.serializer).resolve(provider);
+			}
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public JsonSerializer<?> createContextual(final SerializerProvider provider, final BeanProperty property)
+			throws JsonMappingException {
+			if (this.serializer instanceof ContextualSerializer) {
+				final JsonSerializer<?> contextual =
+					((ContextualSerializer) this.serializer).createContextual(provider, property);
+				if (contextual != this.serializer) {
+					return new VersionedObjectSerializer((JsonSerializer<Object>) contextual, this.referenceSerializer);
+				}
+			}
+			return this;
+		}
+		
+		// Self-references are allowed as long as the bean is written with its id
+		@Override
+		public boolean usesObjectId() {
+			return this.serializer.usesObjectId();
+		}
+		
+		@Override
+		public Class<Object> handledType() {
+			return this.serializer.handledType();
+		}
+		
+		private boolean isReference(final JsonGenerator jgen, final SerializerProvider provider) {
+			return (provider.getSerializationView() == ReferenceView.class) && !jgen.getOutputContext().inRoot();
+		}
+	}
+	
+	/*
+	 * Writes the type and the uuid of a referenced object
+	 */
+	private static class ReferenceSerializer extends JsonSerializer<Object> {
+		
+		private final ConcurrentMap<Class<?>, TypeSerializer> typeSerializers = Maps.newConcurrentMap();
+		
+		public ReferenceSerializer() {
+		}
+		
+		@Override
+		public void serialize(final Object value, final JsonGenerator jgen, final SerializerProvider provider)
+			throws IOException, JsonProcessingException {
+			final TypeSerializer typeSerializer = this.getTypeSerializer(value.getClass(), provider);
+			typeSerializer.writeTypePrefixForObject(value, jgen);
+			jgen.writeStringField(VersionedObjectReferenceModule.UUID_PROPERTY, ((Versionable) value).getUuid());
+			typeSerializer.writeTypeSuffixForObject(value, jgen);
+		}
+		
+		private TypeSerializer getTypeSerializer(final Class<?> cls, final SerializerProvider provider)
+			throws JsonMappingException {
+			TypeSerializer typeSerializer = this.typeSerializers.get(cls);
+			if (typeSerializer == null) {
+				typeSerializer =
+					BeanSerializerFactory.instance.createTypeSerializer(provider.getConfig(), provider.constructType(cls));
+				if (typeSerializer == null) {
+					throw new JsonMappingException("The type of the referenced class " + cls.getName() + " isn't written!");
+				}
+				this.typeSerializers.put(cls, typeSerializer);
+			}
+			return typeSerializer;
+		}
+	}
+	
+	private static class ReferenceIdGenerator extends ObjectIdGenerators.PropertyGenerator {
+		
+		private static final long serialVersionUID = 1L;
+		
+		public ReferenceIdGenerator() {
+			super(Versionable.class);
+		}
+		
+		@Override
+		public Object generateId(final Object forPojo) {
+			return ((Versionable) forPojo).getUuid();
+		}
+		
+		@Override
+		public ObjectIdGenerator<Object> forScope(final Class<?> scope) {
+			return this;
+		}
+		
+		@Override
+		public ObjectIdGenerator<Object> newForSerialization(final Object context) {
+			return this;
+		}
+		
+		@Override
+		public IdKey key(final Object key) {
+			return new IdKey(this.getClass(), this._scope, key);
+		}
+	}
+	
+}
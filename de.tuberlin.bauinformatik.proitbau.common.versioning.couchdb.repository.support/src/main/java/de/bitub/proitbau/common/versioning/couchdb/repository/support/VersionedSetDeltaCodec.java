@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.repository.support;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import de.bitub.proitbau.common.versioning.couchdb.binding.graph.VersionedSetDocument;
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
+import de.bitub.proitbau.common.versioning.util.ReflectionUtil;
+
+/*
+ * Builds the delta documents of versioned sets and applies them to their
+ * predecessors in versioning. An object is taken over from the predecessor
+ * only if it is serialized exactly as the object of the versioned set, so the
+ * applied delta results in the same versioned set as a full snapshot would.
+ * The objects are compared by the fingerprints of their serialized form and
+ * not by the Comparator, which only compares the comparable fields. The
+ * fingerprints of the predecessor are taken when it is loaded, the loaded
+ * objects might be changed in place afterwards.
+ */
+class VersionedSetDeltaCodec {
+	
+	// A delta which replaces more objects is stored as a full snapshot instead
+	private static final double MAXIMAL_CHANGED_OBJECTS_RATIO = 0.5;
+	
+	private static final HashFunction FINGERPRINT_FUNCTION = Hashing.murmur3_128();
+	
+	private VersionedSetDeltaCodec() {
+	}
+	
+	private static class Handler {
+		
+		@SuppressWarnings("synthetic-access")
+		private static VersionedSetDeltaCodec instance = new VersionedSetDeltaCodec();
+	}
+	
+	@SuppressWarnings("synthetic-access")
+	public static VersionedSetDeltaCodec getInstance() {
+		return Handler.instance;
+	}
+	
+	/*
+	 * Returns the delta document of the given versioned set against the document
+	 * of its predecessor in versioning or null, if too many objects have
+	 * changed. The delta contains the created and the changed objects and the
+	 * uuids of the removed objects and field-uuids pairs.
+	 * @param versionedSet the versioned set to store
+	 * @param baseDocument the loaded document of the predecessor with its whole
+	 * versioned set and the fingerprints of its objects
+	 * @param objectMapper the mapper which serializes the objects
+	 * @return the delta document or null
+	 */
+	public VersionedSetDocument createDelta(final VersionedSet versionedSet, final VersionedSetDocument baseDocument,
+		final ObjectMapper objectMapper) throws IOException {
+		Preconditions.checkNotNull(versionedSet, "Given versioned set is null!");
+		Preconditions.checkNotNull(baseDocument, "Given document of the predecessor is null!");
+		final VersionedSet base = baseDocument.getVersionedSet();
+		final Map<String, Long> baseFingerprints = baseDocument.getObjectFingerprints();
+		Preconditions.checkArgument(base != null, "Given document of the predecessor contains no versioned set!");
+		Preconditions.checkArgument(baseFingerprints != null,
+			"The fingerprints of the objects of the predecessor are unknown!");
+		
+		final int numberOfObjects =
+			Math.max(versionedSet.getUuidsOfObjects().size(), versionedSet.getVersionedObjects().size());
+		final int maximalChangedObjects =
+			(int) (numberOfObjects * VersionedSetDeltaCodec.MAXIMAL_CHANGED_OBJECTS_RATIO);
+		
+		// 1) Objects which are missing in the predecessor or are serialized
+		// differently
+		final Set<String> uuidsOfObjects = Sets.newHashSetWithExpectedSize(versionedSet.getVersionedObjects().size());
+		final Set<Object> changedObjects = Sets.newHashSet();
+		for (final Object object : versionedSet.getVersionedObjects()) {
+			final String uuid = ReflectionUtil.getInstance().getUuidOfVersionedObject(object);
+			uuidsOfObjects.add(uuid);
+			final Long baseFingerprint = baseFingerprints.get(uuid);
+			if ((baseFingerprint == null) || (baseFingerprint.longValue() != this.fingerprint(object, objectMapper))) {
+				changedObjects.add(object);
+				if (changedObjects.size() > maximalChangedObjects) {
+					return null;
+				}
+			}
+		}
+		
+		// 2) Uuids which are removed from the objects or from the uuids of the
+		// objects, the remaining uuids of the predecessor are taken over
+		final Set<String> removedObjects = Sets.newHashSet(Sets.difference(baseFingerprints.keySet(), uuidsOfObjects));
+		removedObjects.addAll(Sets.difference(base.getUuidsOfObjects(), versionedSet.getUuidsOfObjects()));
+		if ((changedObjects.size() + removedObjects.size()) > maximalChangedObjects) {
+			return null;
+		}
+		final Set<String> addedUuids = Sets.newHashSet();
+		for (final String uuid : versionedSet.getUuidsOfObjects()) {
+			if (removedObjects.contains(uuid) || !base.getUuidsOfObjects().contains(uuid)) {
+				addedUuids.add(uuid);
+			}
+		}
+		
+		// 3) Field-uuids pairs
+		final Map<String, Set<String>> addedFieldUuidsPairs = Maps.newHashMap();
+		final Map<String, Set<String>> removedFieldUuidsPairs = Maps.newHashMap();
+		for (final Map.Entry<String, Set<String>> fieldUuidsPair : versionedSet.getFieldUuidsPairs().entrySet()) {
+			final Set<String> baseUuids = this.getUuidsOfField(base, fieldUuidsPair.getKey());
+			final Set<String> addedUuidsOfField = Sets.newHashSet(Sets.difference(fieldUuidsPair.getValue(), baseUuids));
+			if (!addedUuidsOfField.isEmpty()) {
+				addedFieldUuidsPairs.put(fieldUuidsPair.getKey(), addedUuidsOfField);
+			}
+		}
+		for (final Map.Entry<String, Set<String>> fieldUuidsPair : base.getFieldUuidsPairs().entrySet()) {
+			final Set<String> uuids = this.getUuidsOfField(versionedSet, fieldUuidsPair.getKey());
+			final Set<String> removedUuidsOfField = Sets.newHashSet(Sets.difference(fieldUuidsPair.getValue(), uuids));
+			if (!removedUuidsOfField.isEmpty()) {
+				removedFieldUuidsPairs.put(fieldUuidsPair.getKey(), removedUuidsOfField);
+			}
+		}
+		
+		final VersionedSet delta = new VersionedSet(versionedSet.getName());
+		delta.setUuid(versionedSet.getUuid());
+		delta.setDescription(versionedSet.getDescription());
+		delta.setType(versionedSet.getType());
+		delta.setStrategy(versionedSet.getStrategy());
+		delta.setVisible(versionedSet.isVisible());
+		delta.getPredecessorsVersioning().addAll(versionedSet.getPredecessorsVersioning());
+		delta.setVersionedObjects(changedObjects);
+		delta.setUuidsOfObjects(addedUuids);
+		delta.setFieldUuidsPairs(addedFieldUuidsPairs);
+		
+		final VersionedSetDocument deltaDocument = new VersionedSetDocument(versionedSet);
+		deltaDocument.setVersionedSet(delta);
+		deltaDocument.setDeltaBase(base.getUuid());
+		deltaDocument.setDeltaDepth(baseDocument.getDeltaDepth() + 1);
+		deltaDocument.setRemovedObjects(removedObjects);
+		deltaDocument.setRemovedFieldUuidsPairs(removedFieldUuidsPairs);
+		// The unchanged objects referenced by the changed ones are written as
+		// references, they are linked when the delta is applied
+		deltaDocument.getReferencedVersionedSets().add(versionedSet);
+		return deltaDocument;
+	}
+	
+	/*
+	 * Completes the versioned set of the given delta document by the objects,
+	 * the uuids and the field-uuids pairs taken over from its predecessor. The
+	 * versioned set of the document is changed. If the fingerprints of the
+	 * predecessor are known, the fingerprints of the delta document are set as
+	 * well, they are taken before the objects are handed out. The objects taken
+	 * over are copies, so the predecessor isn't changed, and they are linked
+	 * with the changed objects by their uuids.
+	 * @param deltaDocument the loaded delta document
+	 * @param baseDocument the document of the predecessor with its whole
+	 * versioned set
+	 * @param objectMapper the mapper which serializes the objects
+	 */
+	public void applyDelta(final VersionedSetDocument deltaDocument, final VersionedSetDocument baseDocument,
+		final ObjectMapper objectMapper) throws IOException {
+		Preconditions.checkNotNull(deltaDocument, "Given delta document is null!");
+		Preconditions.checkNotNull(baseDocument, "Given document of the predecessor is null!");
+		Preconditions.checkArgument(baseDocument.getUuid().equals(deltaDocument.getDeltaBase()),
+			"Given document isn't the base of the delta!");
+		final VersionedSet base = baseDocument.getVersionedSet();
+		final VersionedSet versionedSet = deltaDocument.getVersionedSet();
+		final Map<String, Long> baseFingerprints = baseDocument.getObjectFingerprints();
+		if (baseFingerprints != null) {
+			final Map<String, Long> fingerprints = Maps.newHashMap(baseFingerprints);
+			fingerprints.keySet().removeAll(deltaDocument.getRemovedObjects());
+			fingerprints.putAll(this.createFingerprints(versionedSet.getVersionedObjects(), objectMapper));
+			deltaDocument.setObjectFingerprints(fingerprints);
+		}
+		
+		// The changed objects replace the objects of the predecessor
+		final Set<String> replacedObjects = Sets.newHashSet(deltaDocument.getRemovedObjects());
+		for (final Object object : versionedSet.getVersionedObjects()) {
+			replacedObjects.add(ReflectionUtil.getInstance().getUuidOfVersionedObject(object));
+		}
+		final Set<Object> takenObjects = Sets.newHashSetWithExpectedSize(base.getVersionedObjects().size());
+		for (final Object object : base.getVersionedObjects()) {
+			if (!replacedObjects.contains(ReflectionUtil.getInstance().getUuidOfVersionedObject(object))) {
+				takenObjects.add(object);
+			}
+		}
+		final Set<Object> objects =
+			Sets.newHashSetWithExpectedSize(takenObjects.size() + versionedSet.getVersionedObjects().size());
+		objects.addAll(this.copy(takenObjects, objectMapper));
+		objects.addAll(versionedSet.getVersionedObjects());
+		
+		final Set<String> uuidsOfObjects = Sets.newHashSet(base.getUuidsOfObjects());
+		uuidsOfObjects.removeAll(deltaDocument.getRemovedObjects());
+		uuidsOfObjects.addAll(versionedSet.getUuidsOfObjects());
+		
+		final Map<String, Set<String>> fieldUuidsPairs = Maps.newHashMap();
+		for (final Map.Entry<String, Set<String>> fieldUuidsPair : base.getFieldUuidsPairs().entrySet()) {
+			fieldUuidsPairs.put(fieldUuidsPair.getKey(), Sets.newHashSet(fieldUuidsPair.getValue()));
+		}
+		for (final Map.Entry<String, Set<String>> fieldUuidsPair : deltaDocument.getRemovedFieldUuidsPairs().entrySet()) {
+			final Set<String> uuids = fieldUuidsPairs.get(fieldUuidsPair.getKey());
+			if (uuids != null) {
+				uuids.removeAll(fieldUuidsPair.getValue());
+				if (uuids.isEmpty()) {
+					fieldUuidsPairs.remove(fieldUuidsPair.getKey());
+				}
+			}
+		}
+		for (final Map.Entry<String, Set<String>> fieldUuidsPair : versionedSet.getFieldUuidsPairs().entrySet()) {
+			Set<String> uuids = fieldUuidsPairs.get(fieldUuidsPair.getKey());
+			if (uuids == null) {
+				uuids = Sets.newHashSet();
+				fieldUuidsPairs.put(fieldUuidsPair.getKey(), uuids);
+			}
+			uuids.addAll(fieldUuidsPair.getValue());
+		}
+		
+		versionedSet.setVersionedObjects(objects);
+		versionedSet.setUuidsOfObjects(uuidsOfObjects);
+		versionedSet.setFieldUuidsPairs(fieldUuidsPairs);
+		// The changed objects refer to the objects taken over by references and
+		// the copies refer to detached copies of the changed objects
+		VersionedObjectLinker.getInstance().link(Collections.singleton(versionedSet));
+	}
+	
+	/*
+	 * Returns copies of the given objects, the objects are serialized together,
+	 * so the copies refer to each other like the objects do
+	 */
+	private Set<Object> copy(final Set<Object> objects, final ObjectMapper objectMapper) throws IOException {
+		if (objects.isEmpty()) {
+			return objects;
+		}
+		final VersionedSet versionedSet = new VersionedSet();
+		versionedSet.setVersionedObjects(objects);
+		final TokenBuffer buffer = new TokenBuffer(objectMapper);
+		objectMapper.writeValue(buffer, versionedSet);
+		return objectMapper.readValue(buffer.asParser(), VersionedSet.class).getVersionedObjects();
+	}
+	
+	/*
+	 * Returns the fingerprints of the given objects by their uuids
+	 * @param objects the objects as they were loaded
+	 * @param objectMapper the mapper which serializes the objects
+	 * @return the fingerprints of the objects
+	 */
+	public Map<String, Long> createFingerprints(final Set<Object> objects, final ObjectMapper objectMapper)
+		throws IOException {
+		final Map<String, Long> fingerprints = Maps.newHashMapWithExpectedSize(objects.size());
+		for (final Object object : objects) {
+			fingerprints.put(ReflectionUtil.getInstance().getUuidOfVersionedObject(object),
+				Long.valueOf(this.fingerprint(object, objectMapper)));
+		}
+		return fingerprints;
+	}
+	
+	/*
+	 * The other versioned objects are written as references, so the
+	 * fingerprint changes only with the object itself and is the same whether
+	 * the references are linked or not
+	 */
+	private long fingerprint(final Object object, final ObjectMapper objectMapper) throws IOException {
+		final byte[] bytes =
+			objectMapper.writerWithView(VersionedObjectReferenceModule.ReferenceView.class).writeValueAsBytes(object);
+		return VersionedSetDeltaCodec.FINGERPRINT_FUNCTION.hashBytes(bytes).asLong();
+	}
+	
+	private Set<String> getUuidsOfField(final VersionedSet versionedSet, final String field) {
+		final Set<String> uuids = versionedSet.getFieldUuidsPairs().get(field);
+		if (uuids == null) {
+			return Collections.emptySet();
+		}
+		return uuids;
+	}
+	
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Author: "Vladislav Fedotov"
+ * Written: 2013
+ * Project: Setvers
+ * E-mail: vladislav.fedotov@tu-berlin.de
+ * Company: TU Berlin
+ * Version: 1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ * Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.couchdb.repository.support;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.ektorp.DbAccessException;
+import org.ektorp.DocumentOperationResult;
+
+import com.google.common.collect.Maps;
+
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
+
+/*
+ * Thrown if the documents of some versioned sets couldn't be written by the
+ * bulk requests of a commit. The binding graph and its VersionedSetWrapper
+ * aren't written in this case, so the database stays in the previous state.
+ */
+public class VersionedSetWriteException extends DbAccessException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final Map<VersionedSet, DocumentOperationResult> failedVersionedSets;
+	
+	public VersionedSetWriteException(final Map<VersionedSet, DocumentOperationResult> failedVersionedSets) {
+		super(failedVersionedSets.size() + " versioned sets couldn't be written: " + failedVersionedSets.values());
+		this.failedVersionedSets = Collections.unmodifiableMap(Maps.newLinkedHashMap(failedVersionedSets));
+	}
+	
+	/*
+	 * Returns the versioned sets which couldn't be written together with the
+	 * error returned for their documents
+	 */
+	public Map<VersionedSet, DocumentOperationResult> getFailedVersionedSets() {
+		return this.failedVersionedSets;
+	}
+	
+}
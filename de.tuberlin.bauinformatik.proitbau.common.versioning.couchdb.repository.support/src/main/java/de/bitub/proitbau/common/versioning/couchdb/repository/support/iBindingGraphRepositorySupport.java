@@ -19,8 +19,12 @@ package de.bitub.proitbau.common.versioning.couchdb.repository.support;
 
 import java.util.List;
 
+import org.ektorp.Page;
+import org.ektorp.PageRequest;
 import org.ektorp.Revision;
 
+import com.google.common.cache.CacheStats;
+
 import de.bitub.proitbau.common.versioning.couchdb.binding.graph.iBindingGraph;
 
 public interface iBindingGraphRepositorySupport {
@@ -29,7 +33,7 @@ public interface iBindingGraphRepositorySupport {
 	 * Returns a binding graph object which was loaded from the database.
 	 * This implementation is faster then <code>read(boolean
 	 * readVersionedSetWrapper)</code>, because this method doesn't execute
-	 * <code>getAllBindingGraphs()</code> method to find
+	 * <code>getBindingGraphUuid()</code> method to find
 	 * all binding graphs and their uuids.
 	 * @param uuid uuid of the binding graph object
 	 * @param readVersionedSetWrapper load or not the content of binding graph
@@ -42,7 +46,7 @@ public interface iBindingGraphRepositorySupport {
 	 * Returns a binding graph object which was loaded from the database.
 	 * This implementation is slower then <code>read(String uuid, boolean
 	 * readVersionedSetWrapper)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code> method to
+	 * because this method executes <code>getBindingGraphUuid()</code> method to
 	 * find all binding graphs and their uuids.
 	 * @param readVersionedSetWrapper load or not the content of binding graph
 	 * (VersionedSetWrapper which contains versioned sets)
@@ -65,7 +69,7 @@ public interface iBindingGraphRepositorySupport {
 	 * This implementation is faster then
 	 * <code>delete(String uuid, boolean deleteVersionedSetWrapper)</code>
 	 * and <code>delete(boolean deleteVersionedSetWrapper)</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids and doesn't load binding
 	 * graph object by its uuid
 	 * <code>read(String uuid, boolean readVersionedSetWrapper)</code>.
@@ -81,7 +85,7 @@ public interface iBindingGraphRepositorySupport {
 	 * Deletes a binding graph object from the database.
 	 * This implementation is faster then <code>delete(boolean
 	 * deleteVersionedSetWrapper)</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids, but this method is a
 	 * little bit slower then <code>delete(iBindingGraph bindingGraph, boolean
 	 * deleteVersionedSetWrapper)</code>,
@@ -99,7 +103,7 @@ public interface iBindingGraphRepositorySupport {
 	 * <code>delete(iBindingGraph bindingGraph, boolean
 	 * deleteVersionedSetWrapper)</code>
 	 * and <code>delete(String uuid, boolean deleteVersionedSetWrapper)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code> method to
+	 * because this method executes <code>getBindingGraphUuid()</code> method to
 	 * find all binding graphs and their uuids.
 	 * @param deleteVersionedSetWrapper delete or not the content of binding graph
 	 * (VersionedSetWrapper which contains versioned sets)
@@ -110,7 +114,7 @@ public interface iBindingGraphRepositorySupport {
 	 * Gets previous state of a binding graph object state from the database.
 	 * This implementation is faster then <code>getPreviousState(boolean
 	 * readVersionedSetWrapper)</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param uuid uuid of the binding graph object
 	 * @param readVersionedSetWrapper load or not the content of binding graph
@@ -123,7 +127,7 @@ public interface iBindingGraphRepositorySupport {
 	 * Gets previous state of a binding graph object state from the database.
 	 * This implementation is slower then <code>getPreviousState(String uuid,
 	 * boolean readVersionedSetWrapper)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code> method to
+	 * because this method executes <code>getBindingGraphUuid()</code> method to
 	 * find all binding graphs and their uuids.
 	 * @param readVersionedSetWrapper load or not the content of binding graph
 	 * (VersionedSetWrapper which contains versioned sets)
@@ -134,7 +138,7 @@ public interface iBindingGraphRepositorySupport {
 	/*
 	 * Gets all available revisions of a binding graph object from the database.
 	 * This implementation is faster then <code>getRevisions()</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param uuid uuid of the binding graph object
 	 * @return the list which contains all available revisions of the given domain
@@ -145,7 +149,7 @@ public interface iBindingGraphRepositorySupport {
 	/*
 	 * Gets all available revisions of a binding graph object from the database.
 	 * This implementation is slower then <code>getRevisions(String uuid)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code> method to
+	 * because this method executes <code>getBindingGraphUuid()</code> method to
 	 * find all binding graphs and their uuids.
 	 * @return the list which contains all available revisions of the given domain
 	 * model object
@@ -157,7 +161,7 @@ public interface iBindingGraphRepositorySupport {
 	 * This implementation is faster then
 	 * <code>getSpecificState(String specificRevision, boolean
 	 * getVersionedSetWrapper)</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param uuid uuid of the binding graph
 	 * @param actualRevision an actual revision of the binding graph
@@ -175,7 +179,7 @@ public interface iBindingGraphRepositorySupport {
 	 * This implementation is slower then
 	 * <code>getSpecificState(String uuid, String actualRevision, String
 	 * specificRevision, final boolean readVersionedSetWrapper)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code>
+	 * because this method executes <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param actualRevision an actual revision of the binding graph
 	 * @param specificRevision which revision of the binding graph should be
@@ -190,7 +194,7 @@ public interface iBindingGraphRepositorySupport {
 	 * Gets all states of the binding graph object from the database.
 	 * This implementation is faster then <code>getAllStates(boolean
 	 * getVersionedSetWrapper)</code>,
-	 * because this method doesn't execute <code>getAllBindingGraphs()</code>
+	 * because this method doesn't execute <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param uuid uuid of the binding graph
 	 * @param readVersionedSetWrapper load or not the content of binding graph
@@ -203,7 +207,7 @@ public interface iBindingGraphRepositorySupport {
 	 * Gets all states of the binding graph object from the database.
 	 * This implementation is slower then <code>getAllStates(String uuid, boolean
 	 * getVersionedSetWrapper)</code>,
-	 * because this method executes <code>getAllBindingGraphs()</code>
+	 * because this method executes <code>getBindingGraphUuid()</code>
 	 * method to find all binding graphs and their uuids.
 	 * @param readVersionedSetWrapper load or not the content of binding graph
 	 * (VersionedSetWrapper which contains versioned sets)
@@ -211,6 +215,17 @@ public interface iBindingGraphRepositorySupport {
 	 */
 	public List<iBindingGraph> getAllStates(final boolean readVersionedSetWrapper);
 	
+	/*
+	 * Gets one page of the states of the binding graph object from the
+	 * database, the newest state comes first. The VersionedSetWrappers of the
+	 * states aren't loaded.
+	 * @param uuid uuid of the binding graph
+	 * @param pageRequest the requested page, e.g.
+	 * <code>PageRequest.firstPage(int pageSize)</code>
+	 * @return the page with the states of the binding graph
+	 */
+	public Page<iBindingGraph> getStates(final String uuid, final PageRequest pageRequest);
+	
 	/*
 	 * Returns true if any binding graph object is available in the database.
 	 * @return true - if any binding graph object is available in the database,
@@ -231,4 +246,17 @@ public interface iBindingGraphRepositorySupport {
 	
 	void eraseAndCreate(iBindingGraph bindingGraph);
 	
+	/*
+	 * Returns the statistics of the cache of the decoded states of binding
+	 * graphs and VersionedSetWrappers, e.g. its hit rate.
+	 * @return the statistics of the cache
+	 */
+	public CacheStats getCacheStats();
+	
+	/*
+	 * Stops the changes feed which keeps the uuids of the binding graphs up to
+	 * date, it is started again when the uuids are needed.
+	 */
+	public void close();
+	
 }
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Author:		"Vladislav Fedotov"
+ * Written:		2013
+ * Project:		Setvers
+ * E-mail:		vladislav.fedotov@tu-berlin.de
+ * Company:		TU Berlin
+ * Version:		1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.compare_results;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+import de.bitub.proitbau.common.versioning.model.VersionedSetType;
+
+/*
+ * Summary of a merge which was computed without touching the merged objects.
+ * For a single versioned set type it keeps the number of objects which would
+ * be overwritten by the leading versioned set, the number of objects which
+ * would be added from the other versioned set and the number of objects for
+ * which a constraint resolver would be invoked.
+ */
+public class MergeEstimation {
+	
+	private final VersionedSetType type;
+	
+	private int overwrittenObjects = 0;
+	
+	private int addedObjects = 0;
+	
+	private int constraintTriggeringObjects = 0;
+	
+	public MergeEstimation(final VersionedSetType type) {
+		Preconditions.checkNotNull(type, "Given type is null!");
+		this.type = type;
+	}
+	
+	public VersionedSetType getType() {
+		return this.type;
+	}
+	
+	public int getOverwrittenObjects() {
+		return this.overwrittenObjects;
+	}
+	
+	public void increaseOverwrittenObjects() {
+		this.overwrittenObjects++;
+	}
+	
+	public int getAddedObjects() {
+		return this.addedObjects;
+	}
+	
+	public void increaseAddedObjects(final int numberOfAddedObjects) {
+		Preconditions.checkArgument(numberOfAddedObjects >= 0, "Given number of added objects is negative!");
+		this.addedObjects += numberOfAddedObjects;
+	}
+	
+	public int getConstraintTriggeringObjects() {
+		return this.constraintTriggeringObjects;
+	}
+	
+	public void increaseConstraintTriggeringObjects() {
+		this.constraintTriggeringObjects++;
+	}
+	
+	public void add(final MergeEstimation estimation) {
+		Preconditions.checkNotNull(estimation, "Given estimation is null!");
+		Preconditions.checkArgument(this.type.equals(estimation.getType()), "Given estimation has another type!");
+		this.overwrittenObjects += estimation.getOverwrittenObjects();
+		this.addedObjects += estimation.getAddedObjects();
+		this.constraintTriggeringObjects += estimation.getConstraintTriggeringObjects();
+	}
+	
+	public boolean isEmpty() {
+		return (this.overwrittenObjects == 0) && (this.addedObjects == 0) && (this.constraintTriggeringObjects == 0);
+	}
+	
+	@Override
+	public String toString() {
+		// @formatter:off
+		return Objects.toStringHelper(this)
+			.add("type", this.type)
+			.add("overwritten", this.overwrittenObjects)
+			.add("added", this.addedObjects)
+			.add("constraints", this.constraintTriggeringObjects)
+			.toString();
+		// @formatter:on
+	}
+	
+}
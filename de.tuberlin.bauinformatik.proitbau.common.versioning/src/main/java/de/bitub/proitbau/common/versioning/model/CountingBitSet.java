@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Author:		"Vladislav Fedotov"
+ * Written:		2013
+ * Project:		Setvers
+ * E-mail:		vladislav.fedotov@tu-berlin.de
+ * Company:		TU Berlin
+ * Version:		1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.model;
+
+import java.util.BitSet;
+
+/*
+ * Bit set which keeps its cardinality, so the size of a uuid set view is
+ * known without scanning all words. Single bits keep the count up to date,
+ * all other modifications invalidate it and it is recomputed on the next
+ * request.
+ */
+final class CountingBitSet extends BitSet {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private static final int UNKNOWN_CARDINALITY = -1;
+	
+	private int cardinality = 0;
+	
+	CountingBitSet() {
+		super();
+	}
+	
+	CountingBitSet(final int expectedSize) {
+		super(expectedSize);
+	}
+	
+	@Override
+	public int cardinality() {
+		if (this.cardinality == CountingBitSet.UNKNOWN_CARDINALITY) {
+			this.cardinality = super.cardinality();
+		}
+		return this.cardinality;
+	}
+	
+	@Override
+	public void set(final int bitIndex) {
+		if (!this.get(bitIndex)) {
+			super.set(bitIndex);
+			if (this.cardinality != CountingBitSet.UNKNOWN_CARDINALITY) {
+				this.cardinality++;
+			}
+		}
+	}
+	
+	@Override
+	public void clear(final int bitIndex) {
+		if (this.get(bitIndex)) {
+			super.clear(bitIndex);
+			if (this.cardinality != CountingBitSet.UNKNOWN_CARDINALITY) {
+				this.cardinality--;
+			}
+		}
+	}
+	
+	@Override
+	public void clear() {
+		super.clear();
+		this.cardinality = 0;
+	}
+	
+	@Override
+	public void set(final int fromIndex, final int toIndex) {
+		super.set(fromIndex, toIndex);
+		this.cardinality = CountingBitSet.UNKNOWN_CARDINALITY;
+	}
+	
+	@Override
+	public void set(final int fromIndex, final int toIndex, final boolean value) {
+		super.set(fromIndex, toIndex, value);
+		this.cardinality = CountingBitSet.UNKNOWN_CARDINALITY;
+	}
+	
+	@Override
+	public void clear(final int fromIndex, final int toIndex) {
+		super.clear(fromIndex, toIndex);
+		this.cardinality = CountingBitSet.UNKNOWN_CARDINALITY;
+	}
+	
+	@Override
+	public void flip(final int bitIndex) {
+		super.flip(bitIndex);
+		this.cardinality = CountingBitSet.UNKNOWN_CARDINALITY;
+	}
+	
+	@Override
+	public void flip(final int fromIndex, final int toIndex) {
+		super.flip(fromIndex, toIndex);
+		this.cardinality = CountingBitSet.UNKNOWN_CARDINALITY;
+	}
+	
+	@Override
+	public void and(final BitSet set) {
+		super.and(set);
+		this.cardinality = CountingBitSet.UNKNOWN_CARDINALITY;
+	}
+	
+	@Override
+	public void or(final BitSet set) {
+		super.or(set);
+		this.cardinality = CountingBitSet.UNKNOWN_CARDINALITY;
+	}
+	
+	@Override
+	public void xor(final BitSet set) {
+		super.xor(set);
+		this.cardinality = CountingBitSet.UNKNOWN_CARDINALITY;
+	}
+	
+	@Override
+	public void andNot(final BitSet set) {
+		super.andNot(set);
+		this.cardinality = CountingBitSet.UNKNOWN_CARDINALITY;
+	}
+	
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Author:		"Vladislav Fedotov"
+ * Written:		2013
+ * Project:		Setvers
+ * E-mail:		vladislav.fedotov@tu-berlin.de
+ * Company:		TU Berlin
+ * Version:		1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+
+/*
+ * Map of field -> uuids backed by the indices of the uuids in a uuid table,
+ * the values are views on the indices, putting a set copies its uuids
+ */
+final class FieldUuidsView extends AbstractMap<String, Set<String>> {
+	
+	private final UuidTable uuidTable;
+	
+	private final Map<String, BitSet> indicesByField;
+	
+	FieldUuidsView(final UuidTable uuidTable, final Map<String, BitSet> indicesByField) {
+		this.uuidTable = uuidTable;
+		this.indicesByField = indicesByField;
+	}
+	
+	@Override
+	public Set<String> get(final Object field) {
+		final BitSet indices = this.indicesByField.get(field);
+		return indices == null ? null : new UuidSetView(this.uuidTable, indices);
+	}
+	
+	@Override
+	public boolean containsKey(final Object field) {
+		return this.indicesByField.containsKey(field);
+	}
+	
+	@Override
+	public Set<String> put(final String field, final Set<String> uuids) {
+		Preconditions.checkNotNull(field, "Given field is null!");
+		Preconditions.checkNotNull(uuids, "Given set of uuids is null!");
+		final UuidSetView view = new UuidSetView(this.uuidTable, new CountingBitSet());
+		view.addAll(uuids);
+		final BitSet oldIndices = this.indicesByField.put(field, view.getIndices());
+		return oldIndices == null ? null : new UuidSetView(this.uuidTable, oldIndices);
+	}
+	
+	@Override
+	public Set<String> remove(final Object field) {
+		final BitSet oldIndices = this.indicesByField.remove(field);
+		return oldIndices == null ? null : new UuidSetView(this.uuidTable, oldIndices);
+	}
+	
+	@Override
+	public int size() {
+		return this.indicesByField.size();
+	}
+	
+	@Override
+	public void clear() {
+		this.indicesByField.clear();
+	}
+	
+	@Override
+	public Set<Entry<String, Set<String>>> entrySet() {
+		return new AbstractSet<Entry<String, Set<String>>>() {
+			
+			@Override
+			public Iterator<Entry<String, Set<String>>> iterator() {
+				final Iterator<Entry<String, BitSet>> iterator =
+					FieldUuidsView.this.indicesByField.entrySet().iterator();
+				return new Iterator<Entry<String, Set<String>>>() {
+					
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+					
+					@Override
+					@SuppressWarnings("synthetic-access")
+					public Entry<String, Set<String>> next() {
+						final Entry<String, BitSet> entry = iterator.next();
+						return new SimpleImmutableEntry<String, Set<String>>(entry.getKey(), new UuidSetView(
+							FieldUuidsView.this.uuidTable, entry.getValue()));
+					}
+					
+					@Override
+					public void remove() {
+						iterator.remove();
+					}
+				};
+			}
+			
+			@Override
+			public int size() {
+				return FieldUuidsView.this.indicesByField.size();
+			}
+		};
+	}
+	
+}
@@ -17,6 +17,7 @@
  ******************************************************************************/
 package de.bitub.proitbau.common.versioning.model;
 
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.util.Collection;
 import java.util.Map;
@@ -27,9 +28,11 @@ import java.util.concurrent.TimeUnit;
 import com.google.common.base.Preconditions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Table;
 
 public class ModelCache {
 	
@@ -44,12 +47,19 @@ public class ModelCache {
 		return Handler.instance;
 	}
 	
+	// Bound class -> bind class -> is bound by the boundBy property of the
+	// @VersionedEntity annotation
+	private final Table<Class<?>, Class<?>, Boolean> boundByClasses = HashBasedTable.create(30, 30);
+	
 	private final Map<Field, String> fieldNames = Maps.newHashMapWithExpectedSize(100);
 	
 	private final Multimap<Class<?>, Field> nonStaticFields = HashMultimap.create(30, 20);
 	
 	private final Multimap<Class<?>, Field> comaparableFields = HashMultimap.create(30, 20);
 	
+	// Class -> field or method with the @Id annotation, null if there is none
+	private final Map<Class<?>, AccessibleObject> idAccessors = Maps.newHashMapWithExpectedSize(100);
+	
 	private final Map<Field, Boolean> isFieldTransient = Maps.newHashMapWithExpectedSize(1000);
 	
 	private final Map<Field, Boolean> isFieldVisible = Maps.newHashMapWithExpectedSize(100);
@@ -68,6 +78,13 @@ public class ModelCache {
 	private ModelCache() {
 	}
 	
+	public void addBoundByClass(final Class<?> boundClass, final Class<?> bindClass, final Boolean isBoundByClass) {
+		Preconditions.checkNotNull(boundClass, "Given bound class is null!");
+		Preconditions.checkNotNull(bindClass, "Given bind class is null!");
+		Preconditions.checkNotNull(isBoundByClass, "Given status is null!");
+		this.boundByClasses.put(boundClass, bindClass, isBoundByClass);
+	}
+	
 	public void addComarableField(final Class<?> cls, final Field field) {
 		Preconditions.checkNotNull(cls, "Given class is null!");
 		Preconditions.checkNotNull(field, "Given field is null!");
@@ -81,6 +98,11 @@ public class ModelCache {
 		this.comaparableFields.putAll(cls, fields);
 	}
 	
+	public void addIdAccessor(final Class<?> cls, final AccessibleObject idAccessor) {
+		Preconditions.checkNotNull(cls, "Given class is null!");
+		this.idAccessors.put(cls, idAccessor);
+	}
+	
 	public boolean addNonStaticField(final Class<?> cls, final Field field) {
 		if ((cls != null) && (field != null)) {
 			return this.nonStaticFields.put(cls, field);
@@ -158,6 +180,10 @@ public class ModelCache {
 		return false;
 	}
 	
+	public boolean containsBoundByClass(final Class<?> boundClass, final Class<?> bindClass) {
+		return this.boundByClasses.contains(boundClass, bindClass);
+	}
+	
 	public boolean containsComparableField(final Class<?> cls) {
 		if ((cls != null) && (this.comaparableFields.containsKey(cls))) {
 			return true;
@@ -165,6 +191,10 @@ public class ModelCache {
 		return false;
 	}
 	
+	public boolean containsIdAccessor(final Class<?> cls) {
+		return this.idAccessors.containsKey(cls);
+	}
+	
 	public boolean containsNonStaticField(final Class<?> cls) {
 		if ((cls != null) && this.nonStaticFields.containsKey(cls)) {
 			return true;
@@ -280,6 +310,10 @@ public class ModelCache {
 		return this.orderIndexesOfFields.get(field).intValue();
 	}
 	
+	public AccessibleObject getIdAccessor(final Class<?> cls) {
+		return this.idAccessors.get(cls);
+	}
+	
 	public String getSuperclassName(final Class<?> cls) {
 		return this.superclassNames.get(cls);
 	}
@@ -288,10 +322,18 @@ public class ModelCache {
 		return this.versionedEntityNames.get(cls);
 	}
 	
+	public void invalidateBoundByClassesCache() {
+		this.boundByClasses.clear();
+	}
+	
 	public void invalidateObjectValuesCache() {
 		this.objectValues.invalidateAll();
 	}
 	
+	public boolean isBoundByClass(final Class<?> boundClass, final Class<?> bindClass) {
+		return this.boundByClasses.get(boundClass, bindClass).booleanValue();
+	}
+	
 	public boolean isFieldComparable(final Field field) {
 		return this.comaparableFields.containsValue(field);
 	}
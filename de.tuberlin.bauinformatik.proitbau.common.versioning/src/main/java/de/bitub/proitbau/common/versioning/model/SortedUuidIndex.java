@@ -0,0 +1,439 @@
+/*******************************************************************************
+ * Author:		"Vladislav Fedotov"
+ * Written:		2013
+ * Project:		Setvers
+ * E-mail:		vladislav.fedotov@tu-berlin.de
+ * Company:		TU Berlin
+ * Version:		1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import de.bitub.proitbau.common.versioning.util.ReflectionUtil;
+
+/*
+ * Immutable sorted index of uuids. Canonical textual UUIDs are kept as two
+ * longs in primitive arrays sorted by their 128 bits, all other uuids are
+ * kept as sorted strings behind them. Each uuid can carry a value, e.g. the
+ * versioned object with this uuid. Difference, intersection and union are
+ * linear merge-joins over two indices, they compare uuids only, so neither
+ * equals nor hashCode of the values is used.
+ */
+public final class SortedUuidIndex {
+	
+	private static final int DIFFERENCE = 0;
+	
+	private static final int INTERSECTION = 1;
+	
+	private static final int UNION = 2;
+	
+	private final long[] mostSignificantBits;
+	
+	private final long[] leastSignificantBits;
+	
+	private final Object[] values;
+	
+	private final String[] irregularUuids;
+	
+	private final Object[] irregularValues;
+	
+	private SortedUuidIndex(final long[] mostSignificantBits, final long[] leastSignificantBits, final Object[] values,
+		final String[] irregularUuids, final Object[] irregularValues) {
+		this.mostSignificantBits = mostSignificantBits;
+		this.leastSignificantBits = leastSignificantBits;
+		this.values = values;
+		this.irregularUuids = irregularUuids;
+		this.irregularValues = irregularValues;
+	}
+	
+	/*
+	 * Returns an index of the given uuids without values
+	 */
+	public static SortedUuidIndex ofUuids(final Collection<String> uuids) {
+		Preconditions.checkNotNull(uuids, "Given collection of uuids is null!");
+		final Builder builder = new Builder(uuids.size());
+		for (final String uuid : uuids) {
+			builder.add(uuid, null);
+		}
+		return builder.build();
+	}
+	
+	/*
+	 * Returns an index of the uuids of the given versioned objects, each uuid
+	 * carries its object as value
+	 */
+	public static SortedUuidIndex ofObjects(final Collection<?> versionedObjects) {
+		Preconditions.checkNotNull(versionedObjects, "Given collection of versioned objects is null!");
+		final Builder builder = new Builder(versionedObjects.size());
+		for (final Object versionedObject : versionedObjects) {
+			builder.add(ReflectionUtil.getInstance().getUuidOfObject(versionedObject), versionedObject);
+		}
+		return builder.build();
+	}
+	
+	public int size() {
+		return this.mostSignificantBits.length + this.irregularUuids.length;
+	}
+	
+	public boolean isEmpty() {
+		return this.size() == 0;
+	}
+	
+	public boolean contains(final String uuid) {
+		if (uuid == null) {
+			return false;
+		}
+		if (!UuidTable.isCanonical(uuid)) {
+			return Arrays.binarySearch(this.irregularUuids, uuid) >= 0;
+		}
+		final long mostSignificantBits = UuidTable.parseMostSignificantBits(uuid);
+		final long leastSignificantBits = UuidTable.parseLeastSignificantBits(uuid);
+		int low = 0;
+		int high = this.mostSignificantBits.length - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int comparison =
+				SortedUuidIndex.compare(this.mostSignificantBits[middle], this.leastSignificantBits[middle],
+					mostSignificantBits, leastSignificantBits);
+			if (comparison < 0) {
+				low = middle + 1;
+			}
+			else if (comparison > 0) {
+				high = middle - 1;
+			}
+			else {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/*
+	 * Returns the uuid at the given position of the index
+	 */
+	public String getUuid(final int position) {
+		Preconditions.checkElementIndex(position, this.size(), "Given position");
+		if (position < this.mostSignificantBits.length) {
+			return UuidTable.format(this.mostSignificantBits[position], this.leastSignificantBits[position]);
+		}
+		return this.irregularUuids[position - this.mostSignificantBits.length];
+	}
+	
+	/*
+	 * Returns the value of the uuid at the given position of the index or null
+	 * if the uuid carries no value
+	 */
+	public Object getValue(final int position) {
+		Preconditions.checkElementIndex(position, this.size(), "Given position");
+		if (position < this.mostSignificantBits.length) {
+			return this.values[position];
+		}
+		return this.irregularValues[position - this.mostSignificantBits.length];
+	}
+	
+	/*
+	 * Uuids of this index which aren't contained in the given one, the values
+	 * are taken from this index
+	 */
+	public SortedUuidIndex difference(final SortedUuidIndex other) {
+		return this.mergeJoin(other, SortedUuidIndex.DIFFERENCE);
+	}
+	
+	/*
+	 * Uuids which are contained in both indices, the values are taken from this
+	 * index, so the intersections a.intersection(b) and b.intersection(a) list
+	 * the same uuids at the same positions
+	 */
+	public SortedUuidIndex intersection(final SortedUuidIndex other) {
+		return this.mergeJoin(other, SortedUuidIndex.INTERSECTION);
+	}
+	
+	/*
+	 * Uuids which are contained in any of both indices, the values of uuids
+	 * contained in both are taken from this index
+	 */
+	public SortedUuidIndex union(final SortedUuidIndex other) {
+		return this.mergeJoin(other, SortedUuidIndex.UNION);
+	}
+	
+	private SortedUuidIndex mergeJoin(final SortedUuidIndex other, final int operation) {
+		Preconditions.checkNotNull(other, "Given index is null!");
+		final Builder builder =
+			new Builder(operation == SortedUuidIndex.UNION ? this.size() + other.size() : this.size());
+		
+		// Canonical uuids
+		int i = 0;
+		int j = 0;
+		while ((i < this.mostSignificantBits.length) && (j < other.mostSignificantBits.length)) {
+			// @formatter:off
+			final int comparison = SortedUuidIndex.compare(
+				this.mostSignificantBits[i], this.leastSignificantBits[i],
+				other.mostSignificantBits[j], other.leastSignificantBits[j]);
+			// @formatter:on
+			if (comparison < 0) {
+				if (operation != SortedUuidIndex.INTERSECTION) {
+					builder.add(this.mostSignificantBits[i], this.leastSignificantBits[i], this.values[i]);
+				}
+				i++;
+			}
+			else if (comparison > 0) {
+				if (operation == SortedUuidIndex.UNION) {
+					builder.add(other.mostSignificantBits[j], other.leastSignificantBits[j], other.values[j]);
+				}
+				j++;
+			}
+			else {
+				if (operation != SortedUuidIndex.DIFFERENCE) {
+					builder.add(this.mostSignificantBits[i], this.leastSignificantBits[i], this.values[i]);
+				}
+				i++;
+				j++;
+			}
+		}
+		if (operation != SortedUuidIndex.INTERSECTION) {
+			for (; i < this.mostSignificantBits.length; i++) {
+				builder.add(this.mostSignificantBits[i], this.leastSignificantBits[i], this.values[i]);
+			}
+		}
+		if (operation == SortedUuidIndex.UNION) {
+			for (; j < other.mostSignificantBits.length; j++) {
+				builder.add(other.mostSignificantBits[j], other.leastSignificantBits[j], other.values[j]);
+			}
+		}
+		
+		// Irregular uuids
+		i = 0;
+		j = 0;
+		while ((i < this.irregularUuids.length) && (j < other.irregularUuids.length)) {
+			final int comparison = this.irregularUuids[i].compareTo(other.irregularUuids[j]);
+			if (comparison < 0) {
+				if (operation != SortedUuidIndex.INTERSECTION) {
+					builder.add(this.irregularUuids[i], this.irregularValues[i]);
+				}
+				i++;
+			}
+			else if (comparison > 0) {
+				if (operation == SortedUuidIndex.UNION) {
+					builder.add(other.irregularUuids[j], other.irregularValues[j]);
+				}
+				j++;
+			}
+			else {
+				if (operation != SortedUuidIndex.DIFFERENCE) {
+					builder.add(this.irregularUuids[i], this.irregularValues[i]);
+				}
+				i++;
+				j++;
+			}
+		}
+		if (operation != SortedUuidIndex.INTERSECTION) {
+			for (; i < this.irregularUuids.length; i++) {
+				builder.add(this.irregularUuids[i], this.irregularValues[i]);
+			}
+		}
+		if (operation == SortedUuidIndex.UNION) {
+			for (; j < other.irregularUuids.length; j++) {
+				builder.add(other.irregularUuids[j], other.irregularValues[j]);
+			}
+		}
+		// Merge-join keeps the order, so the builder doesn't need to sort
+		return builder.buildSorted();
+	}
+	
+	private static int compare(final long mostSignificantBits, final long leastSignificantBits,
+		final long otherMostSignificantBits, final long otherLeastSignificantBits) {
+		if (mostSignificantBits != otherMostSignificantBits) {
+			return mostSignificantBits < otherMostSignificantBits ? -1 : 1;
+		}
+		if (leastSignificantBits != otherLeastSignificantBits) {
+			return leastSignificantBits < otherLeastSignificantBits ? -1 : 1;
+		}
+		return 0;
+	}
+	
+	/*
+	 * Collects uuids and their values in parallel arrays, sorts them and drops
+	 * duplicates, the first added value of a uuid is kept
+	 */
+	private static class Builder {
+		
+		private long[] mostSignificantBits;
+		
+		private long[] leastSignificantBits;
+		
+		private Object[] values;
+		
+		private int size = 0;
+		
+		// Rare, so they are simply sorted by a tree map
+		private SortedMap<String, Object> irregularUuids = null;
+		
+		private final long[] bits = new long[2];
+		
+		Builder(final int expectedSize) {
+			this.mostSignificantBits = new long[expectedSize];
+			this.leastSignificantBits = new long[expectedSize];
+			this.values = new Object[expectedSize];
+		}
+		
+		void add(final String uuid, final Object value) {
+			Preconditions.checkNotNull(uuid, "Given uuid is null!");
+			if (UuidTable.parse(uuid, this.bits)) {
+				this.add(this.bits[0], this.bits[1], value);
+			}
+			else {
+				if (this.irregularUuids == null) {
+					this.irregularUuids = Maps.newTreeMap();
+				}
+				if (!this.irregularUuids.containsKey(uuid)) {
+					this.irregularUuids.put(uuid, value);
+				}
+			}
+		}
+		
+		void add(final long mostSignificantBits, final long leastSignificantBits, final Object value) {
+			if (this.size == this.mostSignificantBits.length) {
+				final int newLength = this.size + (this.size >> 1) + 1;
+				this.mostSignificantBits = Arrays.copyOf(this.mostSignificantBits, newLength);
+				this.leastSignificantBits = Arrays.copyOf(this.leastSignificantBits, newLength);
+				this.values = Arrays.copyOf(this.values, newLength);
+			}
+			this.mostSignificantBits[this.size] = mostSignificantBits;
+			this.leastSignificantBits[this.size] = leastSignificantBits;
+			this.values[this.size] = value;
+			this.size++;
+		}
+		
+		SortedUuidIndex build() {
+			this.sort(0, this.size - 1);
+			// Drop duplicates, sorting is stable for equal uuids, so the first
+			// added value is kept
+			int unique = 0;
+			for (int i = 0; i < this.size; i++) {
+				// @formatter:off
+				if ((unique == 0) || (SortedUuidIndex.compare(
+						this.mostSignificantBits[unique - 1], this.leastSignificantBits[unique - 1],
+						this.mostSignificantBits[i], this.leastSignificantBits[i]) != 0)
+				) {
+				// @formatter:on
+					this.mostSignificantBits[unique] = this.mostSignificantBits[i];
+					this.leastSignificantBits[unique] = this.leastSignificantBits[i];
+					this.values[unique] = this.values[i];
+					unique++;
+				}
+			}
+			this.size = unique;
+			return this.buildSorted();
+		}
+		
+		@SuppressWarnings("synthetic-access")
+		SortedUuidIndex buildSorted() {
+			final String[] irregularUuidsArray;
+			final Object[] irregularValuesArray;
+			if (this.irregularUuids == null) {
+				irregularUuidsArray = new String[0];
+				irregularValuesArray = new Object[0];
+			}
+			else {
+				irregularUuidsArray = new String[this.irregularUuids.size()];
+				irregularValuesArray = new Object[this.irregularUuids.size()];
+				int i = 0;
+				for (final Entry<String, Object> irregularUuid : this.irregularUuids.entrySet()) {
+					irregularUuidsArray[i] = irregularUuid.getKey();
+					irregularValuesArray[i] = irregularUuid.getValue();
+					i++;
+				}
+			}
+			// @formatter:off
+			return new SortedUuidIndex(
+				Arrays.copyOf(this.mostSignificantBits, this.size),
+				Arrays.copyOf(this.leastSignificantBits, this.size),
+				Arrays.copyOf(this.values, this.size),
+				irregularUuidsArray, 
+				irregularValuesArray);
+			// @formatter:on
+		}
+		
+		// Stable insertion sort for small ranges, merge sort for the rest, the
+		// parallel arrays are moved together
+		private void sort(final int from, final int to) {
+			if ((to - from) < 16) {
+				for (int i = from + 1; i <= to; i++) {
+					for (int j = i; (j > from) && (this.compareAt(j - 1, j) > 0); j--) {
+						this.swap(j - 1, j);
+					}
+				}
+				return;
+			}
+			final int middle = (from + to) >>> 1;
+			this.sort(from, middle);
+			this.sort(middle + 1, to);
+			if (this.compareAt(middle, middle + 1) <= 0) {
+				return;
+			}
+			this.merge(from, middle, to);
+		}
+		
+		private void merge(final int from, final int middle, final int to) {
+			final int length = (to - from) + 1;
+			final long[] mergedMostSignificantBits = new long[length];
+			final long[] mergedLeastSignificantBits = new long[length];
+			final Object[] mergedValues = new Object[length];
+			int i = from;
+			int j = middle + 1;
+			for (int k = 0; k < length; k++) {
+				final int source;
+				if ((j > to) || ((i <= middle) && (this.compareAt(i, j) <= 0))) {
+					source = i++;
+				}
+				else {
+					source = j++;
+				}
+				mergedMostSignificantBits[k] = this.mostSignificantBits[source];
+				mergedLeastSignificantBits[k] = this.leastSignificantBits[source];
+				mergedValues[k] = this.values[source];
+			}
+			System.arraycopy(mergedMostSignificantBits, 0, this.mostSignificantBits, from, length);
+			System.arraycopy(mergedLeastSignificantBits, 0, this.leastSignificantBits, from, length);
+			System.arraycopy(mergedValues, 0, this.values, from, length);
+		}
+		
+		@SuppressWarnings("synthetic-access")
+		private int compareAt(final int i, final int j) {
+			// @formatter:off
+			return SortedUuidIndex.compare(
+				this.mostSignificantBits[i], this.leastSignificantBits[i],
+				this.mostSignificantBits[j], this.leastSignificantBits[j]);
+			// @formatter:on
+		}
+		
+		private void swap(final int i, final int j) {
+			final long mostSignificantBits = this.mostSignificantBits[i];
+			final long leastSignificantBits = this.leastSignificantBits[i];
+			final Object value = this.values[i];
+			this.mostSignificantBits[i] = this.mostSignificantBits[j];
+			this.leastSignificantBits[i] = this.leastSignificantBits[j];
+			this.values[i] = this.values[j];
+			this.mostSignificantBits[j] = mostSignificantBits;
+			this.leastSignificantBits[j] = leastSignificantBits;
+			this.values[j] = value;
+		}
+	}
+	
+}
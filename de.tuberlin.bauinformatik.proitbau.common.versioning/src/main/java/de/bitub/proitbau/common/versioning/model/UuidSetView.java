@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Author:		"Vladislav Fedotov"
+ * Written:		2013
+ * Project:		Setvers
+ * E-mail:		vladislav.fedotov@tu-berlin.de
+ * Company:		TU Berlin
+ * Version:		1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.model;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+
+/*
+ * Set of uuid strings backed by the indices of the uuids in a uuid table,
+ * strings are created only while iterating
+ */
+final class UuidSetView extends AbstractSet<String> {
+	
+	private final UuidTable uuidTable;
+	
+	private final BitSet indices;
+	
+	UuidSetView(final UuidTable uuidTable, final BitSet indices) {
+		this.uuidTable = uuidTable;
+		this.indices = indices;
+	}
+	
+	BitSet getIndices() {
+		return this.indices;
+	}
+	
+	@Override
+	public boolean add(final String uuid) {
+		Preconditions.checkNotNull(uuid, "Given uuid is null!");
+		final int index = this.uuidTable.intern(uuid);
+		if (this.indices.get(index)) {
+			return false;
+		}
+		this.indices.set(index);
+		return true;
+	}
+	
+	@Override
+	public boolean contains(final Object object) {
+		if (!(object instanceof String)) {
+			return false;
+		}
+		final int index = this.uuidTable.indexOf((String) object);
+		return (index != UuidTable.NO_INDEX) && this.indices.get(index);
+	}
+	
+	@Override
+	public boolean remove(final Object object) {
+		if (!this.contains(object)) {
+			return false;
+		}
+		this.indices.clear(this.uuidTable.indexOf((String) object));
+		return true;
+	}
+	
+	@Override
+	public int size() {
+		return this.indices.cardinality();
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return this.indices.isEmpty();
+	}
+	
+	@Override
+	public void clear() {
+		this.indices.clear();
+	}
+	
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			
+			private int nextIndex = UuidSetView.this.indices.nextSetBit(0);
+			
+			private int lastIndex = UuidTable.NO_INDEX;
+			
+			@Override
+			public boolean hasNext() {
+				return this.nextIndex >= 0;
+			}
+			
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public String next() {
+				if (this.nextIndex < 0) {
+					throw new NoSuchElementException();
+				}
+				this.lastIndex = this.nextIndex;
+				this.nextIndex = UuidSetView.this.indices.nextSetBit(this.nextIndex + 1);
+				return UuidSetView.this.uuidTable.get(this.lastIndex);
+			}
+			
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void remove() {
+				Preconditions.checkState(this.lastIndex != UuidTable.NO_INDEX, "Next wasn't called before remove!");
+				UuidSetView.this.indices.clear(this.lastIndex);
+				this.lastIndex = UuidTable.NO_INDEX;
+			}
+		};
+	}
+	
+}
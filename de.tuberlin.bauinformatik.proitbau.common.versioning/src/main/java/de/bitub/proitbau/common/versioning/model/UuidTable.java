@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Author:		"Vladislav Fedotov"
+ * Written:		2013
+ * Project:		Setvers
+ * E-mail:		vladislav.fedotov@tu-berlin.de
+ * Company:		TU Berlin
+ * Version:		1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/*
+ * Interning table for the uuids of a versioned set. Each uuid gets a dense
+ * index, canonical textual UUIDs are stored as two longs in primitive arrays
+ * and are found by an open addressing hash table, all other uuids are kept as
+ * strings. Indices are never reused until the table is cleared, so
+ * memberships can be stored as sets of indices.
+ */
+public final class UuidTable {
+	
+	public static final int NO_INDEX = -1;
+	
+	private static final int UUID_LENGTH = 36;
+	
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	
+	private long[] mostSignificantBits;
+	
+	private long[] leastSignificantBits;
+	
+	// Open addressing hash table of the canonical uuids, contains index + 1 of
+	// a uuid, 0 means empty slot
+	private int[] slots;
+	
+	private int size = 0;
+	
+	// Uuids which aren't canonical textual UUIDs, created on demand
+	private Map<String, Integer> indicesOfIrregularUuids = null;
+	
+	private Map<Integer, String> irregularUuids = null;
+	
+	private BitSet irregularIndices = null;
+	
+	public UuidTable(final int expectedSize) {
+		Preconditions.checkArgument(expectedSize >= 0, "Given expected size is negative!");
+		this.mostSignificantBits = new long[Math.max(expectedSize, 4)];
+		this.leastSignificantBits = new long[this.mostSignificantBits.length];
+		this.slots = new int[this.capacityFor(this.mostSignificantBits.length)];
+	}
+	
+	/*
+	 * Returns the index of the given uuid, the uuid is added to the table if
+	 * it isn't contained yet
+	 */
+	public int intern(final String uuid) {
+		Preconditions.checkNotNull(uuid, "Given uuid is null!");
+		if (!UuidTable.isCanonical(uuid)) {
+			return this.internIrregular(uuid);
+		}
+		final long mostSignificantBits = UuidTable.parseMostSignificantBits(uuid);
+		final long leastSignificantBits = UuidTable.parseLeastSignificantBits(uuid);
+		final int slot = this.findSlot(mostSignificantBits, leastSignificantBits);
+		if (this.slots[slot] != 0) {
+			return this.slots[slot] - 1;
+		}
+		final int index = this.append(mostSignificantBits, leastSignificantBits);
+		this.slots[slot] = index + 1;
+		// Keep the load factor below 0.5
+		if ((this.size << 1) > this.slots.length) {
+			this.rehash(this.slots.length << 1);
+		}
+		return index;
+	}
+	
+	/*
+	 * Grows the table, so the given number of uuids can be added without
+	 * further resizing
+	 */
+	public void ensureCapacity(final int additionalUuids) {
+		Preconditions.checkArgument(additionalUuids >= 0, "Given number of uuids is negative!");
+		final int length = this.size + additionalUuids;
+		if (length > this.mostSignificantBits.length) {
+			this.mostSignificantBits = Arrays.copyOf(this.mostSignificantBits, length);
+			this.leastSignificantBits = Arrays.copyOf(this.leastSignificantBits, length);
+		}
+		final int capacity = this.capacityFor(length);
+		if (capacity > this.slots.length) {
+			this.rehash(capacity);
+		}
+	}
+	
+	/*
+	 * Returns the index of the given uuid or NO_INDEX if the table doesn't
+	 * contain it
+	 */
+	public int indexOf(final String uuid) {
+		if (uuid == null) {
+			return UuidTable.NO_INDEX;
+		}
+		// Lookups happen for every contains check, so nothing is allocated here
+		if (!UuidTable.isCanonical(uuid)) {
+			if (this.indicesOfIrregularUuids == null) {
+				return UuidTable.NO_INDEX;
+			}
+			final Integer index = this.indicesOfIrregularUuids.get(uuid);
+			return index == null ? UuidTable.NO_INDEX : index.intValue();
+		}
+		return this.slots[this.findSlot(UuidTable.parseMostSignificantBits(uuid),
+			UuidTable.parseLeastSignificantBits(uuid))] - 1;
+	}
+	
+	/*
+	 * Returns the uuid with the given index in its original textual form
+	 */
+	public String get(final int index) {
+		Preconditions.checkElementIndex(index, this.size, "Given index");
+		if (this.isIrregular(index)) {
+			return this.irregularUuids.get(Integer.valueOf(index));
+		}
+		return UuidTable.format(this.mostSignificantBits[index], this.leastSignificantBits[index]);
+	}
+	
+	public long getMostSignificantBits(final int index) {
+		Preconditions.checkElementIndex(index, this.size, "Given index");
+		return this.mostSignificantBits[index];
+	}
+	
+	public long getLeastSignificantBits(final int index) {
+		Preconditions.checkElementIndex(index, this.size, "Given index");
+		return this.leastSignificantBits[index];
+	}
+	
+	/*
+	 * Returns true if the uuid with the given index isn't a canonical textual
+	 * UUID and is kept as a string
+	 */
+	public boolean isIrregular(final int index) {
+		return (this.irregularIndices != null) && this.irregularIndices.get(index);
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	public void clear() {
+		Arrays.fill(this.slots, 0);
+		this.size = 0;
+		this.indicesOfIrregularUuids = null;
+		this.irregularUuids = null;
+		this.irregularIndices = null;
+	}
+	
+	private int internIrregular(final String uuid) {
+		if (this.indicesOfIrregularUuids == null) {
+			this.indicesOfIrregularUuids = Maps.newHashMap();
+			this.irregularUuids = Maps.newHashMap();
+			this.irregularIndices = new BitSet();
+		}
+		final Integer existingIndex = this.indicesOfIrregularUuids.get(uuid);
+		if (existingIndex != null) {
+			return existingIndex.intValue();
+		}
+		final Integer index = Integer.valueOf(this.append(0L, 0L));
+		this.indicesOfIrregularUuids.put(uuid, index);
+		this.irregularUuids.put(index, uuid);
+		this.irregularIndices.set(index.intValue());
+		return index.intValue();
+	}
+	
+	private int append(final long mostSignificantBits, final long leastSignificantBits) {
+		if (this.size == this.mostSignificantBits.length) {
+			final int newLength = this.size + (this.size >> 1) + 1;
+			this.mostSignificantBits = Arrays.copyOf(this.mostSignificantBits, newLength);
+			this.leastSignificantBits = Arrays.copyOf(this.leastSignificantBits, newLength);
+		}
+		this.mostSignificantBits[this.size] = mostSignificantBits;
+		this.leastSignificantBits[this.size] = leastSignificantBits;
+		return this.size++;
+	}
+	
+	// Returns the slot which contains the given uuid or the empty slot where it
+	// has to be inserted, irregular uuids never occupy a slot
+	private int findSlot(final long mostSignificantBits, final long leastSignificantBits) {
+		final int mask = this.slots.length - 1;
+		int slot = UuidTable.hash(mostSignificantBits, leastSignificantBits) & mask;
+		while (true) {
+			final int entry = this.slots[slot];
+			if (entry == 0) {
+				return slot;
+			}
+			final int index = entry - 1;
+			if ((this.mostSignificantBits[index] == mostSignificantBits)
+				&& (this.leastSignificantBits[index] == leastSignificantBits)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+	
+	private void rehash(final int capacity) {
+		final int mask = capacity - 1;
+		final int[] newSlots = new int[capacity];
+		for (int index = 0; index < this.size; index++) {
+			if (this.isIrregular(index)) {
+				continue;
+			}
+			int slot = UuidTable.hash(this.mostSignificantBits[index], this.leastSignificantBits[index]) & mask;
+			while (newSlots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			newSlots[slot] = index + 1;
+		}
+		this.slots = newSlots;
+	}
+	
+	private int capacityFor(final int expectedSize) {
+		int capacity = 8;
+		while (capacity < (expectedSize << 1)) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+	
+	private static int hash(final long mostSignificantBits, final long leastSignificantBits) {
+		final long bits = mostSignificantBits ^ (leastSignificantBits * 0x9E3779B97F4A7C15L);
+		final int hash = (int) (bits ^ (bits >>> 32));
+		return hash ^ (hash >>> 16);
+	}
+	
+	/*
+	 * Parses a canonical textual UUID, that is 36 lower case hex digits and
+	 * dashes in the form 8-4-4-4-12, into the given array. Returns false if the
+	 * given string isn't canonical, so formatting the parsed bits would not
+	 * return the same string.
+	 */
+	static boolean parse(final String uuid, final long[] bits) {
+		if (!UuidTable.isCanonical(uuid)) {
+			return false;
+		}
+		bits[0] = UuidTable.parseMostSignificantBits(uuid);
+		bits[1] = UuidTable.parseLeastSignificantBits(uuid);
+		return true;
+	}
+	
+	static boolean isCanonical(final String uuid) {
+		if (uuid.length() != UuidTable.UUID_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < UuidTable.UUID_LENGTH; i++) {
+			final char c = uuid.charAt(i);
+			if ((i == 8) || (i == 13) || (i == 18) || (i == 23)) {
+				if (c != '-') {
+					return false;
+				}
+			}
+			else if (((c < '0') || (c > '9')) && ((c < 'a') || (c > 'f'))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	// The given uuid must be canonical
+	static long parseMostSignificantBits(final String uuid) {
+		return UuidTable.parseHexDigits(uuid, 0, 18);
+	}
+	
+	// The given uuid must be canonical
+	static long parseLeastSignificantBits(final String uuid) {
+		return UuidTable.parseHexDigits(uuid, 19, UuidTable.UUID_LENGTH);
+	}
+	
+	private static long parseHexDigits(final String uuid, final int start, final int end) {
+		long bits = 0L;
+		for (int i = start; i < end; i++) {
+			final char c = uuid.charAt(i);
+			if (c == '-') {
+				continue;
+			}
+			bits = (bits << 4) | (c <= '9' ? c - '0' : (c - 'a') + 10);
+		}
+		return bits;
+	}
+	
+	static String format(final long mostSignificantBits, final long leastSignificantBits) {
+		final char[] chars = new char[UuidTable.UUID_LENGTH];
+		int shift = 60;
+		for (int i = 0; i < UuidTable.UUID_LENGTH; i++) {
+			if ((i == 8) || (i == 13) || (i == 18) || (i == 23)) {
+				chars[i] = '-';
+				continue;
+			}
+			final long bits = i < 18 ? mostSignificantBits : leastSignificantBits;
+			chars[i] = UuidTable.HEX_DIGITS[(int) ((bits >>> shift) & 0xF)];
+			shift = shift == 0 ? 60 : shift - 4;
+		}
+		return new String(chars);
+	}
+	
+}
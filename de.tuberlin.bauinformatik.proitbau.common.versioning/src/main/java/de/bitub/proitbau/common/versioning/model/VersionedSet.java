@@ -18,6 +18,9 @@
 package de.bitub.proitbau.common.versioning.model;
 
 import java.lang.reflect.Field;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -26,6 +29,7 @@ import java.util.UUID;
 
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import de.bitub.proitbau.common.versioning.annotations.SetStrategy;
@@ -47,7 +51,19 @@ public class VersionedSet {
 	
 	private String name = null;
 	
-	private Set<VersionedSet> predecessorsBinding = Sets.newHashSetWithExpectedSize(30);
+	// Predecessor bindings are stored by their uuids, the type of a predecessor
+	// isn't known yet while it is deserialized or lazily loaded, the Set
+	// accessor is a view on the values
+	private transient Map<String, VersionedSet> predecessorsBinding = Maps.newLinkedHashMap();
+	
+	private transient Set<VersionedSet> predecessorsBindingView = new PredecessorsBindingView();
+	
+	// Predecessor bindings by their types, a predecessor whose type is still
+	// unknown when it is stored isn't indexed and the index is rebuilt on the
+	// next miss
+	private transient Map<VersionedSetType, VersionedSet> predecessorsBindingByType = Maps.newHashMap();
+	
+	private transient boolean isPredecessorsBindingByTypeComplete = true;
 	
 	private Set<String> predecessorsVersioning = Sets.newHashSetWithExpectedSize(30);
 	
@@ -55,17 +71,30 @@ public class VersionedSet {
 	
 	private String uuid = null;
 	
-	private Set<String> uuidsOfObjects = Sets.newHashSetWithExpectedSize(100);
+	// Each uuid of the objects and of the field-uuids pairs is stored only once
+	// in the uuid table, memberships are sets of indices into this table, the
+	// Set<String> accessors are views on them
+	private transient UuidTable uuidTable = new UuidTable(100);
+	
+	private transient BitSet uuidsOfObjects = new CountingBitSet(100);
+	
+	private transient Set<String> uuidsOfObjectsView = new UuidSetView(this.uuidTable, this.uuidsOfObjects);
 	
 	private Set<Object> versionedObjects = Sets.newHashSetWithExpectedSize(100);
 	
+	// Built on demand and dropped whenever objects are added or removed
+	private transient SortedUuidIndex sortedUuidIndex = null;
+	
 	private boolean visible = false;
 	
 	// This field was added for the reversConverter, it contains pairs of field
 	// and uuid's
 	// In other words this field has an information from which fields the objects
 	// with specific uuid's came
-	private Map<String, Set<String>> fieldUuidsPairs = new HashMap<String, Set<String>>(30);
+	private transient Map<String, BitSet> fieldUuidsPairs = new HashMap<String, BitSet>(30);
+	
+	private transient Map<String, Set<String>> fieldUuidsPairsView = new FieldUuidsView(this.uuidTable,
+		this.fieldUuidsPairs);
 	
 	public VersionedSet() {
 		this.uuid = UUID.randomUUID().toString();
@@ -87,43 +116,22 @@ public class VersionedSet {
 		Preconditions.checkArgument(this.type != predecessorBinding.type,
 			"The class type of this versioned set is differs from given predecessor binding!");
 		// @formatter:off
-		// if the set of predecessors binding versioned sets is empty 
+		// if a versioned set with the same type is contained in the predecessors binding
+		//		return result equals false
+		// else
 		//		if predecessor binding versioned set is bound by this versioned set
-		//				add predecessor binding versioned set to the predecessors binding set
+		//				add predecessor binding versioned set to the predecessors binding
 		//		else
 		//				return result equals false
-		// else 
-		// 		if no others versioned sets with the same type is not contained in the set of predecessors bindings versioned sets and if they bound
-		//				add predecessor binding versioned set to the predecessors binding set
-		// 		else 
-		//        return result equals false
 		// @formatter:on
-		boolean isAdded = false;
-		if (this.predecessorsBinding.isEmpty()) {
-			if (BindingChecker.getInstance().isBoundBy(this, predecessorBinding)) {
-				this.predecessorsBinding.add(predecessorBinding);
-				isAdded = true;
-			}
-			else {
-				isAdded = false;
-			}
+		if (this.getPredecessorBinding(predecessorBinding.type) != null) {
+			return false;
 		}
-		else {
-			boolean isSetAlreadyContainsGivenVersionedSet = false;
-			final Iterator<VersionedSet> predecessorsBindingIterator = this.predecessorsBinding.iterator();
-			while (isSetAlreadyContainsGivenVersionedSet && predecessorsBindingIterator.hasNext()) {
-				final VersionedSet predecessorBindingVersionedSet = predecessorsBindingIterator.next();
-				if (predecessorBindingVersionedSet.type.equals(predecessorBinding.getType())) {
-					isSetAlreadyContainsGivenVersionedSet = true;
-					isAdded = false;
-				}
-			}
-			if (!isSetAlreadyContainsGivenVersionedSet && BindingChecker.getInstance().isBoundBy(this, predecessorBinding)) {
-				this.predecessorsBinding.add(predecessorBinding);
-				isAdded = true;
-			}
+		if (!BindingChecker.getInstance().isBoundBy(this, predecessorBinding)) {
+			return false;
 		}
-		return isAdded;
+		this.putPredecessorBinding(predecessorBinding);
+		return true;
 	}
 	
 	public boolean addPredecessorVersioning(final VersionedSet predecessorVersioning) throws Exception {
@@ -143,6 +151,43 @@ public class VersionedSet {
 		Preconditions.checkNotNull(object, "Given object is null!");
 		Preconditions.checkArgument(object.getClass().isAnnotationPresent(VersionedEntity.class),
 			"Given object is not a versioned entity!");
+		return this.addValidatedVersionedObject(object);
+	}
+	
+	/*
+	 * Adds the given objects by the same rules as addVersionedObject(Object),
+	 * but the class of the objects is validated only once per class and the
+	 * collections of this versioned set are sized for the whole batch.
+	 * @return the number of added objects
+	 */
+	public int addVersionedObjects(final Collection<?> objects) {
+		Preconditions.checkNotNull(objects, "Given collection of objects is null!");
+		if (objects.isEmpty()) {
+			return 0;
+		}
+		// An empty set can simply be replaced by a set of the right size
+		if (this.versionedObjects.isEmpty()) {
+			this.versionedObjects = Sets.newHashSetWithExpectedSize(objects.size());
+		}
+		this.uuidTable.ensureCapacity(objects.size());
+		
+		final Set<Class<?>> validatedClasses = Sets.newHashSet();
+		int numberOfAddedObjects = 0;
+		for (final Object object : objects) {
+			Preconditions.checkNotNull(object, "Given object is null!");
+			if (!validatedClasses.contains(object.getClass())) {
+				Preconditions.checkArgument(object.getClass().isAnnotationPresent(VersionedEntity.class),
+					"Given object is not a versioned entity!");
+				validatedClasses.add(object.getClass());
+			}
+			if (this.addValidatedVersionedObject(object)) {
+				numberOfAddedObjects++;
+			}
+		}
+		return numberOfAddedObjects;
+	}
+	
+	private boolean addValidatedVersionedObject(final Object object) {
 		boolean isSuccessfullyAdded = false;
 		switch (this.strategy) {
 			case SET_PER_CLASS: {
@@ -162,12 +207,20 @@ public class VersionedSet {
 			}
 				break;
 		}
+		if (isSuccessfullyAdded) {
+			this.sortedUuidIndex = null;
+		}
 		return isSuccessfullyAdded;
 	}
 	
 	public void removeAllVersionedObjects() {
 		this.uuidsOfObjects.clear();
 		this.versionedObjects.clear();
+		this.sortedUuidIndex = null;
+		// Indices aren't referenced anymore, so the uuid table can be reused
+		if (this.fieldUuidsPairs.isEmpty()) {
+			this.uuidTable.clear();
+		}
 	}
 	
 	@Override
@@ -192,7 +245,35 @@ public class VersionedSet {
 	}
 	
 	public Set<VersionedSet> getPredecessorsBinding() {
-		return this.predecessorsBinding;
+		return this.predecessorsBindingView;
+	}
+	
+	/*
+	 * Returns the predecessor binding of the given type or null. Predecessors
+	 * are looked up by the type they had when they were stored, those whose
+	 * type was unknown then are compared at the time of the call.
+	 */
+	public VersionedSet getPredecessorBinding(final VersionedSetType type) {
+		if (type == null) {
+			for (final VersionedSet predecessorBinding : this.predecessorsBinding.values()) {
+				if (predecessorBinding.type == null) {
+					return predecessorBinding;
+				}
+			}
+			return null;
+		}
+		final VersionedSet predecessorBinding = this.predecessorsBindingByType.get(type);
+		// The indexed predecessor may have been removed through the view or may
+		// have changed its type in the meantime
+		if ((predecessorBinding != null) && type.equals(predecessorBinding.type)
+			&& (this.predecessorsBinding.get(predecessorBinding.getUuid()) == predecessorBinding)) {
+			return predecessorBinding;
+		}
+		if ((predecessorBinding == null) && this.isPredecessorsBindingByTypeComplete) {
+			return null;
+		}
+		this.indexPredecessorsBindingByType();
+		return this.predecessorsBindingByType.get(type);
 	}
 	
 	public Set<String> getPredecessorsVersioning() {
@@ -208,7 +289,19 @@ public class VersionedSet {
 	}
 	
 	public Set<String> getUuidsOfObjects() {
-		return this.uuidsOfObjects;
+		return this.uuidsOfObjectsView;
+	}
+	
+	/*
+	 * Returns the objects sorted by their uuids, each uuid carries its object as
+	 * value. The index is kept until objects are added or removed, so comparing
+	 * or merging the same versioned set again doesn't rebuild it.
+	 */
+	public SortedUuidIndex getSortedUuidIndex() {
+		if (this.sortedUuidIndex == null) {
+			this.sortedUuidIndex = SortedUuidIndex.ofObjects(this.versionedObjects);
+		}
+		return this.sortedUuidIndex;
 	}
 	
 	public Set<Object> getVersionedObjects() {
@@ -217,6 +310,7 @@ public class VersionedSet {
 	
 	public void setVersionedObjects(final Set<Object> versionedObjects) {
 		this.versionedObjects = versionedObjects;
+		this.sortedUuidIndex = null;
 	}
 	
 	@Override
@@ -229,10 +323,20 @@ public class VersionedSet {
 	}
 	
 	public boolean removePredecessorBinding(final VersionedSet versionedSet) {
-		if (!this.predecessorsBinding.isEmpty()) {
-			return this.predecessorsBinding.remove(versionedSet);
+		if (versionedSet == null) {
+			return false;
 		}
-		return false;
+		final VersionedSet removedPredecessorBinding = this.predecessorsBinding.remove(versionedSet.getUuid());
+		if (removedPredecessorBinding == null) {
+			return false;
+		}
+		if ((removedPredecessorBinding.type != null)
+			&& (this.predecessorsBindingByType.get(removedPredecessorBinding.type) == removedPredecessorBinding)) {
+			this.predecessorsBindingByType.remove(removedPredecessorBinding.type);
+			// Another predecessor of the same type may have been stored unchecked
+			this.isPredecessorsBindingByTypeComplete = false;
+		}
+		return true;
 	}
 	
 	public boolean removePredecessorVersioning(final String uuidOfPredecessorVersionedSet) {
@@ -258,8 +362,15 @@ public class VersionedSet {
 		this.strategy = strategy;
 	}
 	
+	// The given uuids are copied into the uuid table
 	public void setUuidsOfObjects(final Set<String> UUIDOfObjects) {
-		this.uuidsOfObjects = UUIDOfObjects;
+		if (UUIDOfObjects == this.uuidsOfObjectsView) {
+			return;
+		}
+		this.uuidsOfObjects.clear();
+		if (UUIDOfObjects != null) {
+			this.uuidsOfObjectsView.addAll(UUIDOfObjects);
+		}
 	}
 	
 	public void setVisible(final boolean visible) {
@@ -276,15 +387,54 @@ public class VersionedSet {
 		// @formatter:on
 	}
 	
-	protected void setPredecessorsBinding(final Set<VersionedSet> predecessorsBinding) {
-		this.predecessorsBinding = predecessorsBinding;
+	// The given versioned sets are stored by their uuids without checking the
+	// binding. Public, because versioned sets stored in separate documents are
+	// linked after they have been loaded
+	public void setPredecessorsBinding(final Set<VersionedSet> predecessorsBinding) {
+		if (predecessorsBinding == this.predecessorsBindingView) {
+			return;
+		}
+		this.predecessorsBinding.clear();
+		this.predecessorsBindingByType.clear();
+		this.isPredecessorsBindingByTypeComplete = true;
+		if (predecessorsBinding != null) {
+			for (final VersionedSet predecessorBinding : predecessorsBinding) {
+				this.putPredecessorBinding(predecessorBinding);
+			}
+		}
+	}
+	
+	private void putPredecessorBinding(final VersionedSet predecessorBinding) {
+		this.predecessorsBinding.put(predecessorBinding.getUuid(), predecessorBinding);
+		this.indexPredecessorBindingByType(predecessorBinding);
+	}
+	
+	// The first stored predecessor of a type is found, like by a scan over the
+	// predecessors in their order
+	private void indexPredecessorBindingByType(final VersionedSet predecessorBinding) {
+		if (predecessorBinding.type == null) {
+			this.isPredecessorsBindingByTypeComplete = false;
+		}
+		else if (!this.predecessorsBindingByType.containsKey(predecessorBinding.type)) {
+			this.predecessorsBindingByType.put(predecessorBinding.type, predecessorBinding);
+		}
+	}
+	
+	private void indexPredecessorsBindingByType() {
+		this.predecessorsBindingByType.clear();
+		this.isPredecessorsBindingByTypeComplete = true;
+		for (final VersionedSet predecessorBinding : this.predecessorsBinding.values()) {
+			this.indexPredecessorBindingByType(predecessorBinding);
+		}
 	}
 	
 	protected void setPredecessorsVersioning(final Set<String> predecessorsVersioning) {
 		this.predecessorsVersioning = predecessorsVersioning;
 	}
 	
-	protected void setUuid(final String UUID) {
+	// Public, because the delta documents of versioned sets are stored with the
+	// uuid of their versioned set
+	public void setUuid(final String UUID) {
 		this.uuid = UUID;
 	}
 	
@@ -292,12 +442,12 @@ public class VersionedSet {
 		boolean wasAdded = false;
 		if (this.type != null) {
 			if (this.type.getMainType().equals(object.getClass()) && this.versionedObjects.add(object)) {
-				this.uuidsOfObjects.add(ReflectionUtil.getInstance().getUuidOfObject(object));
+				this.addUuidOfObject(object);
 				wasAdded = true;
 			}
 		}
 		else if (this.versionedObjects.add(object)) {
-			this.uuidsOfObjects.add(ReflectionUtil.getInstance().getUuidOfObject(object));
+			this.addUuidOfObject(object);
 			this.type = new VersionedSetType(object.getClass(), null);
 			wasAdded = true;
 		}
@@ -308,7 +458,7 @@ public class VersionedSet {
 		boolean wasAdded = false;
 		if (this.name.equals(object.getClass().getAnnotation(VersionedEntity.class).name())) {
 			this.versionedObjects.add(object);
-			this.uuidsOfObjects.add(ReflectionUtil.getInstance().getUuidOfObject(object));
+			this.addUuidOfObject(object);
 			wasAdded = true;
 		}
 		return wasAdded;
@@ -318,7 +468,7 @@ public class VersionedSet {
 		boolean wasAdded = false;
 		if (this.name.equals(ReflectionUtil.getInstance().getNameOfSuperclass(object))) {
 			this.versionedObjects.add(object);
-			this.uuidsOfObjects.add(ReflectionUtil.getInstance().getUuidOfObject(object));
+			this.addUuidOfObject(object);
 			wasAdded = true;
 		}
 		return wasAdded;
@@ -328,12 +478,12 @@ public class VersionedSet {
 		boolean wasAdded = false;
 		if (this.type != null) {
 			if (this.type.getMainType().equals(object.getClass()) && this.versionedObjects.add(object)) {
-				this.uuidsOfObjects.add(ReflectionUtil.getInstance().getUuidOfObject(object));
+				this.addUuidOfObject(object);
 				wasAdded = true;
 			}
 		}
 		else if (this.versionedObjects.add(object)) {
-			this.uuidsOfObjects.add(ReflectionUtil.getInstance().getUuidOfObject(object));
+			this.addUuidOfObject(object);
 			try {
 				this.type = new VersionedSetType(object.getClass(), ReflectionUtil.getInstance().getSubType(object));
 			}
@@ -346,37 +496,77 @@ public class VersionedSet {
 	}
 	
 	public Map<String, Set<String>> getFieldUuidsPairs() {
-		return this.fieldUuidsPairs;
+		return this.fieldUuidsPairsView;
 	}
 	
+	// The given pairs are copied into the uuid table
 	public void setFieldUuidsPairs(final Map<String, Set<String>> fieldUuidsPairs) {
-		this.fieldUuidsPairs = fieldUuidsPairs;
+		if (fieldUuidsPairs == this.fieldUuidsPairsView) {
+			return;
+		}
+		this.fieldUuidsPairs.clear();
+		if (fieldUuidsPairs != null) {
+			this.fieldUuidsPairsView.putAll(fieldUuidsPairs);
+		}
 	}
 	
 	public void addFieldUuidPair(final Field field, final String uuid) {
-		if (this.fieldUuidsPairs.containsKey(field.toGenericString())) {
-			this.fieldUuidsPairs.get(field.toGenericString()).add(uuid);
-		}
-		else {
-			this.fieldUuidsPairs.put(field.toGenericString(), Sets.newHashSet(uuid));
-		}
+		this.addFieldUuidPair(field.toGenericString(), uuid);
 	}
 	
 	public void addFieldUuidPair(final String field, final String uuid) {
-		if (this.fieldUuidsPairs.containsKey(field)) {
-			this.fieldUuidsPairs.get(field).add(uuid);
+		this.getIndicesOfField(field).set(this.uuidTable.intern(uuid));
+	}
+	
+	public void addFieldUuidsPair(final Field field, final Set<String> uuids) {
+		final BitSet indicesOfField = this.getIndicesOfField(field.toGenericString());
+		for (final String uuid : uuids) {
+			indicesOfField.set(this.uuidTable.intern(uuid));
 		}
-		else {
-			this.fieldUuidsPairs.put(field, Sets.newHashSet(uuid));
+	}
+	
+	private void addUuidOfObject(final Object object) {
+		this.uuidsOfObjects.set(this.uuidTable.intern(ReflectionUtil.getInstance().getUuidOfObject(object)));
+	}
+	
+	private BitSet getIndicesOfField(final String field) {
+		BitSet indicesOfField = this.fieldUuidsPairs.get(field);
+		if (indicesOfField == null) {
+			indicesOfField = new CountingBitSet();
+			this.fieldUuidsPairs.put(field, indicesOfField);
 		}
+		return indicesOfField;
 	}
 	
-	public void addFieldUuidsPair(final Field field, final Set<String> uuids) {
-		if (this.fieldUuidsPairs.containsKey(field.toGenericString())) {
-			this.fieldUuidsPairs.get(field.toGenericString()).addAll(uuids);
+	private class PredecessorsBindingView extends AbstractSet<VersionedSet> {
+		
+		PredecessorsBindingView() {
+		}
+		
+		@Override
+		@SuppressWarnings("synthetic-access")
+		public boolean contains(final Object object) {
+			if (!(object instanceof VersionedSet)) {
+				return false;
+			}
+			return VersionedSet.this.predecessorsBinding.containsKey(((VersionedSet) object).getUuid());
+		}
+		
+		@Override
+		public boolean remove(final Object object) {
+			return (object instanceof VersionedSet) && VersionedSet.this.removePredecessorBinding((VersionedSet) object);
+		}
+		
+		@Override
+		@SuppressWarnings("synthetic-access")
+		public Iterator<VersionedSet> iterator() {
+			return VersionedSet.this.predecessorsBinding.values().iterator();
 		}
-		else {
-			this.fieldUuidsPairs.put(field.toGenericString(), Sets.newHashSet(uuids));
+		
+		@Override
+		@SuppressWarnings("synthetic-access")
+		public int size() {
+			return VersionedSet.this.predecessorsBinding.size();
 		}
 	}
 	
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Author:		"Vladislav Fedotov"
+ * Written:		2013
+ * Project:		Setvers
+ * E-mail:		vladislav.fedotov@tu-berlin.de
+ * Company:		TU Berlin
+ * Version:		1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.model.logic;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
+
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
+
+/*
+ * Result of a single commit, see Committer.findCommittedVersionedSets(..).
+ * All partitions are immutable, so the result can be handed over to other
+ * threads and kept as long as needed without copying. Times are measured in
+ * nanoseconds.
+ */
+public class CommitResult {
+	
+	private final ImmutableSet<VersionedSet> committedVersionedSets;
+	private final ImmutableSet<VersionedSet> boundVersionedSetsInNewState;
+	private final ImmutableSet<VersionedSet> modifiedVersionedSets;
+	private final ImmutableSet<VersionedSet> createdVersionedSets;
+	private final ImmutableSet<VersionedSet> deletedVersionedSets;
+	private final ImmutableSet<VersionedSet> invariableVersionedSets;
+	private final ImmutableSet<VersionedSet> remainedVersionedSetsInOldState;
+	private final ImmutableSet<VersionedSet> actualState;
+	
+	private final long classificationTime;
+	private final long closureTime;
+	private final long relinkingTime;
+	
+	// @formatter:off
+	CommitResult(
+		final Collection<VersionedSet> committedVersionedSets,
+		final Collection<VersionedSet> boundVersionedSetsInNewState,
+		final Collection<VersionedSet> modifiedVersionedSets,
+		final Collection<VersionedSet> createdVersionedSets,
+		final Collection<VersionedSet> deletedVersionedSets,
+		final Collection<VersionedSet> invariableVersionedSets,
+		final Collection<VersionedSet> remainedVersionedSetsInOldState,
+		final Collection<VersionedSet> actualState,
+		final long classificationTime,
+		final long closureTime,
+		final long relinkingTime
+	) {
+	// @formatter:on
+		this.committedVersionedSets = ImmutableSet.copyOf(committedVersionedSets);
+		this.boundVersionedSetsInNewState = ImmutableSet.copyOf(boundVersionedSetsInNewState);
+		this.modifiedVersionedSets = ImmutableSet.copyOf(modifiedVersionedSets);
+		this.createdVersionedSets = ImmutableSet.copyOf(createdVersionedSets);
+		this.deletedVersionedSets = ImmutableSet.copyOf(deletedVersionedSets);
+		this.invariableVersionedSets = ImmutableSet.copyOf(invariableVersionedSets);
+		this.remainedVersionedSetsInOldState = ImmutableSet.copyOf(remainedVersionedSetsInOldState);
+		this.actualState = ImmutableSet.copyOf(actualState);
+		this.classificationTime = classificationTime;
+		this.closureTime = closureTime;
+		this.relinkingTime = relinkingTime;
+	}
+	
+	public ImmutableSet<VersionedSet> getCommittedVersionedSets() {
+		return this.committedVersionedSets;
+	}
+	
+	public ImmutableSet<VersionedSet> getBoundVersionedSetsInNewState() {
+		return this.boundVersionedSetsInNewState;
+	}
+	
+	public ImmutableSet<VersionedSet> getModifiedVersionedSets() {
+		return this.modifiedVersionedSets;
+	}
+	
+	public ImmutableSet<VersionedSet> getCreatedVersionedSets() {
+		return this.createdVersionedSets;
+	}
+	
+	public ImmutableSet<VersionedSet> getDeletedVersionedSets() {
+		return this.deletedVersionedSets;
+	}
+	
+	public ImmutableSet<VersionedSet> getInvariableVersionedSets() {
+		return this.invariableVersionedSets;
+	}
+	
+	public ImmutableSet<VersionedSet> getRemainedVersionedSetsInOldState() {
+		return this.remainedVersionedSetsInOldState;
+	}
+	
+	public ImmutableSet<VersionedSet> getActualState() {
+		return this.actualState;
+	}
+	
+	// Time spent to sort the versioned sets by their modification type
+	public long getClassificationTime() {
+		return this.classificationTime;
+	}
+	
+	// Time spent to find the bound versioned sets
+	public long getClosureTime() {
+		return this.closureTime;
+	}
+	
+	// Time spent to relink predecessor bindings and versioning relations
+	public long getRelinkingTime() {
+		return this.relinkingTime;
+	}
+	
+	public long getTotalTime() {
+		return this.classificationTime + this.closureTime + this.relinkingTime;
+	}
+	
+	public long getTotalTime(final TimeUnit timeUnit) {
+		return timeUnit.convert(this.getTotalTime(), TimeUnit.NANOSECONDS);
+	}
+	
+	@Override
+	public String toString() {
+		// @formatter:off
+		return Objects.toStringHelper(this)
+			.add("committed", this.committedVersionedSets.size())
+			.add("bound", this.boundVersionedSetsInNewState.size())
+			.add("modified", this.modifiedVersionedSets.size())
+			.add("created", this.createdVersionedSets.size())
+			.add("deleted", this.deletedVersionedSets.size())
+			.add("invariable", this.invariableVersionedSets.size())
+			.add("actualState", this.actualState.size())
+			.add("totalTime", this.getTotalTime())
+			.toString();
+		// @formatter:on
+	}
+	
+}
@@ -17,10 +17,10 @@
  ******************************************************************************/
 package de.bitub.proitbau.common.versioning.model.logic;
 
-import java.util.Collection;
+import java.util.ArrayDeque;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.Stack;
 
 import org.slf4j.LoggerFactory;
 
@@ -28,7 +28,10 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
 import de.bitub.proitbau.common.versioning.compare_results.ModificationType;
@@ -62,16 +65,6 @@ public class Committer {
 	 * committed - 1,2,5
 	 */
 	
-	private final Set<VersionedSet> boundVersionedSetsInNewState = Sets.newHashSetWithExpectedSize(30);
-	private final Map<VersionedSetType, VersionedSet> remainedVersionedSetsInOldState = Maps
-		.newHashMapWithExpectedSize(30);
-	private final Set<VersionedSet> committedVersionedSets = Sets.newHashSetWithExpectedSize(30);
-	private final Set<VersionedSet> modifiedVersionedSets = Sets.newHashSetWithExpectedSize(30);
-	private final Set<VersionedSet> createdVersionedSets = Sets.newHashSetWithExpectedSize(30);
-	private final Set<VersionedSet> deletedVersionedSets = Sets.newHashSetWithExpectedSize(30);
-	private final Set<VersionedSet> invariableVersionedSets = Sets.newHashSetWithExpectedSize(30);
-	private final Set<VersionedSet> actualState = Sets.newHashSetWithExpectedSize(30);
-	
 	private Committer() {
 	}
 	
@@ -86,23 +79,26 @@ public class Committer {
 		return Handler.instance;
 	}
 	
-	public Set<VersionedSet> findCommittedVersionedSets(final StateResult stateResult) {
+	// Returns the result of the commit or null if both states are equal and
+	// there is nothing to commit. The committer doesn't keep any state between
+	// the calls, so it can be used for several commits at the same time
+	public CommitResult findCommittedVersionedSets(final StateResult stateResult) {
 		Preconditions.checkNotNull(stateResult, "Given statetResult is null!");
 		
-		// Clear previous results
-		this.boundVersionedSetsInNewState.clear();
-		this.remainedVersionedSetsInOldState.clear();
-		this.committedVersionedSets.clear();
-		this.modifiedVersionedSets.clear();
-		this.createdVersionedSets.clear();
-		this.deletedVersionedSets.clear();
-		this.invariableVersionedSets.clear();
-		this.actualState.clear();
-		
 		// Invalidate cache
 		ModelCache.getInstance().invalidateObjectValuesCache();
 		
 		if ((stateResult != null) && !stateResult.isEqual()) {
+			final Set<VersionedSet> boundVersionedSetsInNewState = Sets.newHashSetWithExpectedSize(30);
+			final Map<VersionedSetType, VersionedSet> remainedVersionedSetsInOldState = Maps.newHashMapWithExpectedSize(30);
+			final Set<VersionedSet> committedVersionedSets = Sets.newHashSetWithExpectedSize(30);
+			final Set<VersionedSet> modifiedVersionedSets = Sets.newHashSetWithExpectedSize(30);
+			final Set<VersionedSet> createdVersionedSets = Sets.newHashSetWithExpectedSize(30);
+			final Set<VersionedSet> deletedVersionedSets = Sets.newHashSetWithExpectedSize(30);
+			final Set<VersionedSet> invariableVersionedSets = Sets.newHashSetWithExpectedSize(30);
+			final Set<VersionedSet> actualState = Sets.newHashSetWithExpectedSize(30);
+			
+			final long classificationStart = System.nanoTime();
 			final Map<VersionedSetType, VersionedSet> oldVersionedSets = Maps.newHashMapWithExpectedSize(30);
 			final Map<VersionedSetType, VersionedSet> newVersionedSets = Maps.newHashMapWithExpectedSize(30);
 			final Set<VersionedSet> notCreatedAndModifiedVersionedSets = Sets.newHashSetWithExpectedSize(30);
@@ -117,20 +113,20 @@ public class Committer {
 				modificationType = versionedSetResult.getModificationType();
 				switch (modificationType) {
 					case CREATED: {
-						this.createdVersionedSets.add(versionedSetResult.getSecond());
+						createdVersionedSets.add(versionedSetResult.getSecond());
 					}
 						break;
 					case DELETED: {
-						this.deletedVersionedSets.add(versionedSetResult.getFirst());
+						deletedVersionedSets.add(versionedSetResult.getFirst());
 					}
 						break;
 					case INVARIABLE: {
-						this.invariableVersionedSets.add(versionedSetResult.getFirst());
+						invariableVersionedSets.add(versionedSetResult.getFirst());
 						notCreatedAndModifiedVersionedSets.add(versionedSetResult.getSecond());
 					}
 						break;
 					case MODIFIED: {
-						this.modifiedVersionedSets.add(versionedSetResult.getSecond());
+						modifiedVersionedSets.add(versionedSetResult.getSecond());
 					}
 						break;
 					default:
@@ -138,116 +134,117 @@ public class Committer {
 				}
 			}
 			
+			final long closureStart = System.nanoTime();
+			
 			// Find bound versioned sets
+			// Every invariable versioned set which is bound (directly or
+			// transitively) by a modified or created versioned set has to be
+			// committed as well. To avoid rescanning all the versioned sets for
+			// each found one, we index the binding relations in reverse direction
+			// (predecessor -> versioned sets bound by it) and walk through them
+			// once, starting from the modified and created versioned sets
 			if (!notCreatedAndModifiedVersionedSets.isEmpty()) {
-				final Stack<VersionedSet> stackOfVersionedSetsWhichHaveToBeChecked = new Stack<VersionedSet>();
+				final Multimap<VersionedSet, VersionedSet> boundByPredecessor = HashMultimap.create();
 				for (final VersionedSet versionedSet : notCreatedAndModifiedVersionedSets) {
-					if ((Sets.intersection(versionedSet.getPredecessorsBinding(), this.modifiedVersionedSets).size() > 0)
-							|| (Sets.intersection(versionedSet.getPredecessorsBinding(), this.createdVersionedSets).size() > 0)) {
-						this.boundVersionedSetsInNewState.add(versionedSet);
-						stackOfVersionedSetsWhichHaveToBeChecked.push(versionedSet);
+					for (final VersionedSet predecessor : versionedSet.getPredecessorsBinding()) {
+						boundByPredecessor.put(predecessor, versionedSet);
 					}
 				}
 				
-				while (!stackOfVersionedSetsWhichHaveToBeChecked.isEmpty()) {
-					final VersionedSet versionedSetWhichHasToBeChecked = stackOfVersionedSetsWhichHaveToBeChecked.pop();
-					for (final VersionedSet uncheckedVersionedSet : notCreatedAndModifiedVersionedSets) {
-						if (uncheckedVersionedSet.getPredecessorsBinding().contains(versionedSetWhichHasToBeChecked)) {
-							stackOfVersionedSetsWhichHaveToBeChecked.push(uncheckedVersionedSet);
-							this.boundVersionedSetsInNewState.add(uncheckedVersionedSet);
+				final Queue<VersionedSet> versionedSetsWhichHaveToBeChecked =
+					new ArrayDeque<VersionedSet>(modifiedVersionedSets.size() + createdVersionedSets.size());
+				versionedSetsWhichHaveToBeChecked.addAll(modifiedVersionedSets);
+				versionedSetsWhichHaveToBeChecked.addAll(createdVersionedSets);
+				while (!versionedSetsWhichHaveToBeChecked.isEmpty()) {
+					final VersionedSet versionedSetWhichHasToBeChecked = versionedSetsWhichHaveToBeChecked.poll();
+					for (final VersionedSet boundVersionedSet : boundByPredecessor.get(versionedSetWhichHasToBeChecked)) {
+						// Each versioned set is visited only once
+						if (boundVersionedSetsInNewState.add(boundVersionedSet)) {
+							versionedSetsWhichHaveToBeChecked.add(boundVersionedSet);
 						}
 					}
 				}
 			}
 			
-			if (!this.boundVersionedSetsInNewState.isEmpty()) {
-				this.committedVersionedSets.addAll(this.boundVersionedSetsInNewState);
+			final long relinkingStart = System.nanoTime();
+			
+			if (!boundVersionedSetsInNewState.isEmpty()) {
+				committedVersionedSets.addAll(boundVersionedSetsInNewState);
 			}
-			if (!this.modifiedVersionedSets.isEmpty()) {
-				this.committedVersionedSets.addAll(this.modifiedVersionedSets);
+			if (!modifiedVersionedSets.isEmpty()) {
+				committedVersionedSets.addAll(modifiedVersionedSets);
 			}
-			if (!this.createdVersionedSets.isEmpty()) {
-				this.committedVersionedSets.addAll(this.createdVersionedSets);
+			if (!createdVersionedSets.isEmpty()) {
+				committedVersionedSets.addAll(createdVersionedSets);
 			}
-			if (!this.committedVersionedSets.isEmpty()) {
-				this.actualState.addAll(this.committedVersionedSets);
+			if (!committedVersionedSets.isEmpty()) {
+				actualState.addAll(committedVersionedSets);
 			}
 			
-			if (!this.invariableVersionedSets.isEmpty()) {
-				// Remove from invariable sets which were part of the bound versioned
-				// sets
-				
-				for (final VersionedSet invariableVersionedSet : this.invariableVersionedSets) {
-					this.remainedVersionedSetsInOldState.put(invariableVersionedSet.getType(), invariableVersionedSet);
+			if (!invariableVersionedSets.isEmpty()) {
+				// Invariable versioned sets of the old state which weren't bound stay
+				// in the actual state, their counterparts from the new state have to
+				// be replaced by them at the predecessor bindings of the committed
+				// versioned sets
+				final Map<VersionedSetType, VersionedSet> replaceableVersionedSets =
+					Maps.newHashMapWithExpectedSize(invariableVersionedSets.size());
+				for (final VersionedSet invariableVersionedSet : invariableVersionedSets) {
+					remainedVersionedSetsInOldState.put(invariableVersionedSet.getType(), invariableVersionedSet);
 					final VersionedSet invalidVersionedSetInNewState = newVersionedSets.get(invariableVersionedSet.getType());
-					for (final VersionedSet committedVersionedSet : this.committedVersionedSets) {
-						this.remainedVersionedSetsInOldState.remove(committedVersionedSet.getType());
-						if (!this.boundVersionedSetsInNewState.contains(invalidVersionedSetInNewState)) {
-							if (committedVersionedSet.getPredecessorsBinding().contains(invalidVersionedSetInNewState)) {
-								committedVersionedSet.removePredecessorBinding(invalidVersionedSetInNewState);
-								committedVersionedSet.addPredecessorBinding(invariableVersionedSet);
-							}
+					if (!boundVersionedSetsInNewState.contains(invalidVersionedSetInNewState)) {
+						replaceableVersionedSets.put(invariableVersionedSet.getType(), invariableVersionedSet);
+					}
+				}
+				
+				for (final VersionedSet committedVersionedSet : committedVersionedSets) {
+					// Remove from invariable sets which were part of the bound versioned
+					// sets
+					remainedVersionedSetsInOldState.remove(committedVersionedSet.getType());
+					
+					// Relink predecessor bindings
+					for (final VersionedSet predecessor : Lists.newArrayList(committedVersionedSet.getPredecessorsBinding())) {
+						final VersionedSet invariableVersionedSet = replaceableVersionedSets.get(predecessor.getType());
+						if ((invariableVersionedSet != null) && predecessor.equals(newVersionedSets.get(predecessor.getType()))) {
+							committedVersionedSet.removePredecessorBinding(predecessor);
+							committedVersionedSet.addPredecessorBinding(invariableVersionedSet);
+						}
+					}
+					
+					// Specify predecessor versioning
+					final VersionedSet oldVersionedSet = oldVersionedSets.get(committedVersionedSet.getType());
+					if (oldVersionedSet != null) {
+						committedVersionedSet.removePredecessorVersioning(committedVersionedSet.getUuid());
+						committedVersionedSet.setName(StringUtil.getInstance().getNameWithNewVersion(oldVersionedSet.getName()));
+						try {
+							committedVersionedSet.addPredecessorVersioning(oldVersionedSet);
 						}
-						if (oldVersionedSets.containsKey(committedVersionedSet.getType())) {
-							committedVersionedSet.removePredecessorVersioning(committedVersionedSet.getUuid());
-							committedVersionedSet.setName(StringUtil.getInstance().getNameWithNewVersion(
-								oldVersionedSets.get(committedVersionedSet.getType()).getName()));
-							try {
-								committedVersionedSet.addPredecessorVersioning(oldVersionedSets.get(committedVersionedSet.getType()));
-							}
-							catch (final Exception e) {
-								e.printStackTrace();
-							}
+						catch (final Exception e) {
+							e.printStackTrace();
 						}
 					}
 				}
 				
-				this.actualState.addAll(this.remainedVersionedSetsInOldState.values());
+				actualState.addAll(remainedVersionedSetsInOldState.values());
 				
 			}
 			
-			return this.committedVersionedSets;
+			final long relinkingEnd = System.nanoTime();
+			
+			// @formatter:off
+			return new CommitResult(
+				committedVersionedSets,
+				boundVersionedSetsInNewState,
+				modifiedVersionedSets,
+				createdVersionedSets,
+				deletedVersionedSets,
+				invariableVersionedSets,
+				remainedVersionedSetsInOldState.values(),
+				actualState,
+				closureStart - classificationStart,
+				relinkingStart - closureStart,
+				relinkingEnd - relinkingStart);
+			// @formatter:on
 		}
 		return null;
 	}
-	
-	public Set<VersionedSet> getBoundVersionedSetsInNewState() {
-		return this.boundVersionedSetsInNewState;
-	}
-	
-	public Collection<VersionedSet> getRemainedVersionedSetsInOldState() {
-		return this.remainedVersionedSetsInOldState.values();
-	}
-	
-	public Set<VersionedSet> getCommittedVersionedSets() {
-		return this.committedVersionedSets;
-	}
-	
-	// public Set<VersionedSet> getIrrelevantVersionedSets() {
-	// return this.irrelevantVersionedSets;
-	// }
-	
-	public Set<VersionedSet> getModifiedVersionedSets() {
-		return this.modifiedVersionedSets;
-	}
-	
-	public Set<VersionedSet> getCreatedVersionedSets() {
-		return this.createdVersionedSets;
-	}
-	
-	public Set<VersionedSet> getDeletedVersionedSets() {
-		return this.deletedVersionedSets;
-	}
-	
-	public Set<VersionedSet> getInvariableVersionedSets() {
-		return this.invariableVersionedSets;
-	}
-	
-	public Set<VersionedSet> getActualState() {
-		return this.actualState;
-	}
-	
-	// public Set<VersionedSet> getIsolatedVersionedSetsInOldState() {
-	// return this.isolatedVersionedSetsInOldState;
-	// }
 }
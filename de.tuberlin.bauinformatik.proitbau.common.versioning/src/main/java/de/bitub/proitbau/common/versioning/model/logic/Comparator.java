@@ -21,19 +21,19 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Sets;
 
 import de.bitub.proitbau.common.versioning.compare_results.FieldResult;
 import de.bitub.proitbau.common.versioning.compare_results.ModificationType;
 import de.bitub.proitbau.common.versioning.compare_results.ObjectResult;
 import de.bitub.proitbau.common.versioning.compare_results.StateResult;
 import de.bitub.proitbau.common.versioning.compare_results.VersionedSetResult;
+import de.bitub.proitbau.common.versioning.model.SortedUuidIndex;
 import de.bitub.proitbau.common.versioning.model.VersionedSet;
 import de.bitub.proitbau.common.versioning.util.ReflectionUtil;
 
@@ -113,49 +113,50 @@ public class Comparator {
 				versionedSetResult.setEqual(false);
 			}
 			
+			// Both sets are indexed by the uuids of their objects, the following
+			// sets are merge-joins over these indices, so only uuids are compared
+			final SortedUuidIndex oldObjects = oldVersionedSet.getSortedUuidIndex();
+			final SortedUuidIndex newObjects = newVersionedSet.getSortedUuidIndex();
+			
 			// Objects presented only in the firts versioned set
-			final Set<Object> objectsPresentedOnlyInOldSet =
-				Sets.difference(oldVersionedSet.getVersionedObjects(), newVersionedSet.getVersionedObjects());
+			final SortedUuidIndex objectsPresentedOnlyInOldSet = oldObjects.difference(newObjects);
 			// Objects presented only in the second versioned set
-			final Set<Object> objectsPresentedOnlyInNewSet =
-				Sets.difference(newVersionedSet.getVersionedObjects(), oldVersionedSet.getVersionedObjects());
+			final SortedUuidIndex objectsPresentedOnlyInNewSet = newObjects.difference(oldObjects);
 			// It might be that the versioned sets contain the similar objects (with
 			// same uuid's) and they have no diff.!!!
 			
 			// Objects presented in the first versioned set and in the second
 			// versioned set, the uuid's of these objects are identical but
 			// the content might be different
-			final List<Object> objectsPresentedInBothSetsFromOldSet =
-				new LinkedList<Object>(Sets.difference(oldVersionedSet.getVersionedObjects(), objectsPresentedOnlyInOldSet));
+			final SortedUuidIndex objectsPresentedInBothSetsFromOldSet = oldObjects.intersection(newObjects);
 			
 			// Objects presented in the second versioned set and in the first
 			// versioned set, the uuid's of these objects are identical but
-			// the content might be different
-			final List<Object> objectsPresentedInBothSetsFromNewSet =
-				new LinkedList<Object>(Sets.difference(newVersionedSet.getVersionedObjects(), objectsPresentedOnlyInNewSet));
+			// the content might be different, they have the same positions as
+			// their pairs from the first versioned set
+			final SortedUuidIndex objectsPresentedInBothSetsFromNewSet = newObjects.intersection(oldObjects);
 			
 			// 1) Add objects which are presented in both sets
 			for (int i = 0; i < objectsPresentedInBothSetsFromOldSet.size(); i++) {
-				final Object objectFromOldVersionedSet = objectsPresentedInBothSetsFromOldSet.get(i);
-				// Find a pair for the object from firts set in the second set
-				final Object objectFromNewVersionedSet =
-					objectsPresentedInBothSetsFromNewSet.get(objectsPresentedInBothSetsFromNewSet
-						.indexOf(objectFromOldVersionedSet));
+				final Object objectFromOldVersionedSet = objectsPresentedInBothSetsFromOldSet.getValue(i);
+				// The pair of the object from firts set has the same position in the
+				// second set
+				final Object objectFromNewVersionedSet = objectsPresentedInBothSetsFromNewSet.getValue(i);
 				versionedSetResult.addResult(this.compareObjects(objectFromOldVersionedSet, objectFromNewVersionedSet));
 			}
 			
 			// 2) Then add objects presented only in the firts versioned set
 			// This simply means we are going to add objects which were deleted in the
 			// actual or second state
-			for (final Object objectFromOldVersionedSet : objectsPresentedOnlyInOldSet) {
-				versionedSetResult.addResult(this.compareObjects(objectFromOldVersionedSet, null));
+			for (int i = 0; i < objectsPresentedOnlyInOldSet.size(); i++) {
+				versionedSetResult.addResult(this.compareObjects(objectsPresentedOnlyInOldSet.getValue(i), null));
 			}
 			
 			// 3) Then add objects presented only in the second versioned set
 			// This simply means we are going to add objects which were created in the
 			// actual or second state
-			for (final Object objectFromNewVersionedSet : objectsPresentedOnlyInNewSet) {
-				versionedSetResult.addResult(this.compareObjects(null, objectFromNewVersionedSet));
+			for (int i = 0; i < objectsPresentedOnlyInNewSet.size(); i++) {
+				versionedSetResult.addResult(this.compareObjects(null, objectsPresentedOnlyInNewSet.getValue(i)));
 			}
 			if (!versionedSetResult.isEqual()) {
 				versionedSetResult.setModificationType(ModificationType.MODIFIED);
@@ -175,8 +176,9 @@ public class Comparator {
 	
 	public ObjectResult compareObjects(final Object oldObject, final Object newObject) throws Exception {
 		final ObjectResult objectResult = new ObjectResult();
-		// 1) First case, object presented in the both versioned sets
-		if ((oldObject != null) && (newObject != null) && oldObject.equals(newObject)) {
+		// 1) First case, object presented in the both versioned sets, the objects
+		// are paired by their uuids, a domain equals() might ignore fields
+		if ((oldObject != null) && (newObject != null) && this.haveSameUuid(oldObject, newObject)) {
 			objectResult.setFirst(oldObject);
 			objectResult.setSecond(newObject);
 			objectResult.setName(ReflectionUtil.getInstance().getNameOfVersionedEntity(oldObject.getClass()));
@@ -209,11 +211,19 @@ public class Comparator {
 			objectResult.setModificationType(ModificationType.CREATED);
 		}
 		else {
-			throw new Exception("Both Objects are null or they are unequal!");
+			throw new Exception("Both Objects are null or their uuids are different!");
 		}
 		return objectResult;
 	}
 	
+	private boolean haveSameUuid(final Object oldObject, final Object newObject) {
+		// @formatter:off
+		return Objects.equal(
+			ReflectionUtil.getInstance().getUuidOfObject(oldObject), 
+			ReflectionUtil.getInstance().getUuidOfObject(newObject));
+		// @formatter:on
+	}
+	
 	public FieldResult compareFields(final Object oldObject, final Object newObject, final Field field) throws Exception {
 		Preconditions.checkNotNull(field, "Given field is null!");
 		final FieldResult fieldResult = new FieldResult();
@@ -117,6 +117,9 @@ public class Converter {
 		
 		final Map<VersionedSetType, VersionedSet> createdVersionedSets = Maps.newHashMap();
 		final Multimap<Boolean, Object> stackOfModelObjects = ArrayListMultimap.create(2, 5000);
+		// Objects of already created versioned sets, they are added in bulk after
+		// the traversal of the model
+		final Multimap<VersionedSetType, Object> pendingObjects = ArrayListMultimap.create();
 		
 		for (final Object modelObject : model) {
 			stackOfModelObjects.put(Boolean.FALSE, modelObject);
@@ -147,27 +150,27 @@ public class Converter {
 				switch (versionedSetStrategyOfThisObject) {
 					case SET_PER_CLASS: {
 						this.createVersionedSetWithSetPerClassStrategy(createdVersionedSets, fieldUuidsPairsBasedOnClassType,
-							modelObject);
+							pendingObjects, modelObject);
 					}
 						break;
 					case SET_PER_CONTAINER: {
 						this.createVersionedSetWithSetPerConrainerStrategy(createdVersionedSets, fieldUuidsPairsBasedOnClassType,
-							modelObject);
+							pendingObjects, modelObject);
 					}
 						break;
 					case SET_PER_SUPERCLASS: {
 						this.createVersionedSetWithSetPerSuperclassStrategy(createdVersionedSets, fieldUuidsPairsBasedOnClassType,
-							modelObject);
+							pendingObjects, modelObject);
 					}
 					case SET_PER_OBJECT_TYPE: {
 						this.createVersionedSetWithSetPerObjectTypeStrategy(createdVersionedSets, fieldUuidsPairsBasedOnClassType,
-							modelObject);
+							pendingObjects, modelObject);
 					}
 						break;
 					// Use SET_PER_CLASS by default
 					default: {
 						this.createVersionedSetWithSetPerClassStrategy(createdVersionedSets, fieldUuidsPairsBasedOnClassType,
-							modelObject);
+							pendingObjects, modelObject);
 					}
 				} // end of switch
 			}
@@ -181,16 +184,38 @@ public class Converter {
 				}
 			}
 		}
+		for (final VersionedSetType versionedSetType : pendingObjects.keySet()) {
+			final VersionedSet versionedSet = createdVersionedSets.get(versionedSetType);
+			try {
+				versionedSet.addVersionedObjects(pendingObjects.get(versionedSetType));
+			}
+			catch (final Exception e) {
+				// The batch stops at the first invalid object, so the objects are added
+				// one by one and only the invalid ones are dropped, objects added
+				// before are simply skipped
+				Converter.logger.error(e.getMessage());
+				for (final Object pendingObject : pendingObjects.get(versionedSetType)) {
+					try {
+						versionedSet.addVersionedObject(pendingObject);
+					}
+					catch (final Exception objectException) {
+						Converter.logger.error(objectException.getMessage());
+					}
+				}
+			}
+		}
 		return Sets.newHashSet(createdVersionedSets.values());
 	}
 	
 	/**
 	 * @param versionedSets
 	 * @param fieldUuidsPairsBasedOnClassType
+	 * @param pendingObjects
 	 * @param modelObject
 	 */
 	private void createVersionedSetWithSetPerSuperclassStrategy(final Map<VersionedSetType, VersionedSet> versionedSets,
-		final Map<Class<?>, Multimap<Field, String>> fieldUuidsPairsBasedOnClassType, final Object modelObject) {
+		final Map<Class<?>, Multimap<Field, String>> fieldUuidsPairsBasedOnClassType,
+		final Multimap<VersionedSetType, Object> pendingObjects, final Object modelObject) {
 		
 		final Class<?> classOfModelObject = modelObject.getClass();
 		final String versionedSetName = ReflectionUtil.getInstance().getNameOfSuperclass(modelObject);
@@ -198,12 +223,7 @@ public class Converter {
 		
 		// Determine whether VersionedSet already exist or not
 		if (versionedSets.containsKey(versionedSetTypeForModelObject)) {
-			try {
-				versionedSets.get(versionedSetTypeForModelObject).addVersionedObject(modelObject);
-			}
-			catch (final Exception e) {
-				Converter.logger.error(e.getMessage());
-			}
+			pendingObjects.put(versionedSetTypeForModelObject, modelObject);
 		}
 		// If versioned set hasn't been created yet
 		else {
@@ -223,10 +243,12 @@ public class Converter {
 	/**
 	 * @param versionedSets
 	 * @param fieldUuidsPairsBasedOnClassType
+	 * @param pendingObjects
 	 * @param modelObject
 	 */
 	private void createVersionedSetWithSetPerConrainerStrategy(final Map<VersionedSetType, VersionedSet> versionedSets,
-		final Map<Class<?>, Multimap<Field, String>> fieldUuidsPairsBasedOnClassType, final Object modelObject) {
+		final Map<Class<?>, Multimap<Field, String>> fieldUuidsPairsBasedOnClassType,
+		final Multimap<VersionedSetType, Object> pendingObjects, final Object modelObject) {
 		
 		final Class<?> classOfModelObject = modelObject.getClass();
 		final VersionedSetType versionedSetTypeForModelObject = new VersionedSetType(classOfModelObject);
@@ -234,12 +256,7 @@ public class Converter {
 		
 		// If versioned set has been already created
 		if (versionedSets.containsKey(versionedSetTypeForModelObject)) {
-			try {
-				versionedSets.get(versionedSetTypeForModelObject).addVersionedObject(modelObject);
-			}
-			catch (final Exception e) {
-				Converter.logger.error(e.getMessage());
-			}
+			pendingObjects.put(versionedSetTypeForModelObject, modelObject);
 		}
 		// If versioned set hasn't been created yet
 		else {
@@ -259,22 +276,19 @@ public class Converter {
 	/**
 	 * @param versionedSets
 	 * @param fieldUuidsPairsBasedOnClassType
+	 * @param pendingObjects
 	 * @param modelObject
 	 */
 	private void createVersionedSetWithSetPerClassStrategy(final Map<VersionedSetType, VersionedSet> versionedSets,
-		final Map<Class<?>, Multimap<Field, String>> fieldUuidsPairsBasedOnClassType, final Object modelObject) {
+		final Map<Class<?>, Multimap<Field, String>> fieldUuidsPairsBasedOnClassType,
+		final Multimap<VersionedSetType, Object> pendingObjects, final Object modelObject) {
 		
 		final Class<?> classOfModelObject = modelObject.getClass();
 		final VersionedSetType versionedSetTypeForModelObject = new VersionedSetType(classOfModelObject);
 		
 		// Determine whether VersionedSet already exist or not
 		if (versionedSets.containsKey(versionedSetTypeForModelObject)) {
-			try {
-				versionedSets.get(versionedSetTypeForModelObject).addVersionedObject(modelObject);
-			}
-			catch (final Exception e) {
-				Converter.logger.error(e.getMessage());
-			}
+			pendingObjects.put(versionedSetTypeForModelObject, modelObject);
 		}
 		else {
 			// If not exist, create a new one if versioned set wasn't created yet
@@ -296,7 +310,8 @@ public class Converter {
 	}
 	
 	private void createVersionedSetWithSetPerObjectTypeStrategy(final Map<VersionedSetType, VersionedSet> versionedSets,
-		final Map<Class<?>, Multimap<Field, String>> fieldUuidsPairsBasedOnClassType, final Object modelObject) {
+		final Map<Class<?>, Multimap<Field, String>> fieldUuidsPairsBasedOnClassType,
+		final Multimap<VersionedSetType, Object> pendingObjects, final Object modelObject) {
 		
 		final Class<?> classOfModelObject = modelObject.getClass();
 		VersionedSetType versionedSetType = null;
@@ -310,12 +325,7 @@ public class Converter {
 		
 		// Determine whether VersionedSet already exist or not
 		if (versionedSets.containsKey(versionedSetType)) {
-			try {
-				versionedSets.get(versionedSetType).addVersionedObject(modelObject);
-			}
-			catch (final Exception e) {
-				Converter.logger.error(e.getMessage());
-			}
+			pendingObjects.put(versionedSetType, modelObject);
 		}
 		else {
 			// If not exist, create a new one if versioned set wasn't created yet
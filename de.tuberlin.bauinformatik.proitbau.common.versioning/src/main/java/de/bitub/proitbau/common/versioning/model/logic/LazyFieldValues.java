@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Author:		"Vladislav Fedotov"
+ * Written:		2013
+ * Project:		Setvers
+ * E-mail:		vladislav.fedotov@tu-berlin.de
+ * Company:		TU Berlin
+ * Version:		1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.model.logic;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+
+import de.bitub.proitbau.common.versioning.model.VersionedSet;
+
+/*
+ * Values of the domain model fields which are reverted on demand. Each field
+ * gets a proxy of its collection or map interface which delegates to the
+ * value of the field, fields which were already initialized keep their
+ * value. The first call of any proxy obtains the versioned sets from the
+ * supplier and fills all registered values at once. Afterwards the proxies
+ * simply delegate to the filled values.
+ */
+class LazyFieldValues {
+	
+	private final Supplier<Set<VersionedSet>> versionedSets;
+	
+	private final Map<String, Field> fieldsByFieldKey = Maps.newHashMap();
+	
+	private final Map<String, Object> valuesByFieldKey = Maps.newHashMap();
+	
+	// Read without the lock by the proxies, which take the lock only until the
+	// values were filled
+	private volatile boolean isLoaded = false;
+	
+	LazyFieldValues(final Supplier<Set<VersionedSet>> versionedSets) {
+		Preconditions.checkNotNull(versionedSets, "Given supplier of versioned sets is null!");
+		this.versionedSets = versionedSets;
+	}
+	
+	/*
+	 * Returns a proxy for the given field which delegates to the given value of
+	 * the field or to a new collection or map if the value is null. Returns null
+	 * if the type of the field isn't a supported collection or map interface.
+	 */
+	synchronized Object createProxy(final String fieldKey, final Field field, final Object value)
+		throws InstantiationException, IllegalAccessException {
+		Preconditions.checkNotNull(fieldKey, "Given field key is null!");
+		Preconditions.checkNotNull(field, "Given field is null!");
+		final Class<?> fieldType = field.getType();
+		if (!fieldType.isInterface()) {
+			return null;
+		}
+		Object target = value;
+		if (target == null) {
+			if (Collection.class.isAssignableFrom(fieldType)) {
+				target = ReverseConverter.getInstance().createCollection(fieldType, 0);
+			}
+			else if (Map.class.isAssignableFrom(fieldType)) {
+				target = ReverseConverter.getInstance().createMap(fieldType, 0);
+			}
+		}
+		if (!(target instanceof Collection) && !(target instanceof Map)) {
+			return null;
+		}
+		this.fieldsByFieldKey.put(fieldKey, field);
+		this.valuesByFieldKey.put(fieldKey, target);
+		// @formatter:off
+		return Proxy.newProxyInstance(
+			LazyFieldValues.class.getClassLoader(), 
+			new Class<?>[] {
+				fieldType
+			}, 
+			new LazyValueHandler(target));
+		// @formatter:on
+	}
+	
+	/*
+	 * Fills the registered values, the values are changed only after the
+	 * versioned sets were obtained successfully, so a failed load is repeated by
+	 * the next call
+	 */
+	private synchronized void load() throws IllegalAccessException, InstantiationException {
+		if (this.isLoaded) {
+			return;
+		}
+		final Set<VersionedSet> loadedVersionedSets = this.versionedSets.get();
+		final ListMultimap<String, Object> versionedObjectsByFieldKey = ArrayListMultimap.create();
+		if (loadedVersionedSets != null) {
+			for (final VersionedSet versionedSet : loadedVersionedSets) {
+				Map<String, Object> versionedObjectsByUuid = null;
+				for (final Entry<String, Set<String>> fieldUuidsPair : versionedSet.getFieldUuidsPairs().entrySet()) {
+					if (!this.valuesByFieldKey.containsKey(fieldUuidsPair.getKey())) {
+						continue;
+					}
+					if (versionedObjectsByUuid == null) {
+						versionedObjectsByUuid = ReverseConverter.getInstance().indexVersionedObjects(versionedSet);
+					}
+					for (final String uuid : fieldUuidsPair.getValue()) {
+						final Object versionedObject = versionedObjectsByUuid.get(uuid);
+						if (versionedObject != null) {
+							versionedObjectsByFieldKey.put(fieldUuidsPair.getKey(), versionedObject);
+						}
+					}
+				}
+			}
+		}
+		for (final String fieldKey : versionedObjectsByFieldKey.keySet()) {
+			// Collections and maps are filled in place, so the proxies see the new
+			// elements
+			ReverseConverter.getInstance().populateValue(this.fieldsByFieldKey.get(fieldKey).getType(),
+				this.valuesByFieldKey.get(fieldKey), versionedObjectsByFieldKey.get(fieldKey));
+		}
+		this.isLoaded = true;
+	}
+	
+	private class LazyValueHandler implements InvocationHandler {
+		
+		private static final String EQUALS_METHOD_NAME = "equals";
+		
+		private final Object value;
+		
+		LazyValueHandler(final Object value) {
+			this.value = value;
+		}
+		
+		/*
+		 * Loads the values on the first call. This includes equals, hashCode and
+		 * toString, since they depend on the elements of the collection or map and
+		 * would otherwise report an empty value, only the comparison of a proxy
+		 * with itself is answered without loading.
+		 */
+		@Override
+		@SuppressWarnings("synthetic-access")
+		public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+			if (!LazyFieldValues.this.isLoaded) {
+				if (LazyValueHandler.EQUALS_METHOD_NAME.equals(method.getName()) && (args != null) && (args.length == 1)
+					&& (args[0] == proxy)) {
+					return Boolean.TRUE;
+				}
+				LazyFieldValues.this.load();
+			}
+			try {
+				return method.invoke(this.value, args);
+			}
+			catch (final InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+	
+}
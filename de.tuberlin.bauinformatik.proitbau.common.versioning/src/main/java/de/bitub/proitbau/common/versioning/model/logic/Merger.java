@@ -17,6 +17,7 @@
  ******************************************************************************/
 package de.bitub.proitbau.common.versioning.model.logic;
 
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -27,15 +28,19 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import de.bitub.proitbau.common.versioning.annotations.Constraint;
+import de.bitub.proitbau.common.versioning.compare_results.MergeEstimation;
 import de.bitub.proitbau.common.versioning.compare_results.ObjectResult;
 import de.bitub.proitbau.common.versioning.compare_results.StateResult;
 import de.bitub.proitbau.common.versioning.compare_results.VersionedSetResult;
 import de.bitub.proitbau.common.versioning.model.ModelCache;
 import de.bitub.proitbau.common.versioning.model.Resolverable;
+import de.bitub.proitbau.common.versioning.model.SortedUuidIndex;
 import de.bitub.proitbau.common.versioning.model.VersionedSet;
+import de.bitub.proitbau.common.versioning.model.VersionedSetType;
 import de.bitub.proitbau.common.versioning.util.ReflectionUtil;
 import de.bitub.proitbau.common.versioning.util.StringUtil;
 
@@ -146,9 +151,7 @@ public class Merger {
 							this.mergeAndResolve(objectResult.getFirst(), objectResult.getSecond(), mergedVersionedSet);
 						}
 						// Add objects which available only in second versioned set
-						for (final Object objectAvailableOnlyInSecondVersionedSet : this.objectsAvailableOnlyInSecondVersionedSet) {
-							mergedVersionedSet.addVersionedObject(objectAvailableOnlyInSecondVersionedSet);
-						}
+						mergedVersionedSet.addVersionedObjects(this.objectsAvailableOnlyInSecondVersionedSet);
 						// Merge field->uuid pairs
 						this.mergeFieldUuidsPairs(firstVersionedSet, secondVersionedSet, mergedVersionedSet);
 					}
@@ -167,9 +170,7 @@ public class Merger {
 							this.mergeAndResolve(objectResult.getSecond(), objectResult.getFirst(), mergedVersionedSet);
 						}
 						// Add objects which available only in the first versioned set
-						for (final Object objectAvailableOnlyInFirstVersionedSet : this.objectsAvailableOnlyInFirstVersionedSet) {
-							mergedVersionedSet.addVersionedObject(objectAvailableOnlyInFirstVersionedSet);
-						}
+						mergedVersionedSet.addVersionedObjects(this.objectsAvailableOnlyInFirstVersionedSet);
 						// Merge field->uuid pairs
 						this.mergeFieldUuidsPairs(secondVersionedSet, firstVersionedSet, mergedVersionedSet);
 					}
@@ -219,6 +220,72 @@ public class Merger {
 		return mergedVersionedSets;
 	}
 	
+	// Dry-run of the merge, nothing is merged, cloned or resolved here. The
+	// estimation is taken directly from the object results of the given state
+	// result, so it follows the same decisions as merge(..) does:
+	// - a pair of objects which is not equal will be overwritten
+	// - objects available only in the not leading versioned set will be added
+	// - every pair of objects annotated with @Constraint triggers a resolver
+	public Map<VersionedSetType, MergeEstimation> estimate(final StateResult stateResult, final boolean oldIsLeading) {
+		Preconditions.checkNotNull(stateResult, "Given statetResult is null!");
+		
+		final Map<VersionedSetType, MergeEstimation> estimations =
+			Maps.newHashMapWithExpectedSize(stateResult.getResults().size());
+		// Constraint annotation lookup walks the class hierarchy, so we do it
+		// only once per class
+		final Map<Class<?>, Boolean> isConstrainedClass = Maps.newHashMap();
+		
+		for (final VersionedSetResult versionedSetResult : stateResult.getResults()) {
+			final VersionedSet firstVersionedSet = versionedSetResult.getFirst();
+			final VersionedSet secondVersionedSet = versionedSetResult.getSecond();
+			Preconditions.checkNotNull(secondVersionedSet, "New state of versioned set can't be null!");
+			
+			final MergeEstimation estimation = new MergeEstimation(secondVersionedSet.getType());
+			// 1) Only the new versioned set is available, it will be taken as it
+			// is, so its objects are added only from the point of view of the old
+			// state
+			if (firstVersionedSet == null) {
+				if (oldIsLeading) {
+					estimation.increaseAddedObjects(secondVersionedSet.getUuidsOfObjects().size());
+				}
+			}
+			// 2) Versioned sets are different and have to be merged
+			else if (!firstVersionedSet.getUuid().equals(secondVersionedSet.getUuid())) {
+				for (final ObjectResult objectResult : versionedSetResult.getResults()) {
+					final Object leadingObject = oldIsLeading ? objectResult.getFirst() : objectResult.getSecond();
+					final Object otherObject = oldIsLeading ? objectResult.getSecond() : objectResult.getFirst();
+					if (leadingObject == null) {
+						estimation.increaseAddedObjects(1);
+					}
+					else if (otherObject != null) {
+						if (!objectResult.isEqual()) {
+							estimation.increaseOverwrittenObjects();
+						}
+						Boolean isConstrained = isConstrainedClass.get(leadingObject.getClass());
+						if (isConstrained == null) {
+							isConstrained =
+								Boolean.valueOf(ReflectionUtil.getInstance().getAnnotation(leadingObject, Constraint.class) != null);
+							isConstrainedClass.put(leadingObject.getClass(), isConstrained);
+						}
+						if (isConstrained.booleanValue()) {
+							estimation.increaseConstraintTriggeringObjects();
+						}
+					}
+				}
+			}
+			// 3) Versioned sets are the same, nothing to merge
+			
+			final MergeEstimation existingEstimation = estimations.get(estimation.getType());
+			if (existingEstimation == null) {
+				estimations.put(estimation.getType(), estimation);
+			}
+			else {
+				existingEstimation.add(estimation);
+			}
+		}
+		return estimations;
+	}
+	
 	/**
 	 * @param firstVersionedSet
 	 * @param secondVersionedSet
@@ -234,7 +301,7 @@ public class Merger {
 		for (final Entry<String, Set<String>> fieldUuidsPair : secondVersionedSet.getFieldUuidsPairs().entrySet()) {
 			for (final String uuid : fieldUuidsPair.getValue()) {
 				if (firstVersionedSet.getUuidsOfObjects().contains(uuid)) {
-					firstVersionedSet.addFieldUuidPair(fieldUuidsPair.getKey(), uuid);
+					mergedVersionedSet.addFieldUuidPair(fieldUuidsPair.getKey(), uuid);
 				}
 			}
 		}
@@ -302,34 +369,34 @@ public class Merger {
 		this.overwrittenObjectsFromFirstVersinedSet = Sets.newHashSet();
 		this.overwrittenObjectsFromSecondVersinedSet = Sets.newHashSet();
 		
-		this.objectsAvailableOnlyInFirstVersionedSet.addAll(Sets.difference(firstVersionedSet.getVersionedObjects(),
-			secondVersionedSet.getVersionedObjects()));
-		this.objectsAvailableOnlyInSecondVersionedSet.addAll(Sets.difference(secondVersionedSet.getVersionedObjects(),
-			firstVersionedSet.getVersionedObjects()));
+		// Merge-joins over the uuids of the objects, see SortedUuidIndex
+		final SortedUuidIndex firstObjects = firstVersionedSet.getSortedUuidIndex();
+		final SortedUuidIndex secondObjects = secondVersionedSet.getSortedUuidIndex();
 		
-		// Objects of objectsAvailableInBothVersionedSets will contain objects
-		// with content from the first versioned set like 2->'b' object
-		final Set<Object> objectsAvailableInBothConetntFromFirst =
-			Sets.intersection(firstVersionedSet.getVersionedObjects(), secondVersionedSet.getVersionedObjects());
-		for (final Object object : objectsAvailableInBothConetntFromFirst) {
-			// Some objects are similar so indeed they won't be overwritten, so
-			// we have to find out which object are not similar, but available in
-			// both sets
-			if ((versionedSetResult.getResult(object) != null) && !versionedSetResult.getResult(object).isEqual()) {
-				this.overwrittenObjectsFromFirstVersinedSet.add(object);
-			}
+		final SortedUuidIndex objectsOnlyInFirst = firstObjects.difference(secondObjects);
+		for (int i = 0; i < objectsOnlyInFirst.size(); i++) {
+			this.objectsAvailableOnlyInFirstVersionedSet.add(objectsOnlyInFirst.getValue(i));
+		}
+		final SortedUuidIndex objectsOnlyInSecond = secondObjects.difference(firstObjects);
+		for (int i = 0; i < objectsOnlyInSecond.size(); i++) {
+			this.objectsAvailableOnlyInSecondVersionedSet.add(objectsOnlyInSecond.getValue(i));
 		}
 		
-		// Objects of objectsAvailableInBothVersionedSets will contain objects
-		// with content from the second versioned set like 2->'d' object
-		final Set<Object> objectsAvailableInBothConetntFromSecond =
-			Sets.intersection(secondVersionedSet.getVersionedObjects(), firstVersionedSet.getVersionedObjects());
-		for (final Object object : objectsAvailableInBothConetntFromSecond) {
+		// Objects of objectsAvailableInBothConetntFromFirst will contain objects
+		// with content from the first versioned set like 2->'b' object, objects
+		// of objectsAvailableInBothConetntFromSecond have the same positions and
+		// contain the content from the second versioned set like 2->'d' object
+		final SortedUuidIndex objectsAvailableInBothConetntFromFirst = firstObjects.intersection(secondObjects);
+		final SortedUuidIndex objectsAvailableInBothConetntFromSecond = secondObjects.intersection(firstObjects);
+		for (int i = 0; i < objectsAvailableInBothConetntFromFirst.size(); i++) {
 			// Some objects are similar so indeed they won't be overwritten, so
 			// we have to find out which object are not similar, but available in
 			// both sets
-			if (!versionedSetResult.getResult(object).isEqual()) {
-				this.overwrittenObjectsFromSecondVersinedSet.add(object);
+			final Object objectFromFirst = objectsAvailableInBothConetntFromFirst.getValue(i);
+			final ObjectResult objectResult = versionedSetResult.getResult(objectFromFirst);
+			if ((objectResult != null) && !objectResult.isEqual()) {
+				this.overwrittenObjectsFromFirstVersinedSet.add(objectFromFirst);
+				this.overwrittenObjectsFromSecondVersinedSet.add(objectsAvailableInBothConetntFromSecond.getValue(i));
 			}
 		}
 		
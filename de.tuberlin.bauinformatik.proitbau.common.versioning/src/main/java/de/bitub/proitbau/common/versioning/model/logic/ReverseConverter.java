@@ -17,21 +17,51 @@
  ******************************************************************************/
 package de.bitub.proitbau.common.versioning.model.logic;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Queue;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.slf4j.LoggerFactory;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Primitives;
 
 import de.bitub.proitbau.common.versioning.annotations.DomainModel;
 import de.bitub.proitbau.common.versioning.model.Versionable;
 import de.bitub.proitbau.common.versioning.model.VersionedSet;
+import de.bitub.proitbau.common.versioning.model.VersionedSetType;
 import de.bitub.proitbau.common.versioning.util.ReflectionUtil;
+import de.bitub.proitbau.common.versioning.util.VersionedSetUtil;
 
 public class ReverseConverter {
 	
@@ -40,6 +70,11 @@ public class ReverseConverter {
 		ReverseConverter.logger.setLevel(Level.INFO);
 	}
 	
+	// Class of the versioned object -> function which computes its key in a Map
+	// field of the domain model
+	private final Map<Class<?>, Function<Object, ?>> mapKeyExtractors =
+		new ConcurrentHashMap<Class<?>, Function<Object, ?>>();
+	
 	private ReverseConverter() {
 	}
 	
@@ -64,7 +99,6 @@ public class ReverseConverter {
 	 * @return domain model with initialized fields which were initialized with
 	 * the objects from the given versioned sets
 	 */
-	@SuppressWarnings("unchecked")
 	public void revert(final Object domainModel, final Set<VersionedSet> versionedSets) {
 		Preconditions.checkNotNull(domainModel, "Given object is null!");
 		Preconditions.checkArgument(domainModel.getClass().isAnnotationPresent(DomainModel.class),
@@ -72,67 +106,472 @@ public class ReverseConverter {
 		Preconditions.checkNotNull(versionedSets, "The set of versioned sets object is null!");
 		Preconditions.checkArgument(!versionedSets.isEmpty(), "The set of versioned sets object is empty!");
 		
+		this.revertVersionedSets(domainModel, versionedSets, this.getDomainModelFieldsByKey(domainModel));
+	}
+	
+	/*
+	 * Partial checkout, only the versioned sets of the selected types are
+	 * reverted into the domain model. Collection and map fields of the domain
+	 * model which weren't initialized by the selected versioned sets and which
+	 * are declared as List, Set, SortedSet, Queue, Collection, Map or SortedMap
+	 * get a proxy which delegates to their current value, the remaining
+	 * versioned sets are obtained and reverted on the first access to any of
+	 * these proxies. Other fields which can hold versioned objects, like arrays
+	 * and single references, are reverted from the remaining versioned sets
+	 * immediately.
+	 * @param domainModel a domain model object, the class of this object must
+	 * contain @DomainModel annotation
+	 * @param versionedSets the set of already available versioned sets
+	 * @param selectedTypes types of the versioned sets which have to be reverted
+	 * immediately
+	 * @param remainingVersionedSets supplies the versioned sets which weren't
+	 * selected, it is called at most once, if null no proxies are created
+	 */
+	public void revert(final Object domainModel, final Set<VersionedSet> versionedSets,
+		final Set<VersionedSetType> selectedTypes, final Supplier<Set<VersionedSet>> remainingVersionedSets) {
+		Preconditions.checkNotNull(domainModel, "Given object is null!");
+		Preconditions.checkArgument(domainModel.getClass().isAnnotationPresent(DomainModel.class),
+			"@DomainModel annotation isn't presented in the class of the given object!");
+		Preconditions.checkNotNull(versionedSets, "The set of versioned sets object is null!");
+		Preconditions.checkNotNull(selectedTypes, "The set of selected types is null!");
+		
+		final List<VersionedSet> selectedVersionedSets = Lists.newArrayListWithExpectedSize(selectedTypes.size());
+		for (final VersionedSet versionedSet : versionedSets) {
+			if (selectedTypes.contains(versionedSet.getType())) {
+				selectedVersionedSets.add(versionedSet);
+			}
+		}
+		
+		final Map<String, Field> domainModelFieldsByKey = this.getDomainModelFieldsByKey(domainModel);
+		final Set<Field> revertedFields =
+			this.revertVersionedSets(domainModel, selectedVersionedSets, domainModelFieldsByKey);
+		
+		if (remainingVersionedSets != null) {
+			final Supplier<Set<VersionedSet>> memoizedVersionedSets = Suppliers.memoize(remainingVersionedSets);
+			final LazyFieldValues lazyFieldValues = new LazyFieldValues(memoizedVersionedSets);
+			// Fields which can hold versioned objects, but can't be proxied
+			// (arrays, single references, classes of collections and maps)
+			final Map<String, Field> eagerFieldsByKey = Maps.newHashMap();
+			for (final Entry<String, Field> domainModelFieldByKey : domainModelFieldsByKey.entrySet()) {
+				final Field domainModelField = domainModelFieldByKey.getValue();
+				if (revertedFields.contains(domainModelField)) {
+					continue;
+				}
+				try {
+					final Object proxy =
+						lazyFieldValues.createProxy(domainModelFieldByKey.getKey(), domainModelField,
+							domainModelField.get(domainModel));
+					if (proxy != null) {
+						domainModelField.set(domainModel, proxy);
+					}
+					else if (this.canHoldVersionedObjects(domainModelField.getType())) {
+						eagerFieldsByKey.put(domainModelFieldByKey.getKey(), domainModelField);
+					}
+				}
+				catch (final IllegalArgumentException e) {
+					ReverseConverter.logger.error(e.getMessage());
+				}
+				catch (final IllegalAccessException e) {
+					ReverseConverter.logger.error(e.getMessage());
+				}
+				catch (final InstantiationException e) {
+					ReverseConverter.logger.error(e.getMessage());
+				}
+			}
+			// Accesses to these fields can't be intercepted, so their values are
+			// reverted immediately
+			if (!eagerFieldsByKey.isEmpty()) {
+				final Set<VersionedSet> loadedVersionedSets = memoizedVersionedSets.get();
+				if (loadedVersionedSets != null) {
+					this.revertVersionedSets(domainModel, loadedVersionedSets, eagerFieldsByKey);
+				}
+			}
+		}
+	}
+	
+	private boolean canHoldVersionedObjects(final Class<?> fieldType) {
+		if (fieldType.isArray()) {
+			return !fieldType.getComponentType().isPrimitive();
+		}
+		if (fieldType.isPrimitive() || fieldType.isEnum() || fieldType.equals(String.class)) {
+			return false;
+		}
+		// @formatter:off
+		return Collection.class.isAssignableFrom(fieldType) 
+			|| Map.class.isAssignableFrom(fieldType)
+			|| fieldType.isInterface() 
+			|| fieldType.equals(Object.class)
+			|| Versionable.class.isAssignableFrom(fieldType);
+		// @formatter:on
+	}
+	
+	/*
+	 * Partial checkout of the visible versioned sets and all versioned sets
+	 * which are reachable from them via binding relations, see
+	 * revert(Object, Set, Set, Supplier).
+	 */
+	public void revertVisible(final Object domainModel, final Set<VersionedSet> versionedSets,
+		final Supplier<Set<VersionedSet>> remainingVersionedSets) {
+		Preconditions.checkNotNull(versionedSets, "The set of versioned sets object is null!");
+		final List<VersionedSet> visibleVersionedSets = Lists.newArrayList();
+		for (final VersionedSet versionedSet : versionedSets) {
+			if (versionedSet.isVisible()) {
+				visibleVersionedSets.add(versionedSet);
+			}
+		}
+		final Set<VersionedSetType> selectedTypes = Sets.newHashSet();
+		if (!visibleVersionedSets.isEmpty()) {
+			for (final VersionedSet versionedSet : VersionedSetUtil.getInstance().getBound(visibleVersionedSets, true)) {
+				selectedTypes.add(versionedSet.getType());
+			}
+		}
+		this.revert(domainModel, versionedSets, selectedTypes, remainingVersionedSets);
+	}
+	
+	/*
+	 * The same as revert(Object, Set), but the fields of the domain model are
+	 * reverted in parallel. Each field depends only on its own field-uuids
+	 * pairs, so the values of the fields are collected and built by the tasks
+	 * of the given executor service, afterwards they are assigned to the
+	 * domain model by the calling thread. Fields of the domain model mustn't
+	 * share the same collection or map.
+	 * @param executorService executor service which executes a task per field,
+	 * it isn't shut down by this method
+	 */
+	public void revert(final Object domainModel, final Set<VersionedSet> versionedSets,
+		final ExecutorService executorService) {
+		Preconditions.checkNotNull(domainModel, "Given object is null!");
+		Preconditions.checkArgument(domainModel.getClass().isAnnotationPresent(DomainModel.class),
+			"@DomainModel annotation isn't presented in the class of the given object!");
+		Preconditions.checkNotNull(versionedSets, "The set of versioned sets object is null!");
+		Preconditions.checkArgument(!versionedSets.isEmpty(), "The set of versioned sets object is empty!");
+		Preconditions.checkNotNull(executorService, "Given executor service is null!");
+		
+		// Field of the domain model -> versioned sets which contain information
+		// about this field, the order of the versioned sets is kept
+		final Map<String, Field> domainModelFieldsByKey = this.getDomainModelFieldsByKey(domainModel);
+		final ListMultimap<Field, VersionedSet> versionedSetsByField = LinkedListMultimap.create();
+		// uuid -> object index of a versioned set, it is created only once by the
+		// first task which needs it
+		final Map<VersionedSet, Supplier<Map<String, Object>>> versionedObjectsByUuidSuppliers = Maps.newHashMap();
+		for (final VersionedSet versionedSet : versionedSets) {
+			for (final String fieldKey : versionedSet.getFieldUuidsPairs().keySet()) {
+				final Field domainModelField = domainModelFieldsByKey.get(fieldKey);
+				if (domainModelField == null) {
+					continue;
+				}
+				versionedSetsByField.put(domainModelField, versionedSet);
+				if (!versionedObjectsByUuidSuppliers.containsKey(versionedSet)) {
+					versionedObjectsByUuidSuppliers.put(versionedSet, Suppliers.memoize(new Supplier<Map<String, Object>>() {
+						
+						@Override
+						public Map<String, Object> get() {
+							return ReverseConverter.this.indexVersionedObjects(versionedSet);
+						}
+					}));
+				}
+			}
+		}
+		
+		final Map<Field, Future<Object>> valuesOfDomainModelFields =
+			Maps.newHashMapWithExpectedSize(versionedSetsByField.keySet().size());
+		for (final Field domainModelField : versionedSetsByField.keySet()) {
+			try {
+				final Object valueOfDomainModelField = domainModelField.get(domainModel);
+				final List<VersionedSet> versionedSetsOfField = versionedSetsByField.get(domainModelField);
+				valuesOfDomainModelFields.put(domainModelField, executorService.submit(new Callable<Object>() {
+					
+					@Override
+					@SuppressWarnings("synthetic-access")
+					public Object call() throws Exception {
+						final String fieldKey = domainModelField.toGenericString();
+						final List<Object> versionedObjectsOfField = Lists.newArrayList();
+						for (final VersionedSet versionedSet : versionedSetsOfField) {
+							final Map<String, Object> versionedObjectsByUuid =
+								versionedObjectsByUuidSuppliers.get(versionedSet).get();
+							for (final String uuid : versionedSet.getFieldUuidsPairs().get(fieldKey)) {
+								final Object versionedObject = versionedObjectsByUuid.get(uuid);
+								if (versionedObject != null) {
+									versionedObjectsOfField.add(versionedObject);
+								}
+							}
+						}
+						if (versionedObjectsOfField.isEmpty()) {
+							return null;
+						}
+						return ReverseConverter.this.populateValue(domainModelField.getType(), valueOfDomainModelField,
+							versionedObjectsOfField);
+					}
+				}));
+			}
+			catch (final IllegalArgumentException e) {
+				ReverseConverter.logger.error(e.getMessage());
+			}
+			catch (final IllegalAccessException e) {
+				ReverseConverter.logger.error(e.getMessage());
+			}
+		}
+		
+		for (final Entry<Field, Future<Object>> valueOfDomainModelField : valuesOfDomainModelFields.entrySet()) {
+			try {
+				final Object value = valueOfDomainModelField.getValue().get();
+				if (value != null) {
+					valueOfDomainModelField.getKey().set(domainModel, value);
+				}
+			}
+			catch (final InterruptedException e) {
+				ReverseConverter.logger.error(e.getMessage());
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (final ExecutionException e) {
+				ReverseConverter.logger.error(e.getCause().getMessage());
+			}
+			catch (final IllegalArgumentException e) {
+				ReverseConverter.logger.error(e.getMessage());
+			}
+			catch (final IllegalAccessException e) {
+				ReverseConverter.logger.error(e.getMessage());
+			}
+		}
+	}
+	
+	private Set<Field> revertVersionedSets(final Object domainModel, final Collection<VersionedSet> versionedSets,
+		final Map<String, Field> domainModelFieldsByKey) {
 		// Algorithm:
 		// 1) Find a specific versioned set which contains information about a
 		// specific field of the domain model
 		// 2) Obtain objects from the versioned set based on their uuids
 		// 3) Specify the obtained objects as value of the specific field of the
 		// domain model
-		
-		// 1)
-		final Collection<Field> domainModelFields = ReflectionUtil.getInstance().getFields(domainModel);
+		final Set<Field> revertedFields = Sets.newHashSetWithExpectedSize(domainModelFieldsByKey.size());
 		for (final VersionedSet versionedSet : versionedSets) {
-			if (!versionedSet.getFieldUuidsPairs().isEmpty()) {
-				for (final Field domainModelField : domainModelFields) {
-					if (versionedSet.getFieldUuidsPairs().keySet().contains(domainModelField.toGenericString())) {
-						// 2)
-						final Set<String> uuids = versionedSet.getFieldUuidsPairs().get(domainModelField.toGenericString());
-						for (final String uuid : uuids) {
-							for (final Object versionedObject : versionedSet.getVersionedObjects()) {
-								if (((Versionable) versionedObject).getUuid().equals(uuid)) {
-									// 3)
-									try {
-										Object valueOfDomainModelField = domainModelField.get(domainModel);
-										
-										if (valueOfDomainModelField == null) {
-											// Initialize a field if it is null
-											final Object newValueOfDomainModelField = domainModelField.getType().newInstance();
-											valueOfDomainModelField = newValueOfDomainModelField;
-										}
-										
-										// Required conditions
-										final boolean isCollection = valueOfDomainModelField instanceof Collection;
-										// @formatter:off
-									// TODO for Maps and Arrays ReverseConvertor doesn't work
-									// final boolean isMap = valueOfDomainModelField instanceof Map;
-									// final boolean isArray = domainModelField.getType().isArray();
-									// @formatter:on
-										
-										if (isCollection) {
-											((Collection<Object>) valueOfDomainModelField).add(versionedObject);
-										}
-										else {
-											domainModelField.set(domainModel, versionedObject);
-										}
-										
-									}
-									catch (final IllegalArgumentException e) {
-										ReverseConverter.logger.error(e.getMessage());
-									}
-									catch (final IllegalAccessException e) {
-										ReverseConverter.logger.error(e.getMessage());
-									}
-									catch (final InstantiationException e) {
-										ReverseConverter.logger.error(e.getMessage());
-									}
-								}
-							}
-						}
+			if (versionedSet.getFieldUuidsPairs().isEmpty()) {
+				continue;
+			}
+			// uuid -> object index of the versioned set, it is created only once and
+			// only if the versioned set contains information about any field
+			Map<String, Object> versionedObjectsByUuid = null;
+			// 1)
+			for (final Entry<String, Set<String>> fieldUuidsPair : versionedSet.getFieldUuidsPairs().entrySet()) {
+				final Field domainModelField = domainModelFieldsByKey.get(fieldUuidsPair.getKey());
+				if (domainModelField == null) {
+					continue;
+				}
+				if (versionedObjectsByUuid == null) {
+					versionedObjectsByUuid = this.indexVersionedObjects(versionedSet);
+				}
+				// 2)
+				final Set<String> uuids = fieldUuidsPair.getValue();
+				final List<Object> versionedObjectsOfField = Lists.newArrayListWithExpectedSize(uuids.size());
+				for (final String uuid : uuids) {
+					final Object versionedObject = versionedObjectsByUuid.get(uuid);
+					if (versionedObject != null) {
+						versionedObjectsOfField.add(versionedObject);
 					}
 				}
+				if (versionedObjectsOfField.isEmpty()) {
+					continue;
+				}
+				// 3)
+				revertedFields.add(domainModelField);
+				try {
+					domainModelField.set(domainModel, this.populateValue(domainModelField.getType(),
+						domainModelField.get(domainModel), versionedObjectsOfField));
+				}
+				catch (final ArrayStoreException e) {
+					ReverseConverter.logger.error(e.getMessage());
+				}
+				catch (final IllegalArgumentException e) {
+					ReverseConverter.logger.error(e.getMessage());
+				}
+				catch (final IllegalAccessException e) {
+					ReverseConverter.logger.error(e.getMessage());
+				}
+				catch (final InstantiationException e) {
+					ReverseConverter.logger.error(e.getMessage());
+				}
+			}
+		}
+		return revertedFields;
+	}
+	
+	// Field keys are stored as generic strings, so we compute them only once
+	// per field of the domain model
+	private Map<String, Field> getDomainModelFieldsByKey(final Object domainModel) {
+		final Collection<Field> domainModelFields = ReflectionUtil.getInstance().getFields(domainModel);
+		final Map<String, Field> domainModelFieldsByKey = Maps.newHashMapWithExpectedSize(domainModelFields.size());
+		for (final Field domainModelField : domainModelFields) {
+			domainModelFieldsByKey.put(domainModelField.toGenericString(), domainModelField);
+		}
+		return domainModelFieldsByKey;
+	}
+	
+	/*
+	 * Returns the value of a field of the given type which additionally contains
+	 * the given versioned objects. Collections and maps are filled by a single
+	 * bulk operation and created if the given value is null, arrays are replaced
+	 * by a new array of the same component type which contains the old elements
+	 * followed by the given objects, for all other fields the last object is
+	 * returned. Throws IllegalArgumentException if the type of the field isn't
+	 * supported or can't hold the object.
+	 */
+	@SuppressWarnings("unchecked")
+	Object populateValue(final Class<?> fieldType, final Object value, final List<Object> versionedObjectsOfField)
+		throws IllegalAccessException, InstantiationException {
+		Object populatedValue = value;
+		if (populatedValue == null) {
+			// Initialize a value if it is null, the number of elements is known in
+			// advance
+			if (Collection.class.isAssignableFrom(fieldType)) {
+				populatedValue = this.createCollection(fieldType, versionedObjectsOfField.size());
+				Preconditions.checkArgument(populatedValue != null, "The collection type " + fieldType.getName()
+																														+ " of the field isn't supported!");
+			}
+			else if (Map.class.isAssignableFrom(fieldType)) {
+				populatedValue = this.createMap(fieldType, versionedObjectsOfField.size());
+				Preconditions.checkArgument(populatedValue != null, "The map type " + fieldType.getName()
+																														+ " of the field isn't supported!");
 			}
 		}
 		
+		// Required conditions
+		final boolean isCollection = populatedValue instanceof Collection;
+		final boolean isMap = populatedValue instanceof Map;
+		final boolean isArray = fieldType.isArray() && !fieldType.getComponentType().isPrimitive();
+		
+		if (isCollection) {
+			this.addAll((Collection<Object>) populatedValue, versionedObjectsOfField);
+			return populatedValue;
+		}
+		if (isMap) {
+			final Map<Object, Object> versionedObjectsByKey =
+				Maps.newHashMapWithExpectedSize(versionedObjectsOfField.size());
+			for (final Object versionedObject : versionedObjectsOfField) {
+				versionedObjectsByKey.put(this.extractMapKey(versionedObject), versionedObject);
+			}
+			((Map<Object, Object>) populatedValue).putAll(versionedObjectsByKey);
+			return populatedValue;
+		}
+		if (isArray) {
+			final int oldLength = populatedValue == null ? 0 : Array.getLength(populatedValue);
+			final Object array =
+				Array.newInstance(fieldType.getComponentType(), oldLength + versionedObjectsOfField.size());
+			if (oldLength > 0) {
+				System.arraycopy(populatedValue, 0, array, 0, oldLength);
+			}
+			System.arraycopy(versionedObjectsOfField.toArray(), 0, array, oldLength, versionedObjectsOfField.size());
+			return array;
+		}
+		Preconditions.checkArgument(!fieldType.isArray(), "The array type " + fieldType.getName()
+																											+ " of the field isn't supported!");
+		final Object versionedObject = versionedObjectsOfField.get(versionedObjectsOfField.size() - 1);
+		final boolean isAssignable = Primitives.wrap(fieldType).isInstance(versionedObject);
+		Preconditions.checkArgument(isAssignable, "The field of type " + fieldType.getName()
+																							+ " can't hold the object of type "
+																							+ versionedObject.getClass().getName() + "!");
+		return versionedObject;
+	}
+	
+	/*
+	 * Adds the given objects to the collection by a single bulk operation, array
+	 * lists are grown at most once
+	 */
+	void addAll(final Collection<Object> collection, final Collection<Object> objects) {
+		if (collection instanceof ArrayList) {
+			((ArrayList<Object>) collection).ensureCapacity(collection.size() + objects.size());
+		}
+		collection.addAll(objects);
+	}
+	
+	/*
+	 * Creates an empty collection for a field of the given type, interfaces are
+	 * replaced by their common implementations which are sized for the expected
+	 * number of elements. Returns null if the collection interface is not
+	 * supported.
+	 */
+	Collection<Object> createCollection(final Class<?> fieldType, final int expectedSize)
+		throws InstantiationException, IllegalAccessException {
+		if (!fieldType.isInterface()) {
+			@SuppressWarnings("unchecked")
+			final Collection<Object> collection = (Collection<Object>) fieldType.newInstance();
+			return collection;
+		}
+		if (fieldType.equals(Collection.class) || fieldType.equals(List.class)) {
+			return Lists.newArrayListWithCapacity(expectedSize);
+		}
+		if (fieldType.equals(Set.class)) {
+			return Sets.newHashSetWithExpectedSize(expectedSize);
+		}
+		if (fieldType.equals(SortedSet.class) || fieldType.equals(NavigableSet.class)) {
+			return new TreeSet<Object>();
+		}
+		if (fieldType.equals(Queue.class) || fieldType.equals(Deque.class)) {
+			return new ArrayDeque<Object>(expectedSize);
+		}
+		return null;
+	}
+	
+	/*
+	 * Creates an empty map for a field of the given type, interfaces are replaced
+	 * by their common implementations. Returns null if the map interface is not
+	 * supported.
+	 */
+	Map<Object, Object> createMap(final Class<?> fieldType, final int expectedSize) throws InstantiationException,
+		IllegalAccessException {
+		if (!fieldType.isInterface()) {
+			@SuppressWarnings("unchecked")
+			final Map<Object, Object> map = (Map<Object, Object>) fieldType.newInstance();
+			return map;
+		}
+		if (fieldType.equals(Map.class)) {
+			return Maps.newHashMapWithExpectedSize(expectedSize);
+		}
+		if (fieldType.equals(SortedMap.class) || fieldType.equals(NavigableMap.class)) {
+			return new TreeMap<Object, Object>();
+		}
+		return null;
+	}
+	
+	/*
+	 * Registers a function which computes the key of a versioned object when it
+	 * is put into a Map field of the domain model. The function is used for the
+	 * objects of the given class and its subclasses, objects without a
+	 * registered function are keyed by their uuid.
+	 */
+	public void registerMapKeyExtractor(final Class<?> clazz, final Function<Object, ?> mapKeyExtractor) {
+		Preconditions.checkNotNull(clazz, "Given class is null!");
+		Preconditions.checkNotNull(mapKeyExtractor, "Given map key extractor is null!");
+		this.mapKeyExtractors.put(clazz, mapKeyExtractor);
+	}
+	
+	public void unregisterMapKeyExtractor(final Class<?> clazz) {
+		Preconditions.checkNotNull(clazz, "Given class is null!");
+		this.mapKeyExtractors.remove(clazz);
+	}
+	
+	private Object extractMapKey(final Object versionedObject) {
+		if (!this.mapKeyExtractors.isEmpty()) {
+			Class<?> clazz = versionedObject.getClass();
+			while (clazz != null) {
+				final Function<Object, ?> mapKeyExtractor = this.mapKeyExtractors.get(clazz);
+				if (mapKeyExtractor != null) {
+					return mapKeyExtractor.apply(versionedObject);
+				}
+				clazz = clazz.getSuperclass();
+			}
+		}
+		return ReflectionUtil.getInstance().getUuidOfVersionedObject(versionedObject);
+	}
+	
+	Map<String, Object> indexVersionedObjects(final VersionedSet versionedSet) {
+		final Map<String, Object> versionedObjectsByUuid =
+			Maps.newHashMapWithExpectedSize(versionedSet.getVersionedObjects().size());
+		for (final Object versionedObject : versionedSet.getVersionedObjects()) {
+			final String uuid = ReflectionUtil.getInstance().getUuidOfVersionedObject(versionedObject);
+			versionedObjectsByUuid.put(uuid, versionedObject);
+		}
+		return versionedObjectsByUuid;
 	}
 	
 }
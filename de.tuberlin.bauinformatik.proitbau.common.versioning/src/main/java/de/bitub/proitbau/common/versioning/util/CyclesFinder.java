@@ -17,20 +17,30 @@
  ******************************************************************************/
 package de.bitub.proitbau.common.versioning.util;
 
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
 import de.bitub.proitbau.common.versioning.model.VersionedSet;
 
+/*
+ * Finds the strongly connected components and the elementary cycles of the
+ * binding graph, where an edge leads from a versioned set to each of its
+ * predecessors in binding. All state lives in the single call, both
+ * algorithms run iteratively, so deep binding chains can't overflow the
+ * stack.
+ */
 public class CyclesFinder {
 	
-	private final Set<List<VersionedSet>> cycles = new HashSet<List<VersionedSet>>();
-	
-	private final Set<VersionedSet> grayNodes = new HashSet<VersionedSet>();
-	
-	private final List<VersionedSet> path = new ArrayList<VersionedSet>();
+	private static final int NOT_VISITED = -1;
 	
 	private CyclesFinder() {
 	}
@@ -46,35 +56,272 @@ public class CyclesFinder {
 		return Handler.instance;
 	}
 	
-	public Set<List<VersionedSet>> findElementaryCycles(final Set<VersionedSet> VersionedSets) {
-		if ((VersionedSets != null) && (VersionedSets.size() != 0)) {
-			for (final VersionedSet arbitaryVersionedSet : VersionedSets) {
-				this.dfs(arbitaryVersionedSet);
+	/*
+	 * Returns the strongly connected components of the binding graph formed by
+	 * the given versioned sets and all versioned sets bound by them (Tarjan's
+	 * algorithm, O(V+E)). A component is listed after all components it binds,
+	 * so the list is ordered from the bound to the binding versioned sets.
+	 */
+	public List<Set<VersionedSet>> findStronglyConnectedComponents(final Collection<VersionedSet> versionedSets) {
+		Preconditions.checkNotNull(versionedSets, "Given collection of versioned sets is null!");
+		final BindingGraph graph = new BindingGraph(versionedSets);
+		final int[] componentOfNode = new int[graph.size()];
+		final int numberOfComponents = CyclesFinder.findComponents(graph.adjacency, 0, null, componentOfNode);
+		final List<Set<VersionedSet>> components = Lists.newArrayListWithCapacity(numberOfComponents);
+		for (int i = 0; i < numberOfComponents; i++) {
+			components.add(Sets.<VersionedSet> newLinkedHashSet());
+		}
+		for (int node = 0; node < graph.size(); node++) {
+			components.get(componentOfNode[node]).add(graph.nodes.get(node));
+		}
+		return components;
+	}
+	
+	public boolean hasCycles(final Collection<VersionedSet> versionedSets) {
+		Preconditions.checkNotNull(versionedSets, "Given collection of versioned sets is null!");
+		final BindingGraph graph = new BindingGraph(versionedSets);
+		final int[] componentOfNode = new int[graph.size()];
+		final int numberOfComponents = CyclesFinder.findComponents(graph.adjacency, 0, null, componentOfNode);
+		if (numberOfComponents < graph.size()) {
+			return true;
+		}
+		// Each component has a single node, so only self bindings are cycles
+		for (int node = 0; node < graph.size(); node++) {
+			for (final int successor : graph.adjacency[node]) {
+				if (successor == node) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	public Set<List<VersionedSet>> findElementaryCycles(final Set<VersionedSet> versionedSets) {
+		return this.findElementaryCycles(versionedSets, Integer.MAX_VALUE);
+	}
+	
+	/*
+	 * Enumerates the elementary cycles by Johnson's algorithm, but stops after
+	 * maxNumberOfCycles cycles, since their number can grow exponentially.
+	 * A cycle starts and ends with the same versioned set and follows the
+	 * binding relations.
+	 */
+	public Set<List<VersionedSet>> findElementaryCycles(final Set<VersionedSet> versionedSets,
+		final int maxNumberOfCycles) {
+		Preconditions.checkArgument(maxNumberOfCycles >= 0, "Given maximal number of cycles is negative!");
+		final Set<List<VersionedSet>> cycles = Sets.newLinkedHashSet();
+		if ((versionedSets == null) || versionedSets.isEmpty() || (maxNumberOfCycles == 0)) {
+			return cycles;
+		}
+		final BindingGraph graph = new BindingGraph(versionedSets);
+		final int size = graph.size();
+		final int[] componentOfNode = new int[size];
+		final boolean[] blocked = new boolean[size];
+		final List<Set<Integer>> blockedBy = Lists.newArrayListWithCapacity(size);
+		for (int node = 0; node < size; node++) {
+			blockedBy.add(Sets.<Integer> newHashSet());
+		}
+		final int[] path = new int[size];
+		final int[] edgePosition = new int[size];
+		final boolean[] isCycleFound = new boolean[size];
+		
+		for (int start = 0; (start < size) && (cycles.size() < maxNumberOfCycles); start++) {
+			// Only the component of the start node in the subgraph of the nodes
+			// start..size-1 can contain cycles through the start node
+			CyclesFinder.findComponents(graph.adjacency, start, new int[] {
+				start
+			}, componentOfNode);
+			final int componentOfStart = componentOfNode[start];
+			for (int node = start; node < size; node++) {
+				blocked[node] = false;
+				blockedBy.get(node).clear();
+			}
+			
+			int depth = 0;
+			path[0] = start;
+			edgePosition[0] = 0;
+			isCycleFound[0] = false;
+			blocked[start] = true;
+			while ((depth >= 0) && (cycles.size() < maxNumberOfCycles)) {
+				final int node = path[depth];
+				final int[] successors = graph.adjacency[node];
+				if (edgePosition[depth] < successors.length) {
+					final int successor = successors[edgePosition[depth]++];
+					if ((successor < start) || (componentOfNode[successor] != componentOfStart)) {
+						continue;
+					}
+					if (successor == start) {
+						final List<VersionedSet> cycle = Lists.newArrayListWithCapacity(depth + 2);
+						for (int i = 0; i <= depth; i++) {
+							cycle.add(graph.nodes.get(path[i]));
+						}
+						cycle.add(graph.nodes.get(start));
+						cycles.add(cycle);
+						isCycleFound[depth] = true;
+					}
+					else if (!blocked[successor]) {
+						depth++;
+						path[depth] = successor;
+						edgePosition[depth] = 0;
+						isCycleFound[depth] = false;
+						blocked[successor] = true;
+					}
+				}
+				else {
+					if (isCycleFound[depth]) {
+						CyclesFinder.unblock(node, blocked, blockedBy);
+					}
+					else {
+						for (final int successor : successors) {
+							if ((successor >= start) && (componentOfNode[successor] == componentOfStart)) {
+								blockedBy.get(successor).add(Integer.valueOf(node));
+							}
+						}
+					}
+					depth--;
+					if ((depth >= 0) && isCycleFound[depth + 1]) {
+						isCycleFound[depth] = true;
+					}
+				}
+			}
+		}
+		return cycles;
+	}
+	
+	private static void unblock(final int node, final boolean[] blocked, final List<Set<Integer>> blockedBy) {
+		final Deque<Integer> stack = new ArrayDeque<Integer>();
+		stack.push(Integer.valueOf(node));
+		blocked[node] = false;
+		while (!stack.isEmpty()) {
+			final Set<Integer> blockedNodes = blockedBy.get(stack.pop().intValue());
+			for (final Integer blockedNode : blockedNodes) {
+				if (blocked[blockedNode.intValue()]) {
+					blocked[blockedNode.intValue()] = false;
+					stack.push(blockedNode);
+				}
 			}
+			blockedNodes.clear();
 		}
-		return this.cycles;
 	}
 	
-	private void dfs(final VersionedSet versionedSet) {
-		this.grayNodes.add(versionedSet);
-		this.path.add(versionedSet);
-		for (final VersionedSet predecessorVersionedSet : versionedSet.getPredecessorsBinding()) {
-			if (!this.grayNodes.contains(predecessorVersionedSet)) {
-				this.dfs(predecessorVersionedSet);
+	/*
+	 * Iterative Tarjan's algorithm on the subgraph of the nodes
+	 * minNode..adjacency.length-1, starting from the given roots or from all
+	 * nodes if roots is null. Writes the component of each visited node into
+	 * componentOfNode (NOT_VISITED for the others) and returns the number of
+	 * components. Components are numbered in the order they are completed, so
+	 * a component gets a higher number than every component it reaches.
+	 */
+	private static int findComponents(final int[][] adjacency, final int minNode, final int[] roots,
+		final int[] componentOfNode) {
+		final int size = adjacency.length;
+		final int[] index = new int[size];
+		final int[] lowLink = new int[size];
+		final int[] edgePosition = new int[size];
+		final boolean[] isOnStack = new boolean[size];
+		final int[] callStack = new int[size];
+		final int[] componentStack = new int[size];
+		for (int node = minNode; node < size; node++) {
+			index[node] = CyclesFinder.NOT_VISITED;
+			componentOfNode[node] = CyclesFinder.NOT_VISITED;
+		}
+		int counter = 0;
+		int numberOfComponents = 0;
+		final int numberOfRoots = roots == null ? size - minNode : roots.length;
+		for (int r = 0; r < numberOfRoots; r++) {
+			final int root = roots == null ? minNode + r : roots[r];
+			if (index[root] != CyclesFinder.NOT_VISITED) {
+				continue;
 			}
-			else {
-				final int index = this.path.indexOf(predecessorVersionedSet);
-				final List<VersionedSet> cycle = new ArrayList<VersionedSet>();
-				for (int i = index; i < this.path.size(); i++) {
-					cycle.add(this.path.get(i));
+			int callDepth = 0;
+			int componentDepth = 0;
+			callStack[callDepth++] = root;
+			componentStack[componentDepth++] = root;
+			index[root] = lowLink[root] = counter++;
+			edgePosition[root] = 0;
+			isOnStack[root] = true;
+			while (callDepth > 0) {
+				final int node = callStack[callDepth - 1];
+				if (edgePosition[node] < adjacency[node].length) {
+					final int successor = adjacency[node][edgePosition[node]++];
+					if (successor < minNode) {
+						continue;
+					}
+					if (index[successor] == CyclesFinder.NOT_VISITED) {
+						callStack[callDepth++] = successor;
+						componentStack[componentDepth++] = successor;
+						index[successor] = lowLink[successor] = counter++;
+						edgePosition[successor] = 0;
+						isOnStack[successor] = true;
+					}
+					else if (isOnStack[successor]) {
+						lowLink[node] = Math.min(lowLink[node], index[successor]);
+					}
 				}
-				cycle.add(predecessorVersionedSet);
-				
-				this.cycles.add(cycle);
+				else {
+					callDepth--;
+					if (lowLink[node] == index[node]) {
+						int member;
+						do {
+							member = componentStack[--componentDepth];
+							isOnStack[member] = false;
+							componentOfNode[member] = numberOfComponents;
+						}
+						while (member != node);
+						numberOfComponents++;
+					}
+					if (callDepth > 0) {
+						final int parent = callStack[callDepth - 1];
+						lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+					}
+				}
+			}
+		}
+		return numberOfComponents;
+	}
+	
+	/*
+	 * Binding graph with dense int ids, contains the given versioned sets and
+	 * all versioned sets bound by them
+	 */
+	private static class BindingGraph {
+		
+		private final List<VersionedSet> nodes = Lists.newArrayList();
+		
+		private final int[][] adjacency;
+		
+		BindingGraph(final Collection<VersionedSet> versionedSets) {
+			final Map<VersionedSet, Integer> ids = Maps.newHashMapWithExpectedSize(versionedSets.size());
+			for (final VersionedSet versionedSet : versionedSets) {
+				this.idOf(versionedSet, ids);
+			}
+			final List<int[]> successors = Lists.newArrayList();
+			// The list of nodes grows while the bound versioned sets are found
+			for (int node = 0; node < this.nodes.size(); node++) {
+				final Set<VersionedSet> predecessorsBinding = this.nodes.get(node).getPredecessorsBinding();
+				final int[] successorsOfNode = new int[predecessorsBinding.size()];
+				int i = 0;
+				for (final VersionedSet predecessorVersionedSet : predecessorsBinding) {
+					successorsOfNode[i++] = this.idOf(predecessorVersionedSet, ids);
+				}
+				successors.add(successorsOfNode);
+			}
+			this.adjacency = successors.toArray(new int[successors.size()][]);
+		}
+		
+		int size() {
+			return this.nodes.size();
+		}
+		
+		private int idOf(final VersionedSet versionedSet, final Map<VersionedSet, Integer> ids) {
+			final Integer id = ids.get(versionedSet);
+			if (id != null) {
+				return id.intValue();
 			}
+			ids.put(versionedSet, Integer.valueOf(this.nodes.size()));
+			this.nodes.add(versionedSet);
+			return this.nodes.size() - 1;
 		}
-		this.path.remove(versionedSet);
-		this.grayNodes.remove(versionedSet);
 	}
 	
 }
@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Author:		"Vladislav Fedotov"
+ * Written:		2013
+ * Project:		Setvers
+ * E-mail:		vladislav.fedotov@tu-berlin.de
+ * Company:		TU Berlin
+ * Version:		1.0
+ * 
+ * Copyright (c) 2013 Vladislav Fedotov.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Vladislav Fedotov - initial API and implementation
+ ******************************************************************************/
+package de.bitub.proitbau.common.versioning.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/*
+ * Reachability index of a directed graph. Each node gets a dense int id, the
+ * direct successors and the transitive closure of each node are stored as
+ * bitsets (long[] words), so after the closure of a node has been computed a
+ * reachability query is a single bit test.
+ * The closure of a node is computed on its first query, added edges update
+ * the computed closures incrementally, removed edges and changes of the
+ * blocking flag invalidate them.
+ * A blocking node can be reached, but paths don't continue through it, the
+ * node where a path starts is always left.
+ */
+public final class ReachabilityIndex<T> {
+	
+	private final Map<T, Integer> ids;
+	
+	private final List<T> nodes;
+	
+	private long[][] successors;
+	
+	private long[][] closures;
+	
+	// Nodes whose closure is up to date
+	private long[] computed;
+	
+	private long[] blocking;
+	
+	private int words;
+	
+	public ReachabilityIndex() {
+		this(16);
+	}
+	
+	public ReachabilityIndex(final int expectedSize) {
+		Preconditions.checkArgument(expectedSize >= 0, "Given expected size is negative!");
+		this.ids = Maps.newHashMapWithExpectedSize(expectedSize);
+		this.nodes = Lists.newArrayListWithCapacity(expectedSize);
+		this.words = ReachabilityIndex.wordsFor(Math.max(expectedSize, 1));
+		this.successors = new long[this.words << 6][];
+		this.closures = new long[this.words << 6][];
+		this.computed = new long[this.words];
+		this.blocking = new long[this.words];
+	}
+	
+	/*
+	 * Adds the given node if it isn't indexed yet and returns its id
+	 */
+	public int addNode(final T node) {
+		Preconditions.checkNotNull(node, "Given node is null!");
+		final Integer id = this.ids.get(node);
+		if (id != null) {
+			return id.intValue();
+		}
+		final int newId = this.nodes.size();
+		if (newId == this.successors.length) {
+			this.grow();
+		}
+		this.ids.put(node, Integer.valueOf(newId));
+		this.nodes.add(node);
+		this.successors[newId] = new long[this.words];
+		this.closures[newId] = new long[this.words];
+		return newId;
+	}
+	
+	/*
+	 * Adds the edge from -> to, nodes which aren't indexed yet are added
+	 */
+	public void addEdge(final T from, final T to) {
+		final int fromId = this.addNode(from);
+		final int toId = this.addNode(to);
+		if (ReachabilityIndex.get(this.successors[fromId], toId)) {
+			return;
+		}
+		ReachabilityIndex.set(this.successors[fromId], toId);
+		if (this.isInvalidated()) {
+			return;
+		}
+		
+		// Every node which reaches "from" and can pass it, reaches now "to" and
+		// everything what "to" reaches
+		final long[] reachedViaEdge = new long[this.words];
+		if (!this.isBlocking(toId)) {
+			System.arraycopy(this.getClosure(toId), 0, reachedViaEdge, 0, this.words);
+		}
+		ReachabilityIndex.set(reachedViaEdge, toId);
+		final boolean isFromBlocking = this.isBlocking(fromId);
+		for (int id = 0; id < this.nodes.size(); id++) {
+			if (ReachabilityIndex.get(this.computed, id)
+					&& ((id == fromId) || (!isFromBlocking && ReachabilityIndex.get(this.closures[id], fromId)))) {
+				ReachabilityIndex.or(this.closures[id], reachedViaEdge);
+			}
+		}
+	}
+	
+	/*
+	 * Removes the edge from -> to, returns false if there is no such edge
+	 */
+	public boolean removeEdge(final T from, final T to) {
+		final int fromId = this.getId(from);
+		final int toId = this.getId(to);
+		if ((fromId < 0) || (toId < 0) || !ReachabilityIndex.get(this.successors[fromId], toId)) {
+			return false;
+		}
+		ReachabilityIndex.clear(this.successors[fromId], toId);
+		this.invalidate();
+		return true;
+	}
+	
+	public void setBlocking(final T node, final boolean isBlocking) {
+		final int id = this.addNode(node);
+		if (this.isBlocking(id) != isBlocking) {
+			if (isBlocking) {
+				ReachabilityIndex.set(this.blocking, id);
+			}
+			else {
+				ReachabilityIndex.clear(this.blocking, id);
+			}
+			this.invalidate();
+		}
+	}
+	
+	/*
+	 * Returns true if there is a path of at least one edge from -> to, so a
+	 * node reaches itself only if it lies on a cycle
+	 */
+	public boolean isReachable(final T from, final T to) {
+		final int fromId = this.getId(from);
+		final int toId = this.getId(to);
+		if ((fromId < 0) || (toId < 0)) {
+			return false;
+		}
+		return ReachabilityIndex.get(this.getClosure(fromId), toId);
+	}
+	
+	/*
+	 * Returns all nodes reachable from the given node ordered by their ids
+	 */
+	public List<T> getReachable(final T from) {
+		final List<T> reachableNodes = Lists.newArrayList();
+		final int fromId = this.getId(from);
+		if (fromId >= 0) {
+			final long[] closure = this.getClosure(fromId);
+			for (int id = ReachabilityIndex.nextSetBit(closure, 0); id >= 0; id =
+				ReachabilityIndex.nextSetBit(closure, id + 1)) {
+				reachableNodes.add(this.nodes.get(id));
+			}
+		}
+		return reachableNodes;
+	}
+	
+	/*
+	 * Returns the id of the given node or -1 if it isn't indexed
+	 */
+	public int getId(final T node) {
+		final Integer id = this.ids.get(node);
+		return id == null ? -1 : id.intValue();
+	}
+	
+	public T getNode(final int id) {
+		return this.nodes.get(id);
+	}
+	
+	public int size() {
+		return this.nodes.size();
+	}
+	
+	private boolean isBlocking(final int id) {
+		return ReachabilityIndex.get(this.blocking, id);
+	}
+	
+	private boolean isInvalidated() {
+		for (final long word : this.computed) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void invalidate() {
+		Arrays.fill(this.computed, 0L);
+	}
+	
+	/*
+	 * Returns the closure of the given node, computes it by a depth first
+	 * search if it isn't up to date
+	 */
+	private long[] getClosure(final int id) {
+		final long[] closure = this.closures[id];
+		if (ReachabilityIndex.get(this.computed, id)) {
+			return closure;
+		}
+		Arrays.fill(closure, 0L);
+		final int[] stack = new int[this.nodes.size() + 1];
+		int top = 0;
+		stack[top++] = id;
+		while (top > 0) {
+			final int current = stack[--top];
+			final long[] successorsOfCurrent = this.successors[current];
+			for (int successor = ReachabilityIndex.nextSetBit(successorsOfCurrent, 0); successor >= 0; successor =
+				ReachabilityIndex.nextSetBit(successorsOfCurrent, successor + 1)) {
+				if (!ReachabilityIndex.get(closure, successor)) {
+					ReachabilityIndex.set(closure, successor);
+					// The start node has been pushed already
+					if ((successor != id) && !this.isBlocking(successor)) {
+						stack[top++] = successor;
+					}
+				}
+			}
+		}
+		ReachabilityIndex.set(this.computed, id);
+		return closure;
+	}
+	
+	private void grow() {
+		final int newWords = this.words << 1;
+		final int newCapacity = newWords << 6;
+		this.successors = Arrays.copyOf(this.successors, newCapacity);
+		this.closures = Arrays.copyOf(this.closures, newCapacity);
+		for (int id = 0; id < this.nodes.size(); id++) {
+			this.successors[id] = Arrays.copyOf(this.successors[id], newWords);
+			this.closures[id] = Arrays.copyOf(this.closures[id], newWords);
+		}
+		this.computed = Arrays.copyOf(this.computed, newWords);
+		this.blocking = Arrays.copyOf(this.blocking, newWords);
+		this.words = newWords;
+	}
+	
+	private static int wordsFor(final int bits) {
+		return (bits + 63) >>> 6;
+	}
+	
+	private static boolean get(final long[] bits, final int index) {
+		return (bits[index >>> 6] & (1L << index)) != 0;
+	}
+	
+	private static void set(final long[] bits, final int index) {
+		bits[index >>> 6] |= 1L << index;
+	}
+	
+	private static void clear(final long[] bits, final int index) {
+		bits[index >>> 6] &= ~(1L << index);
+	}
+	
+	private static void or(final long[] bits, final long[] other) {
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] |= other[i];
+		}
+	}
+	
+	private static int nextSetBit(final long[] bits, final int fromIndex) {
+		int wordIndex = fromIndex >>> 6;
+		if (wordIndex >= bits.length) {
+			return -1;
+		}
+		long word = bits[wordIndex] & (-1L << fromIndex);
+		while (true) {
+			if (word != 0) {
+				return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++wordIndex == bits.length) {
+				return -1;
+			}
+			word = bits[wordIndex];
+		}
+	}
+	
+}
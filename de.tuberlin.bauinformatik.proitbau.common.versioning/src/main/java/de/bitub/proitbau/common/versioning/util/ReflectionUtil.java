@@ -286,53 +286,25 @@ public class ReflectionUtil {
 			uuid = ModelCache.getInstance().getObjectUuid(object).toString();
 		}
 		else {
-			Class<? extends Object> cls = object.getClass();
-			
-			// First of all try to find field with the @Id annotation
-			while ((cls != null) && (uuid.isEmpty())) {
-				final Field[] fieldsOfObject = cls.getDeclaredFields();
-				AccessibleObject.setAccessible(fieldsOfObject, true);
-				for (int i = 0; (i < fieldsOfObject.length) && (uuid.isEmpty()); i++) {
-					final boolean isIdAnnotationPresentedAboveField = fieldsOfObject[i].isAnnotationPresent(Id.class);
-					if (isIdAnnotationPresentedAboveField) {
-						try {
-							uuid = (String) fieldsOfObject[i].get(object);
-						}
-						catch (final IllegalArgumentException e) {
-							ReflectionUtil.logger.error(e.getMessage());
-						}
-						catch (final IllegalAccessException e) {
-							ReflectionUtil.logger.error(e.getMessage());
-						}
-						Preconditions.checkArgument(!uuid.isEmpty(), "This object has empty UUID!");
-					}
+			final AccessibleObject idAccessor = this.getIdAccessor(object.getClass());
+			try {
+				if (idAccessor instanceof Field) {
+					uuid = (String) ((Field) idAccessor).get(object);
+					Preconditions.checkArgument(!uuid.isEmpty(), "This object has empty UUID!");
 				}
-				cls = cls.getSuperclass();
-			}
-			// Then try to find the method with the @Id annotation
-			cls = object.getClass();
-			while ((cls != null) && (uuid.isEmpty())) {
-				final Method[] methodsOfObject = cls.getDeclaredMethods();
-				AccessibleObject.setAccessible(methodsOfObject, true);
-				for (int i = 0; (i < methodsOfObject.length) && (uuid.isEmpty()); i++) {
-					final boolean isIdAnnotationPresentedAboveGetter = methodsOfObject[i].isAnnotationPresent(Id.class);
-					if (isIdAnnotationPresentedAboveGetter) {
-						try {
-							uuid = (String) methodsOfObject[i].invoke(object);
-						}
-						catch (final IllegalAccessException e) {
-							ReflectionUtil.logger.error(e.getMessage());
-						}
-						catch (final IllegalArgumentException e) {
-							ReflectionUtil.logger.error(e.getMessage());
-						}
-						catch (final InvocationTargetException e) {
-							ReflectionUtil.logger.error(e.getMessage());
-						}
-						Preconditions.checkArgument(!uuid.isEmpty(), "This object has empty UUID!");
-					}
+				else if (idAccessor instanceof Method) {
+					uuid = (String) ((Method) idAccessor).invoke(object);
+					Preconditions.checkArgument(!uuid.isEmpty(), "This object has empty UUID!");
 				}
-				cls = cls.getSuperclass();
+			}
+			catch (final IllegalAccessException e) {
+				ReflectionUtil.logger.error(e.getMessage());
+			}
+			catch (final IllegalArgumentException e) {
+				ReflectionUtil.logger.error(e.getMessage());
+			}
+			catch (final InvocationTargetException e) {
+				ReflectionUtil.logger.error(e.getMessage());
 			}
 			Preconditions.checkArgument(uuid.length() == ReflectionUtil.UUID_LENGTH, "UUID is incorrect!");
 			
@@ -342,6 +314,62 @@ public class ReflectionUtil {
 		return uuid;
 	}
 	
+	/*
+	 * Returns the uuid of the given versioned object, Versionable objects are
+	 * asked directly and all others are resolved by getUuidOfObject. The model
+	 * cache isn't thread-safe, so it is locked during the lookup and this method
+	 * may be called by several threads at once.
+	 */
+	public String getUuidOfVersionedObject(final Object object) {
+		Preconditions.checkNotNull(object, "Given object is null!");
+		if (object instanceof Versionable) {
+			return ((Versionable) object).getUuid();
+		}
+		synchronized (ModelCache.getInstance()) {
+			return this.getUuidOfObject(object);
+		}
+	}
+	
+	/*
+	 * Returns the field or, if there is no such field, the method with the @Id
+	 * annotation of the given class or its superclasses, null if there is
+	 * neither of them. The accessor is searched only once per class.
+	 */
+	public AccessibleObject getIdAccessor(final Class<?> clazz) {
+		Preconditions.checkNotNull(clazz, "Given class is null!");
+		if (ModelCache.getInstance().containsIdAccessor(clazz)) {
+			return ModelCache.getInstance().getIdAccessor(clazz);
+		}
+		AccessibleObject idAccessor = null;
+		// First of all try to find field with the @Id annotation
+		Class<?> cls = clazz;
+		while ((cls != null) && (idAccessor == null)) {
+			final Field[] fieldsOfObject = cls.getDeclaredFields();
+			for (int i = 0; (i < fieldsOfObject.length) && (idAccessor == null); i++) {
+				if (fieldsOfObject[i].isAnnotationPresent(Id.class)) {
+					idAccessor = fieldsOfObject[i];
+				}
+			}
+			cls = cls.getSuperclass();
+		}
+		// Then try to find the method with the @Id annotation
+		cls = clazz;
+		while ((cls != null) && (idAccessor == null)) {
+			final Method[] methodsOfObject = cls.getDeclaredMethods();
+			for (int i = 0; (i < methodsOfObject.length) && (idAccessor == null); i++) {
+				if (methodsOfObject[i].isAnnotationPresent(Id.class)) {
+					idAccessor = methodsOfObject[i];
+				}
+			}
+			cls = cls.getSuperclass();
+		}
+		if (idAccessor != null) {
+			idAccessor.setAccessible(true);
+		}
+		ModelCache.getInstance().addIdAccessor(clazz, idAccessor);
+		return idAccessor;
+	}
+	
 	public Object getValueOfField(final Object object, final Field field) {
 		Preconditions.checkNotNull(object, "Given object is null!");
 		Object value = null;
@@ -997,9 +1025,16 @@ public class ReflectionUtil {
 	// parameter
 	// of the VersionedEntity annotation, it check the complete class hierarchy of
 	// both classes.
-	public boolean isBoundByClass(Class<?> boundClassType, Class<?> bindClassType) {
-		// TODO add preconditions
-		// TODO add caching Class -> Class
+	// The decision depends only on both classes, so it is cached per pair of
+	// classes until the cache of the bound by classes is invalidated.
+	public boolean isBoundByClass(final Class<?> boundClass, final Class<?> bindClass) {
+		Preconditions.checkNotNull(boundClass, "Given bound class is null!");
+		Preconditions.checkNotNull(bindClass, "Given bind class is null!");
+		if (ModelCache.getInstance().containsBoundByClass(boundClass, bindClass)) {
+			return ModelCache.getInstance().isBoundByClass(boundClass, bindClass);
+		}
+		Class<?> boundClassType = boundClass;
+		Class<?> bindClassType = bindClass;
 		boolean isBoundByClass = false;
 		
 		// Find names of all classes which are bind this class
@@ -1022,6 +1057,7 @@ public class ReflectionUtil {
 				bindClassType = bindClassType.getSuperclass();
 			}
 		}
+		ModelCache.getInstance().addBoundByClass(boundClass, bindClass, Boolean.valueOf(isBoundByClass));
 		return isBoundByClass;
 	}
 }
@@ -17,12 +17,19 @@
  ******************************************************************************/
 package de.bitub.proitbau.common.versioning.util;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Stack;
+import java.util.Map;
+import java.util.Set;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import de.bitub.proitbau.common.versioning.model.VersionedSet;
 
@@ -42,48 +49,131 @@ public class VersionedSetUtil {
 		return Handler.instance;
 	}
 	
+	/*
+	 * Creates the reachability index of the binding graph, which is formed by
+	 * the given versioned sets and all versioned sets bound by them. An edge
+	 * leads from a versioned set to each of its predecessors in binding, so
+	 * index.isReachable(a, b) is true if a binds b directly or indirectly.
+	 * Callers which ask for many pairs should keep the index and update it via
+	 * addEdge/removeEdge when the bindings change.
+	 */
+	public ReachabilityIndex<VersionedSet> createReachabilityIndex(final Collection<VersionedSet> versionedSets) {
+		Preconditions.checkNotNull(versionedSets, "Collection of versioned sets is null");
+		final ReachabilityIndex<VersionedSet> index = new ReachabilityIndex<VersionedSet>(versionedSets.size());
+		final Deque<VersionedSet> stack = new ArrayDeque<VersionedSet>(versionedSets);
+		for (final VersionedSet versionedSet : versionedSets) {
+			index.addNode(versionedSet);
+		}
+		final Set<VersionedSet> visitedVersionedSets = Sets.newHashSetWithExpectedSize(versionedSets.size());
+		while (!stack.isEmpty()) {
+			final VersionedSet versionedSet = stack.pop();
+			if (visitedVersionedSets.add(versionedSet)) {
+				for (final VersionedSet predecessorVersionedSet : versionedSet.getPredecessorsBinding()) {
+					index.addEdge(versionedSet, predecessorVersionedSet);
+					if (!visitedVersionedSets.contains(predecessorVersionedSet)) {
+						stack.push(predecessorVersionedSet);
+					}
+				}
+			}
+		}
+		return index;
+	}
+	
 	public List<VersionedSet> getBound(final Collection<VersionedSet> versionedSets, final boolean includingGiven) {
 		Preconditions.checkNotNull(versionedSets, "Collection of versioned sets is null");
 		Preconditions.checkArgument(versionedSets.size() != 0, "Collection of versioned sets is empty");
-		final List<VersionedSet> allVersionedSets = Lists.newArrayList();
-		final Stack<VersionedSet> stack = new Stack<VersionedSet>();
+		final ReachabilityIndex<VersionedSet> index = this.createReachabilityIndex(versionedSets);
+		final Set<VersionedSet> allVersionedSets = Sets.newLinkedHashSet();
 		for (final VersionedSet versionedSet : versionedSets) {
-			if (!allVersionedSets.contains(versionedSet)) {
-				stack.add(versionedSet);
-				while (!stack.isEmpty()) {
-					final VersionedSet tempVersionedSet = stack.pop();
-					if (!allVersionedSets.contains(tempVersionedSet)
-							&& (includingGiven || !tempVersionedSet.equals(versionedSet))) {
-						allVersionedSets.add(tempVersionedSet);
-					}
-					for (final VersionedSet predecessorVersionedSet : tempVersionedSet.getPredecessorsBinding()) {
-						if (!allVersionedSets.contains(predecessorVersionedSet)) {
-							stack.add(predecessorVersionedSet);
-						}
-					}
+			if (includingGiven) {
+				allVersionedSets.add(versionedSet);
+			}
+			for (final VersionedSet boundVersionedSet : index.getReachable(versionedSet)) {
+				if (includingGiven || !boundVersionedSet.equals(versionedSet)) {
+					allVersionedSets.add(boundVersionedSet);
 				}
 			}
 		}
-		return allVersionedSets;
+		return Lists.newArrayList(allVersionedSets);
 	}
 	
 	public List<VersionedSet> getBound(final VersionedSet versionedSet, final boolean includingGiven) {
 		Preconditions.checkNotNull(versionedSet, "Versioned set is null");
-		final List<VersionedSet> allVersionedSets = Lists.newArrayList();
-		final Stack<VersionedSet> stack = new Stack<VersionedSet>();
-		stack.add(versionedSet);
-		while (!stack.isEmpty()) {
-			final VersionedSet tempVersionedSet = stack.pop();
-			if (!allVersionedSets.contains(tempVersionedSet) && (includingGiven || !tempVersionedSet.equals(versionedSet))) {
-				allVersionedSets.add(tempVersionedSet);
+		return this.getBound(Collections.singleton(versionedSet), includingGiven);
+	}
+	
+	/*
+	 * Returns the given versioned sets in dependency order: a versioned set
+	 * comes after all versioned sets it binds directly or indirectly, so
+	 * references between the sets can be resolved while they are streamed.
+	 * Cycles of bindings are condensed to their strongly connected components,
+	 * the sets of such a component are placed next to each other.
+	 */
+	public List<VersionedSet> getTopologicalOrder(final Collection<VersionedSet> versionedSets) {
+		Preconditions.checkNotNull(versionedSets, "Collection of versioned sets is null");
+		final Set<VersionedSet> givenVersionedSets = Sets.newHashSet(versionedSets);
+		final List<VersionedSet> orderedVersionedSets = Lists.newArrayListWithCapacity(givenVersionedSets.size());
+		for (final Set<VersionedSet> component : CyclesFinder.getInstance().findStronglyConnectedComponents(
+			givenVersionedSets)) {
+			for (final VersionedSet versionedSet : component) {
+				if (givenVersionedSets.contains(versionedSet)) {
+					orderedVersionedSets.add(versionedSet);
+				}
+			}
+		}
+		return orderedVersionedSets;
+	}
+	
+	/*
+	 * Splits the given versioned sets into levels: level 0 contains the sets
+	 * which bind nothing, level n the sets which bind only sets of the levels
+	 * below n. The sets of one level are independent of each other, apart from
+	 * sets of the same cycle of bindings, so the levels can be processed one
+	 * after another and the sets of each level in parallel.
+	 */
+	public List<Set<VersionedSet>> getLevelSchedule(final Collection<VersionedSet> versionedSets) {
+		Preconditions.checkNotNull(versionedSets, "Collection of versioned sets is null");
+		final Set<VersionedSet> givenVersionedSets = Sets.newHashSet(versionedSets);
+		final List<Set<VersionedSet>> components =
+			CyclesFinder.getInstance().findStronglyConnectedComponents(givenVersionedSets);
+		final Map<VersionedSet, Integer> componentOfVersionedSet = Maps.newHashMap();
+		for (int i = 0; i < components.size(); i++) {
+			for (final VersionedSet versionedSet : components.get(i)) {
+				componentOfVersionedSet.put(versionedSet, Integer.valueOf(i));
 			}
-			for (final VersionedSet predecessorVersionedSet : tempVersionedSet.getPredecessorsBinding()) {
-				if (!allVersionedSets.contains(predecessorVersionedSet)) {
-					stack.add(predecessorVersionedSet);
+		}
+		// Components are ordered from the bound to the binding ones, so the
+		// levels of all bound components are known when a component is reached
+		final int[] levelOfComponent = new int[components.size()];
+		final List<Set<VersionedSet>> levels = Lists.newArrayList();
+		for (int i = 0; i < components.size(); i++) {
+			int level = 0;
+			for (final VersionedSet versionedSet : components.get(i)) {
+				for (final VersionedSet predecessorVersionedSet : versionedSet.getPredecessorsBinding()) {
+					final int component = componentOfVersionedSet.get(predecessorVersionedSet).intValue();
+					if (component != i) {
+						level = Math.max(level, levelOfComponent[component] + 1);
+					}
+				}
+			}
+			levelOfComponent[i] = level;
+			for (final VersionedSet versionedSet : components.get(i)) {
+				if (givenVersionedSets.contains(versionedSet)) {
+					while (levels.size() <= level) {
+						levels.add(Sets.<VersionedSet> newLinkedHashSet());
+					}
+					levels.get(level).add(versionedSet);
 				}
 			}
 		}
-		return allVersionedSets;
+		// Levels which consist only of bound sets outside of the given ones
+		final Iterator<Set<VersionedSet>> levelIterator = levels.iterator();
+		while (levelIterator.hasNext()) {
+			if (levelIterator.next().isEmpty()) {
+				levelIterator.remove();
+			}
+		}
+		return levels;
 	}
 	
 	/*
@@ -103,33 +193,28 @@ public class VersionedSetUtil {
 	 * second, etc. If we reach during this procedure sourceVersioned set we can
 	 * return true, because this means that targetVersionedSet is reachable from
 	 * the sourceVersionedSet.
+	 * This builds a new index for every call, for many queries keep an index
+	 * and use the overload below.
 	 */
 	public boolean isReachableViaBindingRelations(final VersionedSet sourceVersionedSet,
 		final VersionedSet targetVersionedSet) {
 		Preconditions.checkNotNull(sourceVersionedSet, "Source versioned set is null!");
 		Preconditions.checkNotNull(targetVersionedSet, "Target versioned set is null!");
-		boolean isReachable = false;
-		final List<VersionedSet> visitedVersionedSets = Lists.newArrayList();
-		final Stack<VersionedSet> stack = new Stack<VersionedSet>();
-		stack.add(targetVersionedSet);
-		while (!stack.isEmpty() && !isReachable) {
-			final VersionedSet popedVersionedSet = stack.pop();
-			if (!visitedVersionedSets.contains(popedVersionedSet)) {
-				visitedVersionedSets.add(popedVersionedSet);
-				for (final VersionedSet predecessorVersionedSet : popedVersionedSet.getPredecessorsBinding()) {
-					if (!visitedVersionedSets.contains(predecessorVersionedSet)) {
-						if (popedVersionedSet.equals(sourceVersionedSet)) {
-							isReachable = true;
-						}
-						else {
-							stack.add(predecessorVersionedSet);
-						}
-					}
-				}
-			}
-		}
-		
-		return isReachable;
+		return this.createReachabilityIndex(Collections.singleton(targetVersionedSet)).isReachable(
+			targetVersionedSet, sourceVersionedSet);
+	}
+	
+	/*
+	 * Same as above, but queries the given index of createReachabilityIndex,
+	 * which has to contain the target versioned set and has to be updated by
+	 * the caller when bindings change
+	 */
+	public boolean isReachableViaBindingRelations(final VersionedSet sourceVersionedSet,
+		final VersionedSet targetVersionedSet, final ReachabilityIndex<VersionedSet> index) {
+		Preconditions.checkNotNull(sourceVersionedSet, "Source versioned set is null!");
+		Preconditions.checkNotNull(targetVersionedSet, "Target versioned set is null!");
+		Preconditions.checkNotNull(index, "Reachability index is null!");
+		return index.isReachable(targetVersionedSet, sourceVersionedSet);
 	}
 	
 }
@@ -10,6 +10,8 @@ import org.ektorp.changes.ChangesFeed;
 import org.ektorp.changes.DocumentChange;
 import org.ektorp.http.HttpClient;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 /**
  * Primary interface for working with Objects mapped as documents in CouchDb.
  * 
@@ -233,6 +235,23 @@ public interface CouchDbConnector {
      */
     List<Revision> getRevisions(String id);
 
+    /**
+     * Loads the given revisions of a document in one request (open_revs).
+     * Revisions which aren't available anymore, e.g. after a compaction, are left out.
+     * 
+     * @param <T>
+     * @param c
+     *            the target class to map to.
+     * @param id
+     *            the id of the document in the database.
+     * @param revisions
+     *            the revisions which should be loaded.
+     * @return the loaded revisions in the order of the given revisions.
+     * @throws DocumentNotFoundException
+     *             if the document was not found.
+     */
+    <T> List<T> getOpenRevisions(Class<T> c, String id, Collection<String> revisions);
+
     /**
      * Obtain the current revision of a document using a lightweight request.
      * @param id
@@ -362,6 +381,13 @@ public interface CouchDbConnector {
      */
     String getDatabaseName();
 
+    /**
+     * @return the ObjectMapper which maps the documents of this database, e.g.
+     *         to map documents which are stored in another form like an
+     *         attachment.
+     */
+    ObjectMapper getObjectMapper();
+
     /**
      * 
      * @return
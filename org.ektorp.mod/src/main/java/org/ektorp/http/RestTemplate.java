@@ -1,6 +1,7 @@
 package org.ektorp.http;
 
 import java.io.InputStream;
+import java.util.Map;
 
 import org.ektorp.DbAccessException;
 import org.ektorp.util.Exceptions;
@@ -22,6 +23,11 @@ public class RestTemplate {
 		return handleResponse(callback, hr);
 	}
 
+	public <T> T get(String path, Map<String, String> headers, ResponseCallback<T> callback) {
+		HttpResponse hr = client.get(path, headers);
+		return handleResponse(callback, hr);
+	}
+
 	public <T> T getUncached(String path, ResponseCallback<T> callback) {
 		HttpResponse hr = client.getUncached(path);
 		return handleResponse(callback, hr);
@@ -5,6 +5,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -64,6 +65,8 @@ public class StdCouchDbConnector implements CouchDbConnector {
     private static final Logger LOG = LoggerFactory
             .getLogger(StdCouchDbConnector.class);
     private static final ResponseCallback<Void> VOID_RESPONSE_HANDLER = new StdResponseHandler<Void>();
+    private static final Map<String, String> JSON_ACCEPT_HEADER = Collections.singletonMap("Accept", "application/json");
+    private static final int MAX_OPEN_REVS_PER_REQUEST = 50;
     private final ObjectMapper objectMapper;
     private JsonSerializer jsonSerializer;
 
@@ -314,6 +317,59 @@ public class StdCouchDbConnector implements CouchDbConnector {
         });
     }
 
+    @Override
+    public <T> List<T> getOpenRevisions(final Class<T> c, String id, final Collection<String> revisions) {
+        Assert.notNull(c, "Class may not be null");
+        assertDocIdHasValue(id);
+        Assert.notNull(revisions, "Revisions may not be null");
+        if (revisions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> revisionList = new ArrayList<String>(revisions);
+        // the response isn't ordered like the requested revisions
+        final Map<String, T> docs = new HashMap<String, T>();
+        // the revisions are sent in the url, so a long list is split up to
+        // keep the url short enough for the server
+        for (int from = 0; from < revisionList.size(); from += MAX_OPEN_REVS_PER_REQUEST) {
+            List<String> chunk = revisionList.subList(from,
+                    Math.min(from + MAX_OPEN_REVS_PER_REQUEST, revisionList.size()));
+            String openRevs;
+            try {
+                openRevs = objectMapper.writeValueAsString(chunk);
+            } catch (JsonProcessingException e) {
+                throw Exceptions.propagate(e);
+            }
+            // without this header the documents are returned as multipart
+            // response
+            restTemplate.get(dbURI.append(id).param("open_revs", openRevs)
+                    .toString(), JSON_ACCEPT_HEADER, new StdResponseHandler<Void>() {
+
+                @Override
+                public Void success(HttpResponse hr) throws Exception {
+                    JsonNode root = objectMapper.readValue(hr.getContent(),
+                            JsonNode.class);
+                    for (Iterator<JsonNode> i = root.elements(); i.hasNext();) {
+                        JsonNode doc = i.next().get("ok");
+                        if (doc != null) {
+                            docs.put(doc.get("_rev").textValue(),
+                                    objectMapper.treeToValue(doc, c));
+                        }
+                    }
+                    return null;
+                }
+
+            });
+        }
+        List<T> result = new ArrayList<T>(docs.size());
+        for (String rev : revisionList) {
+            T doc = docs.get(rev);
+            if (doc != null) {
+                result.add(doc);
+            }
+        }
+        return result;
+    }
+
     @Override
     public String getCurrentRevision(String id) {
     	assertDocIdHasValue(id);
@@ -412,6 +468,11 @@ public class StdCouchDbConnector implements CouchDbConnector {
         return dbName;
     }
 
+    @Override
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
     @Override
     public <T> List<T> queryView(final ViewQuery query, final Class<T> type) {
         Assert.notNull(query, "query may not be null");